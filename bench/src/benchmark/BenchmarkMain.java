@@ -0,0 +1,33 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suite with the GC profiler, which adds the allocation rate and bytes
+ * allocated per operation to every result. Compile the classes under bench/src together with
+ * src, with jmh-core on the classpath and jmh-generator-annprocess as an annotation processor.
+ * An optional argument selects benchmarks by regular expression, such as "OperationBenchmark.luma".
+ */
+public final class BenchmarkMain {
+
+  private BenchmarkMain() {
+  }
+
+  /**
+   * Runs the selected benchmarks.
+   *
+   * @param args - an optional benchmark name pattern
+   * @throws RunnerException if JMH fails to run
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+            .include(args.length > 0 ? args[0] : "benchmark\\..*Benchmark")
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(options).run();
+  }
+}
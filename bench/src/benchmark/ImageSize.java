@@ -0,0 +1,56 @@
+package benchmark;
+
+/**
+ * Represents the image sizes every benchmark is run at.
+ */
+public enum ImageSize {
+  /**
+   * A 320 x 240 thumbnail.
+   */
+  THUMBNAIL(320, 240),
+
+  /**
+   * A 1920 x 1080 frame.
+   */
+  HD(1920, 1080),
+
+  /**
+   * A 6000 x 4000, 24 megapixel photo.
+   */
+  MP24(6000, 4000);
+
+  private final int width;
+  private final int height;
+
+  ImageSize(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Retrieves the width of images of this size.
+   *
+   * @return the width in pixels
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Retrieves the height of images of this size.
+   *
+   * @return the height in pixels
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Retrieves the number of pixels in images of this size.
+   *
+   * @return width times height
+   */
+  public long getPixels() {
+    return (long) this.width * this.height;
+  }
+}
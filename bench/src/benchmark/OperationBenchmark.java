@@ -0,0 +1,117 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Image;
+import model.ImageProcessOperations;
+
+/**
+ * Measures every operation of the model on synthetic images. Flips return views in constant
+ * time, so they are also measured followed by a force, which copies the view into a buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OperationBenchmark {
+  @Param({"THUMBNAIL", "HD", "MP24"})
+  public ImageSize size;
+
+  private ImageProcessOperations model;
+
+  /**
+   * Creates the model holding the source image.
+   */
+  @Setup
+  public void setUp() {
+    this.model = new ImageProcessOperations();
+    this.model.getRegistry().put("src", SyntheticImages.create(this.size));
+  }
+
+  private Image result(PixelCounter counter) {
+    counter.pixels += this.size.getPixels();
+    return this.model.getImage("dest");
+  }
+
+  @Benchmark
+  public Image redComponent(PixelCounter counter) {
+    this.model.redComponent("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image greenComponent(PixelCounter counter) {
+    this.model.greenComponent("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image blueComponent(PixelCounter counter) {
+    this.model.blueComponent("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image valueComponent(PixelCounter counter) {
+    this.model.valueComponent("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image lumaComponent(PixelCounter counter) {
+    this.model.lumaComponent("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image intensityComponent(PixelCounter counter) {
+    this.model.intensityComponent("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image brighten(PixelCounter counter) {
+    this.model.brighten(40, "src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image horizontalFlip(PixelCounter counter) {
+    this.model.horizontalFlip("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image verticalFlip(PixelCounter counter) {
+    this.model.verticalFlip("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image horizontalFlipForced(PixelCounter counter) {
+    this.model.horizontalFlip("src", "dest");
+    this.model.force("dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image verticalFlipForced(PixelCounter counter) {
+    this.model.verticalFlip("src", "dest");
+    this.model.force("dest");
+    return this.result(counter);
+  }
+}
@@ -0,0 +1,28 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the pixels processed by a benchmark, which JMH reports as a pixel rate next to the
+ * operation rate. The time per pixel is the reciprocal of that rate.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class PixelCounter {
+  /**
+   * Pixels processed in the current iteration.
+   */
+  public long pixels;
+
+  /**
+   * Resets the count before each iteration.
+   */
+  @Setup(Level.Iteration)
+  public void reset() {
+    this.pixels = 0;
+  }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Image;
+import model.ImageUtil;
+import model.PackedImage;
+import model.PpmFormat;
+
+/**
+ * Measures reading and writing PPM files in both encodings. The files are written from a
+ * synthetic image during setup and deleted afterwards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PpmIoBenchmark {
+  @Param({"THUMBNAIL", "HD", "MP24"})
+  public ImageSize size;
+
+  @Param({"P3", "P6"})
+  public PpmFormat format;
+
+  private PackedImage image;
+  private File input;
+  private File output;
+
+  /**
+   * Writes the file that is read by {@link #readPPM(PixelCounter)}.
+   *
+   * @throws IOException if the temporary files cannot be written
+   */
+  @Setup
+  public void setUp() throws IOException {
+    this.image = SyntheticImages.create(this.size);
+    this.input = File.createTempFile("bench-in", ".ppm");
+    this.output = File.createTempFile("bench-out", ".ppm");
+    ImageUtil.savePPM(this.image, this.input.getPath(), this.format);
+  }
+
+  /**
+   * Deletes the temporary files.
+   */
+  @TearDown
+  public void tearDown() {
+    this.input.delete();
+    this.output.delete();
+  }
+
+  @Benchmark
+  public Image readPPM(PixelCounter counter) throws IOException {
+    counter.pixels += this.size.getPixels();
+    return ImageUtil.readPPM(this.input.getPath());
+  }
+
+  @Benchmark
+  public void savePPM(PixelCounter counter) throws IOException {
+    counter.pixels += this.size.getPixels();
+    ImageUtil.savePPM(this.image, this.output.getPath(), this.format);
+  }
+}
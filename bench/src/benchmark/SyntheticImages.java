@@ -0,0 +1,38 @@
+package benchmark;
+
+import java.util.Random;
+
+import model.PackedImage;
+import model.PixelLayout;
+import model.SampleDepth;
+
+/**
+ * Generates deterministic test images so benchmarks need no files on disk.
+ */
+public final class SyntheticImages {
+
+  private SyntheticImages() {
+  }
+
+  /**
+   * Creates an 8-bit image of the given size filled with a gradient plus noise, so that
+   * samples cover the whole range and do not compress into repeated values.
+   *
+   * @param size - the size of the image
+   * @return the image
+   */
+  public static PackedImage create(ImageSize size) {
+    int w = size.getWidth();
+    int h = size.getHeight();
+    PackedImage image = new PackedImage(w, h, 255, SampleDepth.BYTE, PixelLayout.INTERLEAVED);
+    Random rand = new Random(w * 31L + h);
+    for (int r = 0; r < h; r++) {
+      for (int c = 0; c < w; c++) {
+        image.setRawSample(r, c, 0, (c * 255 / w + rand.nextInt(16)) & 0xFF);
+        image.setRawSample(r, c, 1, (r * 255 / h + rand.nextInt(16)) & 0xFF);
+        image.setRawSample(r, c, 2, rand.nextInt(256));
+      }
+    }
+    return image;
+  }
+}
@@ -0,0 +1,95 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Image;
+import model.ImageExecutor;
+import model.ImageProcessOperations;
+import model.SampleDepth;
+
+/**
+ * Compares the vector backend with the scalar kernels for the operations it implements. The
+ * source is stored as doubles, since integer sources are served from lookup tables instead, and
+ * one worker thread is used so that the difference is not hidden by parallelism. Compile
+ * simd/src with the other sources for the vectorized runs to use the backend.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorBenchmark {
+  @Param({"HD", "MP24"})
+  public ImageSize size;
+
+  @Param({"true", "false"})
+  public boolean vectorize;
+
+  private ImageExecutor executor;
+  private ImageProcessOperations model;
+
+  /**
+   * Creates the model holding the source image.
+   */
+  @Setup
+  public void setUp() {
+    this.executor = new ImageExecutor(1, ImageExecutor.DEFAULT_CUTOFF, this.vectorize);
+    if (this.vectorize && !this.executor.isVectorized()) {
+      throw new IllegalStateException("The vector backend is not on the classpath");
+    }
+    this.model = new ImageProcessOperations(this.executor);
+    this.model.getRegistry().put("src",
+            SyntheticImages.create(this.size).convert(SampleDepth.DOUBLE));
+  }
+
+  /**
+   * Stops the executor's worker threads.
+   */
+  @TearDown
+  public void tearDown() {
+    this.executor.close();
+  }
+
+  private Image result(PixelCounter counter) {
+    counter.pixels += this.size.getPixels();
+    return this.model.getImage("dest");
+  }
+
+  @Benchmark
+  public Image valueComponent(PixelCounter counter) {
+    this.model.valueComponent("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image lumaComponent(PixelCounter counter) {
+    this.model.lumaComponent("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image intensityComponent(PixelCounter counter) {
+    this.model.intensityComponent("src", "dest");
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Image brighten(PixelCounter counter) {
+    this.model.brighten(40, "src", "dest");
+    return this.result(counter);
+  }
+}
@@ -0,0 +1,75 @@
+package model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Runs the planar point operations with the incubating vector API, several samples per
+ * instruction. Compile this folder together with src using
+ * {@code --add-modules jdk.incubator.vector}, and pass the same flag to the JVM; without it
+ * {@link PlanarBackend#vector()} finds no backend and the scalar kernels are used instead.
+ */
+final class VectorPlanarBackend implements PlanarBackend {
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  @Override
+  public void offset(double[] r, double[] g, double[] b, int n, double delta) {
+    offset(r, n, delta);
+    offset(g, n, delta);
+    offset(b, n, delta);
+  }
+
+  private static void offset(double[] samples, int n, double delta) {
+    int bound = SPECIES.loopBound(n);
+    int i = 0;
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector.fromArray(SPECIES, samples, i).add(delta).min(1).max(0)
+              .intoArray(samples, i);
+    }
+    for (; i < n; i++) {
+      samples[i] = Math.max(0, Math.min(1, samples[i] + delta));
+    }
+  }
+
+  @Override
+  public void mix(double[] r, double[] g, double[] b, int n, double wr, double wg, double wb,
+                  double divisor) {
+    int bound = SPECIES.loopBound(n);
+    int i = 0;
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector sum = DoubleVector.fromArray(SPECIES, r, i).mul(wr)
+              .add(DoubleVector.fromArray(SPECIES, g, i).mul(wg))
+              .add(DoubleVector.fromArray(SPECIES, b, i).mul(wb))
+              .div(divisor);
+      sum.intoArray(r, i);
+      sum.intoArray(g, i);
+      sum.intoArray(b, i);
+    }
+    for (; i < n; i++) {
+      double sum = (wr * r[i] + wg * g[i] + wb * b[i]) / divisor;
+      r[i] = sum;
+      g[i] = sum;
+      b[i] = sum;
+    }
+  }
+
+  @Override
+  public void maximum(double[] r, double[] g, double[] b, int n) {
+    int bound = SPECIES.loopBound(n);
+    int i = 0;
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector max = DoubleVector.fromArray(SPECIES, r, i)
+              .max(DoubleVector.fromArray(SPECIES, g, i))
+              .max(DoubleVector.fromArray(SPECIES, b, i));
+      max.intoArray(r, i);
+      max.intoArray(g, i);
+      max.intoArray(b, i);
+    }
+    for (; i < n; i++) {
+      double max = Math.max(Math.max(r[i], g[i]), b[i]);
+      r[i] = max;
+      g[i] = max;
+      b[i] = max;
+    }
+  }
+}
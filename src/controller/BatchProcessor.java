@@ -0,0 +1,168 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import model.ImageProcessModel;
+import view.ImageView;
+
+/**
+ * Runs a command script against every file matching a glob on a fixed pool of workers. The
+ * script is compiled once before any file is processed, so an error in it stops the batch
+ * before any work is done. Each file gets its own model, so at most one file per worker is held
+ * in memory. Before a file is processed, these placeholders in the words of the script are
+ * replaced, so paths containing spaces stay whole:
+ * <ul>
+ *   <li>$input - the path of the input file</li>
+ *   <li>$output - the path of a file with the same name in the output folder</li>
+ *   <li>$name - the input file name without its extension</li>
+ *   <li>$dir - the output folder</li>
+ * </ul>
+ */
+public class BatchProcessor {
+  private final Supplier<ImageProcessModel> models;
+  private final int workers;
+
+  /**
+   * Constructs a batch processor.
+   *
+   * @param models - creates a new, empty model for each file
+   * @param workers - the number of files processed at the same time
+   * @throws IllegalArgumentException if the factory is null or workers is not positive
+   */
+  public BatchProcessor(Supplier<ImageProcessModel> models, int workers)
+          throws IllegalArgumentException {
+    if (models == null) {
+      throw new IllegalArgumentException("Model factory cannot be null");
+    }
+    if (workers <= 0) {
+      throw new IllegalArgumentException("Workers must be positive");
+    }
+    this.models = models;
+    this.workers = workers;
+  }
+
+  /**
+   * Lists the files matching a glob, where only the last path element may contain wildcards.
+   *
+   * @param glob - a pattern such as images/*.ppm
+   * @return the matching files in name order
+   * @throws IOException if the folder cannot be listed
+   */
+  public static List<Path> match(String glob) throws IOException {
+    int slash = Math.max(glob.lastIndexOf('/'), glob.lastIndexOf('\\'));
+    Path dir = Paths.get(slash < 0 ? "." : glob.substring(0, slash + 1));
+    List<Path> files = new ArrayList<Path>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob.substring(slash + 1))) {
+      for (Path p : stream) {
+        if (Files.isRegularFile(p)) {
+          files.add(slash < 0 ? p.getFileName() : p);
+        }
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  /**
+   * Runs a script against every input file, reporting progress and throughput to a view.
+   *
+   * @param script - the command script, using the placeholders above
+   * @param inputs - the files to process
+   * @param outputDir - the folder $output and $dir refer to, created if it does not exist
+   * @param v - the view progress is reported to
+   * @return the number of files whose script failed
+   * @throws IllegalArgumentException if the script has errors
+   * @throws IOException if the output folder cannot be created or the view cannot be written
+   */
+  public int run(String script, List<Path> inputs, Path outputDir, ImageView v)
+          throws IllegalArgumentException, IOException {
+    ScriptCompiler.compile(script, name -> false);
+    Files.createDirectories(outputDir);
+    ExecutorService pool = Executors.newFixedThreadPool(this.workers);
+    CompletionService<Result> done = new ExecutorCompletionService<Result>(pool);
+    long start = System.nanoTime();
+    long bytes = 0;
+    for (Path input : inputs) {
+      bytes += Files.size(input);
+      done.submit(() -> this.process(script, input, outputDir));
+    }
+    int failed = 0;
+    try {
+      for (int i = 1; i <= inputs.size(); i++) {
+        Result r = done.take().get();
+        if (r.error != null) {
+          failed++;
+        }
+        v.renderMessage("[" + i + "/" + inputs.size() + "] " + r.input
+                + (r.error == null ? " done in " : " failed (" + r.error + ") after ")
+                + r.millis + " ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Batch was interrupted");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Batch worker failed: " + e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+    double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+    v.renderMessage(String.format("Batch finished: %d files (%d failed) in %.2f s, "
+                    + "%.2f files/s, %.2f MB/s of input", inputs.size(), failed, seconds,
+            inputs.size() / seconds, bytes / 1e6 / seconds));
+    return failed;
+  }
+
+  /**
+   * Runs the script for one file with a fresh model, in order on the worker's thread, collecting
+   * the first error it reports.
+   */
+  private Result process(String script, Path input, Path outputDir) {
+    long start = System.nanoTime();
+    String file = input.getFileName().toString();
+    int dot = file.lastIndexOf('.');
+    String name = dot > 0 ? file.substring(0, dot) : file;
+    UnaryOperator<String> placeholders = word -> word
+            .replace("$input", input.toString())
+            .replace("$output", outputDir.resolve(file).toString())
+            .replace("$name", name)
+            .replace("$dir", outputDir.toString());
+    String error;
+    try {
+      List<String> errors = ScriptCompiler.compile(script, n -> false, placeholders)
+              .run(this.models.get(), Runnable::run);
+      error = errors.isEmpty() ? null : "Error: " + errors.get(0);
+    } catch (RuntimeException e) {
+      error = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+    return new Result(input, error, (System.nanoTime() - start) / 1000000);
+  }
+
+  /**
+   * Represents the outcome of processing one file.
+   */
+  private static class Result {
+    private final Path input;
+    private final String error;
+    private final long millis;
+
+    Result(Path input, String error, long millis) {
+      this.input = input;
+      this.error = error;
+      this.millis = millis;
+    }
+  }
+}
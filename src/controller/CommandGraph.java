@@ -0,0 +1,209 @@
+package controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import model.ImageProcessModel;
+
+/**
+ * Represents a compiled command script as a graph of commands, where each command waits only for
+ * the commands it depends on. A command depends on the commands that produced the images and
+ * files it reads, and on earlier commands that read or wrote the image or file it overwrites, so
+ * running independent branches at the same time gives the same result as running the script in
+ * order. Commands whose result is never saved are removed when the graph is built.
+ */
+public final class CommandGraph {
+  private final List<Command> commands;
+  private final int[][] dependencies;
+  private final int eliminated;
+
+  /**
+   * Constructs a graph from commands in script order.
+   *
+   * @param script - every command of the script, in the order they were written
+   */
+  CommandGraph(List<Command> script) {
+    boolean[] live = CommandGraph.live(script);
+    List<Command> kept = new ArrayList<Command>();
+    for (int i = 0; i < script.size(); i++) {
+      if (live[i]) {
+        kept.add(script.get(i));
+      }
+    }
+    this.commands = Collections.unmodifiableList(kept);
+    this.eliminated = script.size() - kept.size();
+    this.dependencies = new int[kept.size()][];
+    Map<String, Integer> writers = new HashMap<String, Integer>();
+    Map<String, List<Integer>> readers = new HashMap<String, List<Integer>>();
+    for (int i = 0; i < kept.size(); i++) {
+      Command c = kept.get(i);
+      List<Integer> deps = new ArrayList<Integer>();
+      for (String resource : c.reads) {
+        Integer writer = writers.get(resource);
+        if (writer != null && !deps.contains(writer)) {
+          deps.add(writer);
+        }
+        readers.computeIfAbsent(resource, k -> new ArrayList<Integer>()).add(i);
+      }
+      Integer writer = writers.get(c.write);
+      if (writer != null && !deps.contains(writer)) {
+        deps.add(writer);
+      }
+      for (int reader : readers.getOrDefault(c.write, Collections.emptyList())) {
+        if (reader != i && !deps.contains(reader)) {
+          deps.add(reader);
+        }
+      }
+      readers.remove(c.write);
+      writers.put(c.write, i);
+      this.dependencies[i] = deps.stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  /**
+   * Marks the commands whose result is saved, directly or through the commands that read it.
+   */
+  private static boolean[] live(List<Command> script) {
+    Map<String, Integer> writers = new HashMap<String, Integer>();
+    List<List<Integer>> inputs = new ArrayList<List<Integer>>();
+    for (int i = 0; i < script.size(); i++) {
+      List<Integer> in = new ArrayList<Integer>();
+      for (String resource : script.get(i).reads) {
+        Integer writer = writers.get(resource);
+        if (writer != null) {
+          in.add(writer);
+        }
+      }
+      inputs.add(in);
+      writers.put(script.get(i).write, i);
+    }
+    boolean[] live = new boolean[script.size()];
+    for (int i = script.size() - 1; i >= 0; i--) {
+      live[i] |= script.get(i).save;
+      if (live[i]) {
+        for (int p : inputs.get(i)) {
+          live[p] = true;
+        }
+      }
+    }
+    return live;
+  }
+
+  /**
+   * Retrieves the number of commands that will run.
+   *
+   * @return the number of commands left after unused ones were removed
+   */
+  public int getCommandCount() {
+    return this.commands.size();
+  }
+
+  /**
+   * Retrieves the number of commands removed because their result is never saved.
+   *
+   * @return the number of unused commands
+   */
+  public int getEliminatedCount() {
+    return this.eliminated;
+  }
+
+  /**
+   * Retrieves the commands a command waits for.
+   *
+   * @param index - position of the command among the commands that will run
+   * @return the positions of the commands it depends on
+   */
+  public int[] getDependencies(int index) {
+    return this.dependencies[index].clone();
+  }
+
+  /**
+   * Runs every command against a model, starting each one as soon as the commands it depends on
+   * have finished. A command that fails stops only the commands depending on it.
+   *
+   * @param m - the model the commands are run against
+   * @param executor - runs the commands; a direct executor runs the script in order
+   * @return an error for every command that failed, in script order
+   */
+  public List<String> run(ImageProcessModel m, Executor executor) {
+    String[] errors = new String[this.commands.size()];
+    List<CompletableFuture<Void>> done = new ArrayList<CompletableFuture<Void>>();
+    for (int i = 0; i < this.commands.size(); i++) {
+      Command c = this.commands.get(i);
+      int index = i;
+      CompletableFuture<?>[] deps = new CompletableFuture<?>[this.dependencies[i].length];
+      for (int j = 0; j < deps.length; j++) {
+        deps[j] = done.get(this.dependencies[i][j]);
+      }
+      done.add(CompletableFuture.allOf(deps).thenRunAsync(() -> {
+        try {
+          c.action.run(m);
+        } catch (IOException | RuntimeException e) {
+          errors[index] = "Line " + c.line + ": " + e.getMessage();
+          throw new CompletionException(e);
+        }
+      }, executor));
+    }
+    try {
+      CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      // reported through errors
+    }
+    List<String> failed = new ArrayList<String>();
+    for (String e : errors) {
+      if (e != null) {
+        failed.add(e);
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Represents work done by one command against a model.
+   */
+  @FunctionalInterface
+  interface Action {
+    /**
+     * Runs the command.
+     *
+     * @param m - the model the command is run against
+     * @throws IOException if a file cannot be read or written
+     */
+    void run(ImageProcessModel m) throws IOException;
+  }
+
+  /**
+   * Represents one command of a script and the images and files it reads and writes.
+   */
+  static final class Command {
+    private final int line;
+    private final List<String> reads;
+    private final String write;
+    private final boolean save;
+    private final Action action;
+
+    /**
+     * Constructs a command.
+     *
+     * @param line - the script line the command starts on
+     * @param reads - the images and files read
+     * @param write - the image or file written
+     * @param save - whether the command writes a file, which always keeps it in the graph
+     * @param action - the work done
+     */
+    Command(int line, List<String> reads, String write, boolean save, Action action) {
+      this.line = line;
+      this.reads = reads;
+      this.write = write;
+      this.save = save;
+      this.action = action;
+    }
+  }
+}
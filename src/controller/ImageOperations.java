@@ -27,6 +27,13 @@ public interface ImageOperations {
    */
   void save() throws IOException;
 
+  /**
+   * Saves the image with a given name to a given path as a raw P6 file.
+   *
+   * @throws IOException when cannot transmit to view
+   */
+  void saveBinary() throws IOException;
+
 
   /**
    * Mirrors an image horizontally.
@@ -100,6 +107,118 @@ public interface ImageOperations {
    */
   void brighten() throws IllegalArgumentException, IOException;
 
+  /**
+   * Blurs the image with a Gaussian kernel of a given radius.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException              if view cannot access this
+   */
+  void gaussianBlur() throws IllegalArgumentException, IOException;
+
+  /**
+   * Blurs the image by averaging a square of a given radius.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException              if view cannot access this
+   */
+  void boxBlur() throws IllegalArgumentException, IOException;
+
+  /**
+   * Sharpens the image.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException              if view cannot access this
+   */
+  void sharpen() throws IllegalArgumentException, IOException;
+
+  /**
+   * Highlights the edges of the image.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException              if view cannot access this
+   */
+  void edgeDetect() throws IllegalArgumentException, IOException;
+
+  /**
+   * Resizes the image to a given width and height with a given filter.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException              if view cannot access this
+   */
+  void resize() throws IllegalArgumentException, IOException;
+
+  /**
+   * Scales the image by a given factor with a given filter.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException              if view cannot access this
+   */
+  void scale() throws IllegalArgumentException, IOException;
+
+  /**
+   * Stretches every channel of the image on its own to span the whole range of samples.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException              if view cannot access this
+   */
+  void autoLevels() throws IllegalArgumentException, IOException;
+
+  /**
+   * Stretches all channels of the image alike so that its luma spans the whole range of
+   * samples.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException              if view cannot access this
+   */
+  void autoContrast() throws IllegalArgumentException, IOException;
+
+  /**
+   * Shows the statistics of the image and writes its histograms to a file.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException              if view cannot access this
+   */
+  void histogram() throws IllegalArgumentException, IOException;
+
+  /**
+   * Streams a file through point operations and flips into another file, a few rows at a time.
+   *
+   * @throws IllegalArgumentException if an operation cannot be streamed or the file is invalid
+   * @throws IOException              if view cannot access this
+   */
+  void stream() throws IllegalArgumentException, IOException;
+
+  /**
+   * Compiles a command script, then runs it with independent commands in parallel.
+   *
+   * @throws IllegalArgumentException if the script has errors
+   * @throws IOException              if view cannot access this
+   */
+  void runScript() throws IllegalArgumentException, IOException;
+
+  /**
+   * Runs a command script against every file matching a glob, in parallel.
+   *
+   * @throws IOException if view cannot access this
+   */
+  void batch() throws IOException;
+
+  /**
+   * Shows the calls, latency, throughput and bytes of every operation run so far.
+   *
+   * @throws IOException if view cannot access this
+   */
+  void stats() throws IOException;
+
+  /**
+   * Writes the statistics of every operation run so far to a file as JSON or in the Prometheus
+   * text format.
+   *
+   * @throws IllegalArgumentException if the format is unknown
+   * @throws IOException              if view cannot access this
+   */
+  void statsExport() throws IllegalArgumentException, IOException;
+
   /**
    * Sets the source path folder for loading and saving images.
    *
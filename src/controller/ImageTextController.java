@@ -2,9 +2,23 @@ package controller;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 import model.ImageProcessModel;
+import model.InstrumentedImageProcessModel;
+import model.ImageProcessOperations;
+import model.ImageStatistics;
+import model.PpmFormat;
+import model.PpmStreamer;
+import model.ResampleFilter;
 import view.ImageView;
 
 /**
@@ -14,6 +28,7 @@ public class ImageTextController implements ImageProcessController, ImageOperati
   private final ImageProcessModel m;
   private final ImageView v;
   private final Scanner scan;
+  private final Supplier<ImageProcessModel> models;
   private String imagePath = "";
 
   /**
@@ -26,6 +41,22 @@ public class ImageTextController implements ImageProcessController, ImageOperati
    */
   public ImageTextController(ImageProcessModel m, ImageView v, Readable r)
           throws IllegalArgumentException {
+    this(m, v, r, ImageProcessOperations::new);
+  }
+
+  /**
+   * Constructs a controller for a text view that creates models for batch runs with the given
+   * factory.
+   *
+   * @param m - model object
+   * @param v - view object
+   * @param r - readable object
+   * @param models - creates a new, empty model for each file of a batch
+   * @throws IllegalArgumentException if any parameters are null
+   */
+  public ImageTextController(ImageProcessModel m, ImageView v, Readable r,
+                             Supplier<ImageProcessModel> models)
+          throws IllegalArgumentException {
     if (m == null) {
       throw new IllegalArgumentException("Model cannot be null");
     }
@@ -35,11 +66,15 @@ public class ImageTextController implements ImageProcessController, ImageOperati
     if (r == null) {
       throw new IllegalArgumentException("Readable cannot be null");
     }
+    if (models == null) {
+      throw new IllegalArgumentException("Model factory cannot be null");
+    }
 
     this.m = m;
     this.v = v;
     this.scan = new Scanner(r);
     this.scan.useDelimiter(",|\\s+");
+    this.models = models;
   }
 
   /**
@@ -52,6 +87,7 @@ public class ImageTextController implements ImageProcessController, ImageOperati
     this.v.renderMessage("Operations:\n"
             + "load image-path image-name\n"
             + "save image-path image-name\n"
+            + "save-binary image-path image-name\n"
             + "red-component image-name destination\n"
             + "green-component image-name destination\n"
             + "blue-component image-name destination\n"
@@ -61,6 +97,20 @@ public class ImageTextController implements ImageProcessController, ImageOperati
             + "brighten num image-name destination\n"
             + "horizontal-flip image-name destination\n"
             + "vertical-flip image-name destination\n"
+            + "gaussian-blur radius image-name destination\n"
+            + "box-blur radius image-name destination\n"
+            + "sharpen image-name destination\n"
+            + "edge-detect image-name destination\n"
+            + "resize width height nearest|bilinear|bicubic|lanczos image-name destination\n"
+            + "scale factor nearest|bilinear|bicubic|lanczos image-name destination\n"
+            + "auto-levels image-name destination\n"
+            + "auto-contrast image-name destination\n"
+            + "histogram csv-path image-name\n"
+            + "stream input-path output-path operation+operation...\n"
+            + "run-script script-path\n"
+            + "batch script-path input-glob output-folder\n"
+            + "stats\n"
+            + "stats-export file-path json|prometheus\n"
             + "set-source destination\n"
             + "q");
   }
@@ -85,6 +135,9 @@ public class ImageTextController implements ImageProcessController, ImageOperati
             case "save":
               this.save();
               break;
+            case "save-binary":
+              this.saveBinary();
+              break;
             case "red-component":
               this.redComponent();
               break;
@@ -112,6 +165,48 @@ public class ImageTextController implements ImageProcessController, ImageOperati
             case "vertical-flip":
               this.verticalFlip();
               break;
+            case "gaussian-blur":
+              this.gaussianBlur();
+              break;
+            case "box-blur":
+              this.boxBlur();
+              break;
+            case "sharpen":
+              this.sharpen();
+              break;
+            case "edge-detect":
+              this.edgeDetect();
+              break;
+            case "resize":
+              this.resize();
+              break;
+            case "scale":
+              this.scale();
+              break;
+            case "auto-levels":
+              this.autoLevels();
+              break;
+            case "auto-contrast":
+              this.autoContrast();
+              break;
+            case "histogram":
+              this.histogram();
+              break;
+            case "stream":
+              this.stream();
+              break;
+            case "run-script":
+              this.runScript();
+              break;
+            case "batch":
+              this.batch();
+              break;
+            case "stats":
+              this.stats();
+              break;
+            case "stats-export":
+              this.statsExport();
+              break;
             case "set-source":
               this.setSourcePath();
               break;
@@ -161,6 +256,19 @@ public class ImageTextController implements ImageProcessController, ImageOperati
     this.v.renderMessage(name + " has been saved as: " + destName);
   }
 
+  /**
+   * Saves the image with a given name to a given path as a raw P6 file.
+   *
+   * @throws IOException when cannot transmit to view
+   */
+  @Override
+  public void saveBinary() throws IOException {
+    String destName = this.imagePath + scan.next();
+    String name = scan.next();
+    this.m.save(destName, name, PpmFormat.P6);
+    this.v.renderMessage(name + " has been saved as a binary PPM: " + destName);
+  }
+
   /**
    * Mirrors an image horizontally.
    *
@@ -303,6 +411,310 @@ public class ImageTextController implements ImageProcessController, ImageOperati
             + " and named: " + destName);
   }
 
+  /**
+   * Blurs the image with a Gaussian kernel of a given radius.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void gaussianBlur() throws IllegalArgumentException, IOException {
+    int radius;
+    try {
+      radius = scan.nextInt();
+    } catch (IllegalArgumentException e) {
+      this.v.renderMessage("Not an integer");
+      return;
+    }
+    String name = scan.next();
+    String destName = scan.next();
+    this.m.gaussianBlur(radius, name, destName);
+    this.v.renderMessage(name + " has been saved as a gaussian blurred image with a radius of "
+            + radius + " named: " + destName);
+  }
+
+  /**
+   * Blurs the image by averaging a square of a given radius.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void boxBlur() throws IllegalArgumentException, IOException {
+    int radius;
+    try {
+      radius = scan.nextInt();
+    } catch (IllegalArgumentException e) {
+      this.v.renderMessage("Not an integer");
+      return;
+    }
+    String name = scan.next();
+    String destName = scan.next();
+    this.m.boxBlur(radius, name, destName);
+    this.v.renderMessage(name + " has been saved as a box blurred image with a radius of "
+            + radius + " named: " + destName);
+  }
+
+  /**
+   * Sharpens the image.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void sharpen() throws IllegalArgumentException, IOException {
+    String name = scan.next();
+    String destName = scan.next();
+    this.m.sharpen(name, destName);
+    this.v.renderMessage(name + " has been saved as a sharpened image named: " + destName);
+  }
+
+  /**
+   * Highlights the edges of the image.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void edgeDetect() throws IllegalArgumentException, IOException {
+    String name = scan.next();
+    String destName = scan.next();
+    this.m.edgeDetect(name, destName);
+    this.v.renderMessage(name + " has been saved as an edge detected image named: " + destName);
+  }
+
+  /**
+   * Resizes the image to a given width and height with a given filter.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void resize() throws IllegalArgumentException, IOException {
+    int width;
+    int height;
+    try {
+      width = scan.nextInt();
+      height = scan.nextInt();
+    } catch (IllegalArgumentException e) {
+      this.v.renderMessage("Not an integer");
+      return;
+    }
+    ResampleFilter filter = ResampleFilter.fromName(scan.next());
+    String name = scan.next();
+    String destName = scan.next();
+    this.m.resize(width, height, filter, name, destName);
+    this.v.renderMessage(name + " has been resized to " + width + "x" + height + " with "
+            + filter.getName() + " and named: " + destName);
+  }
+
+  /**
+   * Scales the image by a given factor with a given filter.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void scale() throws IllegalArgumentException, IOException {
+    double factor;
+    try {
+      factor = Double.parseDouble(scan.next());
+    } catch (NumberFormatException e) {
+      this.v.renderMessage("Not a number");
+      return;
+    }
+    ResampleFilter filter = ResampleFilter.fromName(scan.next());
+    String name = scan.next();
+    String destName = scan.next();
+    this.m.scale(factor, filter, name, destName);
+    this.v.renderMessage(name + " has been scaled by " + factor + " with " + filter.getName()
+            + " and named: " + destName);
+  }
+
+  /**
+   * Stretches every channel of the image on its own to span the whole range of samples.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void autoLevels() throws IllegalArgumentException, IOException {
+    String name = scan.next();
+    String destName = scan.next();
+    this.m.autoLevels(name, destName);
+    this.v.renderMessage(name + " has been saved as an auto-leveled image named: " + destName);
+  }
+
+  /**
+   * Stretches all channels of the image alike so that its luma spans the whole range of
+   * samples.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void autoContrast() throws IllegalArgumentException, IOException {
+    String name = scan.next();
+    String destName = scan.next();
+    this.m.autoContrast(name, destName);
+    this.v.renderMessage(name + " has been saved as an auto-contrasted image named: "
+            + destName);
+  }
+
+  /**
+   * Shows the smallest, largest and mean sample of every channel and of the luma of the image,
+   * and writes its histograms to a file as comma separated values.
+   *
+   * @throws IllegalArgumentException if the model cannot call this methods
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void histogram() throws IllegalArgumentException, IOException {
+    Path file = Paths.get(this.imagePath + scan.next());
+    String name = scan.next();
+    ImageStatistics stats = this.m.getStatistics(name);
+    try {
+      Files.writeString(file, stats.toCsv());
+    } catch (IOException e) {
+      this.v.renderMessage("Histogram cannot be written: " + e.getMessage());
+      return;
+    }
+    this.v.renderMessage(stats.summary());
+    this.v.renderMessage("Histogram of " + name + " has been written to " + file);
+  }
+
+  /**
+   * Streams a file through point operations and flips into another file of the same encoding,
+   * a few rows at a time, without loading it. Operations are joined with '+', and brighten
+   * takes its amount after a colon, as in brighten:10+horizontal-flip.
+   *
+   * @throws IllegalArgumentException if an operation cannot be streamed or the file is invalid
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void stream() throws IllegalArgumentException, IOException {
+    String input = this.imagePath + scan.next();
+    String output = this.imagePath + scan.next();
+    PpmStreamer streamer = new PpmStreamer(Arrays.asList(scan.next().split("\\+")));
+    try {
+      streamer.stream(input, output);
+    } catch (FileNotFoundException e) {
+      this.v.renderMessage("File cannot be retrieved: " + e.getMessage());
+      return;
+    }
+    this.v.renderMessage(input + " has been streamed through "
+            + String.join(", ", streamer.getOperations()) + " into " + output);
+  }
+
+  /**
+   * Compiles a command script, reporting every error before anything runs, then runs the
+   * commands whose results are saved, with independent commands in parallel.
+   *
+   * @throws IllegalArgumentException if the script has errors
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void runScript() throws IllegalArgumentException, IOException {
+    String script = this.imagePath + scan.next();
+    String commands;
+    try {
+      commands = Files.readString(Paths.get(script));
+    } catch (IOException e) {
+      this.v.renderMessage("Script cannot be read: " + e.getMessage());
+      return;
+    }
+    CommandGraph graph = ScriptCompiler.compile(commands, name -> {
+      try {
+        this.m.getImage(name);
+        return true;
+      } catch (IllegalArgumentException e) {
+        return false;
+      }
+    });
+    this.v.renderMessage("Running " + graph.getCommandCount() + " commands of " + script + ", "
+            + graph.getEliminatedCount() + " unused commands skipped");
+    ExecutorService pool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors());
+    List<String> errors;
+    try {
+      errors = graph.run(this.m, pool);
+    } finally {
+      pool.shutdown();
+    }
+    for (String error : errors) {
+      this.v.renderMessage("Error: " + error);
+    }
+    this.v.renderMessage("Script finished with " + errors.size() + " failed commands");
+  }
+
+  /**
+   * Runs a command script against every file matching a glob, with one worker per processor.
+   * The script may refer to each file with $input, $output, $name and $dir.
+   *
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void batch() throws IOException {
+    String script = this.imagePath + scan.next();
+    String glob = this.imagePath + scan.next();
+    Path outputDir = Paths.get(this.imagePath + scan.next());
+    String commands;
+    List<Path> inputs;
+    try {
+      commands = Files.readString(Paths.get(script));
+      inputs = BatchProcessor.match(glob);
+    } catch (IOException e) {
+      this.v.renderMessage("Batch cannot start: " + e.getMessage());
+      return;
+    }
+    this.v.renderMessage("Running " + script + " on " + inputs.size() + " files");
+    new BatchProcessor(this.models, Runtime.getRuntime().availableProcessors())
+            .run(commands, inputs, outputDir, this.v);
+  }
+
+  /**
+   * Shows the calls, latency, throughput and bytes of every operation run so far, when the
+   * model records them.
+   *
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void stats() throws IOException {
+    if (!(this.m instanceof InstrumentedImageProcessModel)) {
+      this.v.renderMessage("Statistics are not recorded in this session");
+      return;
+    }
+    this.v.renderMessage(((InstrumentedImageProcessModel) this.m).summary());
+  }
+
+  /**
+   * Writes the statistics of every operation run so far to a file as JSON or in the Prometheus
+   * text format, when the model records them.
+   *
+   * @throws IllegalArgumentException if the format is unknown
+   * @throws IOException if view cannot access this
+   */
+  @Override
+  public void statsExport() throws IllegalArgumentException, IOException {
+    Path file = Paths.get(this.imagePath + scan.next());
+    String format = scan.next().toLowerCase();
+    if (!format.equals("json") && !format.equals("prometheus")) {
+      throw new IllegalArgumentException(format + " is not json or prometheus");
+    }
+    if (!(this.m instanceof InstrumentedImageProcessModel)) {
+      this.v.renderMessage("Statistics are not recorded in this session");
+      return;
+    }
+    InstrumentedImageProcessModel stats = (InstrumentedImageProcessModel) this.m;
+    try {
+      Files.writeString(file, format.equals("json") ? stats.toJson() : stats.toPrometheus());
+    } catch (IOException e) {
+      this.v.renderMessage("Statistics cannot be written: " + e.getMessage());
+      return;
+    }
+    this.v.renderMessage("Statistics have been written to " + file);
+  }
+
   /**
    * Sets the source path folder for loading and saving images.
    *
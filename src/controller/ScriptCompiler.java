@@ -0,0 +1,299 @@
+package controller;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import model.PpmFormat;
+import model.PpmStreamer;
+import model.ResampleFilter;
+
+/**
+ * Compiles a whole command script into a {@link CommandGraph} before any of it runs. Every
+ * command is checked for its name, its number of arguments, its integer arguments and whether
+ * the images it reads were created by an earlier command, so a mistake anywhere in a script is
+ * reported before the first image is touched. Scripts use the same commands as
+ * {@link ImageTextController}, separated by whitespace or commas; set-source applies to the
+ * paths of the commands after it and quit ends the script.
+ */
+public final class ScriptCompiler {
+
+  private ScriptCompiler() {
+  }
+
+  /**
+   * Compiles a script.
+   *
+   * @param script - the text of the script
+   * @param existing - tells whether an image the script reads before creating it is already
+   *                 held by the model the script will run against
+   * @return the graph of commands whose results are saved
+   * @throws IllegalArgumentException listing every error found, each with its line number
+   */
+  public static CommandGraph compile(String script, Predicate<String> existing)
+          throws IllegalArgumentException {
+    return ScriptCompiler.compile(script, existing, UnaryOperator.identity());
+  }
+
+  /**
+   * Compiles a script, rewriting each of its words once the script is split into words, so a
+   * value substituted into a word is kept whole even if it contains spaces or commas.
+   *
+   * @param script - the text of the script
+   * @param existing - tells whether an image the script reads before creating it is already
+   *                 held by the model the script will run against
+   * @param substitute - rewrites each word of the script
+   * @return the graph of commands whose results are saved
+   * @throws IllegalArgumentException listing every error found, each with its line number
+   */
+  public static CommandGraph compile(String script, Predicate<String> existing,
+                                     UnaryOperator<String> substitute)
+          throws IllegalArgumentException {
+    List<String> tokens = new ArrayList<String>();
+    List<Integer> lines = new ArrayList<Integer>();
+    String[] text = script.split("\\R", -1);
+    for (int i = 0; i < text.length; i++) {
+      for (String token : text[i].split(",|\\s+")) {
+        if (!token.isEmpty()) {
+          tokens.add(substitute.apply(token));
+          lines.add(i + 1);
+        }
+      }
+    }
+
+    List<CommandGraph.Command> commands = new ArrayList<CommandGraph.Command>();
+    List<String> errors = new ArrayList<String>();
+    Set<String> defined = new HashSet<String>();
+    String source = "";
+    int t = 0;
+    while (t < tokens.size()) {
+      String name = tokens.get(t).toLowerCase();
+      int line = lines.get(t);
+      int arity = ScriptCompiler.arity(name);
+      if (arity < 0) {
+        errors.add("Line " + line + ": " + tokens.get(t) + " is not a supported operation");
+        while (t < tokens.size() && lines.get(t) == line) {
+          t++;
+        }
+        continue;
+      }
+      if (t + arity >= tokens.size()) {
+        errors.add("Line " + line + ": " + name + " expects " + arity + " arguments");
+        break;
+      }
+      String[] args = tokens.subList(t + 1, t + 1 + arity).toArray(new String[0]);
+      t += arity + 1;
+      if (name.equals("quit")) {
+        break;
+      }
+      if (name.equals("set-source")) {
+        source = args[0];
+        continue;
+      }
+
+      String src = args[arity - 2];
+      String dest = args[arity - 1];
+      if (name.equals("load")) {
+        String path = source + src;
+        defined.add(dest);
+        commands.add(new CommandGraph.Command(line, Arrays.asList("file:" + path),
+            "image:" + dest, false, m -> {
+              try {
+                m.load(path, dest);
+              } catch (FileNotFoundException e) {
+                throw new IllegalArgumentException("File cannot be retrieved: " + e.getMessage());
+              }
+            }));
+        continue;
+      }
+      if (name.equals("histogram")) {
+        String path = source + src;
+        if (!defined.contains(dest) && !existing.test(dest)) {
+          errors.add("Line " + line + ": " + dest + " does not exist");
+        }
+        commands.add(new CommandGraph.Command(line, Arrays.asList("image:" + dest),
+            "file:" + path, true,
+            m -> Files.writeString(Paths.get(path), m.getStatistics(dest).toCsv())));
+        continue;
+      }
+      if (name.equals("save") || name.equals("save-binary")) {
+        String path = source + src;
+        PpmFormat format = name.equals("save") ? PpmFormat.P3 : PpmFormat.P6;
+        if (!defined.contains(dest) && !existing.test(dest)) {
+          errors.add("Line " + line + ": " + dest + " does not exist");
+        }
+        commands.add(new CommandGraph.Command(line, Arrays.asList("image:" + dest),
+            "file:" + path, true, m -> m.save(path, dest, format)));
+        continue;
+      }
+
+      if (name.equals("stream")) {
+        String input = source + args[0];
+        String output = source + args[1];
+        try {
+          PpmStreamer streamer = new PpmStreamer(Arrays.asList(args[2].split("\\+")));
+          commands.add(new CommandGraph.Command(line, Arrays.asList("file:" + input),
+              "file:" + output, true, m -> {
+                try {
+                  streamer.stream(input, output);
+                } catch (FileNotFoundException e) {
+                  throw new IllegalArgumentException("File cannot be retrieved: "
+                          + e.getMessage());
+                }
+              }));
+        } catch (IllegalArgumentException e) {
+          errors.add("Line " + line + ": " + e.getMessage());
+        }
+        continue;
+      }
+
+      int amount = 0;
+      if (arity == 3) {
+        try {
+          amount = Integer.parseInt(args[0]);
+          if (name.endsWith("-blur") && amount <= 0) {
+            errors.add("Line " + line + ": the radius of " + name + " must be positive");
+          }
+        } catch (NumberFormatException e) {
+          errors.add("Line " + line + ": " + args[0] + " is not an integer");
+        }
+      }
+      CommandGraph.Action action = ScriptCompiler.operation(name, amount, src, dest);
+      if (name.equals("resize") || name.equals("scale")) {
+        try {
+          action = ScriptCompiler.resampling(name, args);
+        } catch (IllegalArgumentException e) {
+          errors.add("Line " + line + ": " + e.getMessage());
+        }
+      }
+      if (!defined.contains(src) && !existing.test(src)) {
+        errors.add("Line " + line + ": " + src + " does not exist");
+      }
+      defined.add(dest);
+      commands.add(new CommandGraph.Command(line, Arrays.asList("image:" + src),
+          "image:" + dest, false, action));
+    }
+
+    if (!errors.isEmpty()) {
+      throw new IllegalArgumentException("Script has " + errors.size()
+              + (errors.size() == 1 ? " error: " : " errors: ") + String.join("; ", errors));
+    }
+    return new CommandGraph(commands);
+  }
+
+  /**
+   * Retrieves the number of arguments a command takes.
+   *
+   * @param name - the command in lower case
+   * @return the number of arguments, or -1 if the command cannot be used in a script
+   */
+  private static int arity(String name) {
+    switch (name) {
+      case "quit":
+        return 0;
+      case "set-source":
+        return 1;
+      case "brighten":
+      case "gaussian-blur":
+      case "box-blur":
+      case "stream":
+        return 3;
+      case "scale":
+        return 4;
+      case "resize":
+        return 5;
+      case "load":
+      case "save":
+      case "save-binary":
+      case "red-component":
+      case "green-component":
+      case "blue-component":
+      case "value-component":
+      case "luma-component":
+      case "intensity-component":
+      case "horizontal-flip":
+      case "vertical-flip":
+      case "sharpen":
+      case "edge-detect":
+      case "auto-levels":
+      case "auto-contrast":
+      case "histogram":
+        return 2;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Creates the work done by a resize or scale command, checking its size and filter.
+   */
+  private static CommandGraph.Action resampling(String name, String[] args)
+          throws IllegalArgumentException {
+    String src = args[args.length - 2];
+    String dest = args[args.length - 1];
+    ResampleFilter filter = ResampleFilter.fromName(args[args.length - 3]);
+    try {
+      if (name.equals("scale")) {
+        double factor = Double.parseDouble(args[0]);
+        if (!(factor > 0) || Double.isInfinite(factor)) {
+          throw new IllegalArgumentException("the factor of scale must be positive");
+        }
+        return m -> m.scale(factor, filter, src, dest);
+      }
+      int width = Integer.parseInt(args[0]);
+      int height = Integer.parseInt(args[1]);
+      if (width <= 0 || height <= 0) {
+        throw new IllegalArgumentException("the dimensions of resize must be positive");
+      }
+      return m -> m.resize(width, height, filter, src, dest);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("the size of " + name + " is not a number");
+    }
+  }
+
+  /**
+   * Creates the work done by an image operation.
+   */
+  private static CommandGraph.Action operation(String name, int amount, String src,
+                                               String dest) {
+    switch (name) {
+      case "red-component":
+        return m -> m.redComponent(src, dest);
+      case "green-component":
+        return m -> m.greenComponent(src, dest);
+      case "blue-component":
+        return m -> m.blueComponent(src, dest);
+      case "value-component":
+        return m -> m.valueComponent(src, dest);
+      case "luma-component":
+        return m -> m.lumaComponent(src, dest);
+      case "intensity-component":
+        return m -> m.intensityComponent(src, dest);
+      case "horizontal-flip":
+        return m -> m.horizontalFlip(src, dest);
+      case "vertical-flip":
+        return m -> m.verticalFlip(src, dest);
+      case "sharpen":
+        return m -> m.sharpen(src, dest);
+      case "edge-detect":
+        return m -> m.edgeDetect(src, dest);
+      case "brighten":
+        return m -> m.brighten(amount, src, dest);
+      case "gaussian-blur":
+        return m -> m.gaussianBlur(amount, src, dest);
+      case "auto-levels":
+        return m -> m.autoLevels(src, dest);
+      case "auto-contrast":
+        return m -> m.autoContrast(src, dest);
+      default:
+        return m -> m.boxBlur(amount, src, dest);
+    }
+  }
+}
@@ -0,0 +1,511 @@
+package model;
+
+import java.io.FileNotFoundException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Represents a model whose operations return at once with a future of their result. Operations
+ * are ordered by the names they use: an operation waits for the operation that last produced
+ * its source, and for every operation still reading or writing its destination, so independent
+ * work overlaps while each name sees its operations in the order they were called. Loads and
+ * saves run on an executor for blocking file access, and the other operations on an executor
+ * for computation.
+ *
+ * <p>Cancelling a future before its operation starts keeps the operation from running, and
+ * operations depending on it complete with the cancellation. An operation that has started
+ * runs to the end, and the names it uses stay held until it returns, so later operations on
+ * them still wait for it. When an operation fails, the operations depending on it fail with
+ * the same exception.</p>
+ */
+public class AsyncImageProcessModel implements ImageProcessViewModel, AutoCloseable {
+  private final ImageProcessModel model;
+  private final Executor io;
+  private final Executor compute;
+  private final ExecutorService owned;
+  private final Map<String, CompletableFuture<?>> writers;
+  private final Map<String, CompletableFuture<?>> users;
+
+  /**
+   * Constructs an asynchronous model that reads and writes files on a pool of daemon threads
+   * created as needed and computes on the common fork-join pool.
+   *
+   * @param model - the model that holds the images and runs the operations, which must allow
+   *              calls from several threads at once
+   * @throws IllegalArgumentException if the model is null
+   */
+  public AsyncImageProcessModel(ImageProcessModel model) throws IllegalArgumentException {
+    this(model, Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "image-io");
+      t.setDaemon(true);
+      return t;
+    }), ForkJoinPool.commonPool(), true);
+  }
+
+  /**
+   * Constructs an asynchronous model with the given executors.
+   *
+   * @param model - the model that holds the images and runs the operations, which must allow
+   *              calls from several threads at once
+   * @param io - runs loads and saves
+   * @param compute - runs every other operation
+   * @throws IllegalArgumentException if any parameter is null
+   */
+  public AsyncImageProcessModel(ImageProcessModel model, Executor io, Executor compute)
+          throws IllegalArgumentException {
+    this(model, io, compute, false);
+  }
+
+  private AsyncImageProcessModel(ImageProcessModel model, Executor io, Executor compute,
+                                 boolean owned) throws IllegalArgumentException {
+    if (model == null || io == null || compute == null) {
+      throw new IllegalArgumentException("Model and executors cannot be null");
+    }
+    this.model = model;
+    this.io = io;
+    this.compute = compute;
+    this.owned = owned ? (ExecutorService) io : null;
+    this.writers = new ConcurrentHashMap<String, CompletableFuture<?>>();
+    this.users = new ConcurrentHashMap<String, CompletableFuture<?>>();
+  }
+
+  /**
+   * Retrieves an image with a given name as it is now, without waiting for pending operations.
+   *
+   * @param name - name of an image
+   * @return the image
+   * @throws IllegalArgumentException if the given name cannot be found
+   */
+  @Override
+  public Image getImage(String name) throws IllegalArgumentException {
+    return this.model.getImage(name);
+  }
+
+  /**
+   * Retrieves an image with a given name as it is stored now, without waiting for pending
+   * operations or computing operations that were recorded lazily.
+   *
+   * @param name - name of an image
+   * @return the image
+   * @throws IllegalArgumentException if the given name cannot be found
+   */
+  @Override
+  public Image getStoredImage(String name) throws IllegalArgumentException {
+    return this.model.getStoredImage(name);
+  }
+
+  /**
+   * Retrieves the pyramid of an image with a given name as it is now, without waiting for
+   * pending operations.
+   *
+   * @param name - name of an image
+   * @return the pyramid
+   * @throws IllegalArgumentException if the given name cannot be found
+   */
+  @Override
+  public ImagePyramid getPyramid(String name) throws IllegalArgumentException {
+    return this.model.getPyramid(name);
+  }
+
+  /**
+   * Retrieves the statistics of an image with a given name as it is now, without waiting for
+   * pending operations.
+   *
+   * @param name - name of an image
+   * @return the statistics
+   * @throws IllegalArgumentException if the given name cannot be found
+   */
+  @Override
+  public ImageStatistics getStatistics(String name) throws IllegalArgumentException {
+    return this.model.getStatistics(name);
+  }
+
+  /**
+   * Computes the statistics of an image with a given name once the operation producing it has
+   * finished, on the executor for computation.
+   *
+   * @param name - name of an image
+   * @return a future of the statistics
+   */
+  public CompletableFuture<ImageStatistics> getStatisticsAsync(String name) {
+    ImageStatistics[] stats = new ImageStatistics[1];
+    return this.schedule(new String[] {name}, null, this.compute,
+        () -> stats[0] = this.model.getStatistics(name)).thenApply(image -> stats[0]);
+  }
+
+  /**
+   * Retrieves an image with a given name once the operation producing it has finished.
+   *
+   * @param name - name of an image
+   * @return a future of the image
+   */
+  public CompletableFuture<Image> getImageAsync(String name) {
+    return this.schedule(new String[] {name}, null, Runnable::run, () -> { });
+  }
+
+  /**
+   * Retrieves a future that completes when every operation called so far has finished, whether
+   * it succeeded or not.
+   *
+   * @return a future of nothing
+   */
+  public CompletableFuture<Void> idle() {
+    CompletableFuture<?>[] all = this.users.values().toArray(new CompletableFuture<?>[0]);
+    return CompletableFuture.allOf(all).handle((v, e) -> null);
+  }
+
+  /**
+   * Shuts down the pool for file access if this model created it. Operations already called
+   * still run.
+   */
+  @Override
+  public void close() {
+    if (this.owned != null) {
+      this.owned.shutdown();
+    }
+  }
+
+  /**
+   * Represents a call to the wrapped model.
+   */
+  @FunctionalInterface
+  private interface Task {
+    void run() throws Exception;
+  }
+
+  /**
+   * Queues a task after the operations it depends on. Later operations are ordered after a
+   * second future that completes only once the task has returned or been skipped, since
+   * cancelling the future given to the caller completes it while the task may still run. A
+   * task that fails or is cancelled stays the writer of its name until another task writes it,
+   * so operations reading the name later still complete with its exception, while a write
+   * waits for the earlier users of its name whether they succeeded or not.
+   *
+   * @param reads - the names the task reads
+   * @param write - the name the task writes, or null
+   * @param executor - runs the task
+   * @param task - the task
+   * @return a future of the image written, or of the first image read if nothing is written
+   */
+  private synchronized CompletableFuture<Image> schedule(String[] reads, String write,
+                                                        Executor executor, Task task) {
+    int n = reads.length + (write == null ? 0 : 1);
+    CompletableFuture<?>[] deps = new CompletableFuture<?>[n];
+    for (int i = 0; i < reads.length; i++) {
+      deps[i] = this.writers.getOrDefault(reads[i], CompletableFuture.completedFuture(null));
+    }
+    if (write != null) {
+      deps[n - 1] = this.users.getOrDefault(write, CompletableFuture.completedFuture(null))
+              .handle((v, e) -> null);
+    }
+    String result = write == null ? reads[0] : write;
+    CompletableFuture<Image> future = new CompletableFuture<Image>();
+    CompletableFuture<Image> finished = new CompletableFuture<Image>();
+    CompletableFuture.allOf(deps).whenComplete((v, failure) -> {
+      if (future.isDone()) {
+        AsyncImageProcessModel.settle(future, finished);
+        return;
+      }
+      if (failure != null) {
+        future.completeExceptionally(failure);
+        finished.completeExceptionally(failure);
+        return;
+      }
+      try {
+        executor.execute(() -> {
+          if (future.isDone()) {
+            AsyncImageProcessModel.settle(future, finished);
+            return;
+          }
+          try {
+            task.run();
+            Image image = this.model.getImage(result);
+            future.complete(image);
+            finished.complete(image);
+          } catch (Exception e) {
+            future.completeExceptionally(e);
+            finished.completeExceptionally(e);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        future.completeExceptionally(e);
+        finished.completeExceptionally(e);
+      }
+    });
+
+    for (String name : reads) {
+      this.use(name, finished);
+    }
+    if (write != null) {
+      this.writers.put(write, finished);
+      finished.thenRun(() -> this.writers.remove(write, finished));
+      this.use(write, finished);
+    }
+    return future;
+  }
+
+  /**
+   * Completes the finished future of a skipped task with the outcome of the future its caller
+   * holds, which has already completed, most often by being cancelled.
+   */
+  private static void settle(CompletableFuture<Image> future, CompletableFuture<Image> finished) {
+    future.whenComplete((image, e) -> {
+      if (e == null) {
+        finished.complete(image);
+      } else {
+        finished.completeExceptionally(e);
+      }
+    });
+  }
+
+  /**
+   * Adds a future to the operations still using a name. Earlier users are kept even if the
+   * future is cancelled first, so a later write still waits for them.
+   */
+  private void use(String name, CompletableFuture<?> future) {
+    CompletableFuture<?> previous = this.users.get(name);
+    CompletableFuture<?> all = previous == null ? future
+            : CompletableFuture.allOf(previous, future).handle((v, e) -> null);
+    this.users.put(name, all);
+    all.whenComplete((v, e) -> this.users.remove(name, all));
+  }
+
+  /**
+   * Loads an image from a given path and names it.
+   *
+   * @param path - image path
+   * @param name - name of the image
+   * @return a future of the loaded image, failing with {@link FileNotFoundException} if the
+   *         file cannot be found
+   */
+  public CompletableFuture<Image> load(String path, String name) {
+    return this.schedule(new String[0], name, this.io, () -> this.model.load(path, name));
+  }
+
+  /**
+   * Saves the image with a given name to a given path using the given PPM encoding.
+   *
+   * @param path - image path
+   * @param name - name of the image
+   * @param format - the encoding to write
+   * @return a future of the saved image
+   */
+  public CompletableFuture<Image> save(String path, String name, PpmFormat format) {
+    return this.schedule(new String[] {name}, null, this.io,
+        () -> this.model.save(path, name, format));
+  }
+
+  /**
+   * Visualizes the red component of an image.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> redComponent(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.redComponent(name, destName));
+  }
+
+  /**
+   * Visualizes the green component of an image.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> greenComponent(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.greenComponent(name, destName));
+  }
+
+  /**
+   * Visualizes the blue component of an image.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> blueComponent(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.blueComponent(name, destName));
+  }
+
+  /**
+   * Constructs a greyscale image from the largest component of every pixel.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> valueComponent(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.valueComponent(name, destName));
+  }
+
+  /**
+   * Constructs a greyscale image from the luma of every pixel.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> lumaComponent(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.lumaComponent(name, destName));
+  }
+
+  /**
+   * Constructs a greyscale image from the intensity of every pixel.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> intensityComponent(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.intensityComponent(name, destName));
+  }
+
+  /**
+   * Brightens the image by a given amount.
+   *
+   * @param num - change of brightness level
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> brighten(int num, String name, String destName) {
+    return this.operation(name, destName, () -> this.model.brighten(num, name, destName));
+  }
+
+  /**
+   * Mirrors an image horizontally.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> horizontalFlip(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.horizontalFlip(name, destName));
+  }
+
+  /**
+   * Mirrors an image vertically.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> verticalFlip(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.verticalFlip(name, destName));
+  }
+
+  /**
+   * Blurs an image with a Gaussian kernel.
+   *
+   * @param radius - the number of pixels on each side of a pixel that are blended into it
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> gaussianBlur(int radius, String name, String destName) {
+    return this.operation(name, destName,
+        () -> this.model.gaussianBlur(radius, name, destName));
+  }
+
+  /**
+   * Blurs an image by averaging a square of pixels around every pixel.
+   *
+   * @param radius - the number of pixels on each side of a pixel that are averaged into it
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> boxBlur(int radius, String name, String destName) {
+    return this.operation(name, destName, () -> this.model.boxBlur(radius, name, destName));
+  }
+
+  /**
+   * Sharpens an image.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> sharpen(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.sharpen(name, destName));
+  }
+
+  /**
+   * Highlights the edges of an image.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> edgeDetect(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.edgeDetect(name, destName));
+  }
+
+  /**
+   * Resizes an image to the given dimensions.
+   *
+   * @param width - width of the result
+   * @param height - height of the result
+   * @param filter - the filter interpolating between pixels
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> resize(int width, int height, ResampleFilter filter,
+                                         String name, String destName) {
+    return this.operation(name, destName,
+        () -> this.model.resize(width, height, filter, name, destName));
+  }
+
+  /**
+   * Scales both dimensions of an image by a factor.
+   *
+   * @param factor - the factor, below 1 to shrink the image
+   * @param filter - the filter interpolating between pixels
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> scale(double factor, ResampleFilter filter, String name,
+                                        String destName) {
+    return this.operation(name, destName,
+        () -> this.model.scale(factor, filter, name, destName));
+  }
+
+  /**
+   * Stretches every channel of an image on its own to span the whole range of samples.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> autoLevels(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.autoLevels(name, destName));
+  }
+
+  /**
+   * Stretches all channels of an image alike so that its luma spans the whole range of
+   * samples.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @return a future of the result
+   */
+  public CompletableFuture<Image> autoContrast(String name, String destName) {
+    return this.operation(name, destName, () -> this.model.autoContrast(name, destName));
+  }
+
+  /**
+   * Queues an operation from one image to another on the executor for computation.
+   */
+  private CompletableFuture<Image> operation(String name, String destName, Task task) {
+    return this.schedule(new String[] {name}, destName, this.compute, task);
+  }
+}
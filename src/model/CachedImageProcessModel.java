@@ -0,0 +1,201 @@
+package model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Represents a model that serves repeated operations from a {@link ResultCache}. Each operation
+ * is keyed on the content hash of its source and on its parameters, so running the same chain on
+ * an unchanged image again, in this run or, with a disk tier, in a later one, stores the earlier
+ * results instead of computing them. Results are computed as soon as they are created, since
+ * they have to be stored; flips are passed straight through because they only create views.
+ */
+public class CachedImageProcessModel implements ImageProcessModel {
+  private final ImageProcessOperations model;
+  private final ResultCache cache;
+
+  /**
+   * Constructs a caching model around another model.
+   *
+   * @param model - the model that holds the images and computes missing results
+   * @param cache - where results are stored
+   * @throws IllegalArgumentException if the model or cache is null
+   */
+  public CachedImageProcessModel(ImageProcessOperations model, ResultCache cache)
+          throws IllegalArgumentException {
+    if (model == null || cache == null) {
+      throw new IllegalArgumentException("Model and cache cannot be null");
+    }
+    this.model = model;
+    this.cache = cache;
+  }
+
+  /**
+   * Retrieves the cache, which reports hits, misses and bytes saved.
+   *
+   * @return the cache
+   */
+  public ResultCache getCache() {
+    return this.cache;
+  }
+
+  /**
+   * Stores the result of an operation, taking it from the cache if the same operation was
+   * already run on identical pixels.
+   *
+   * @param operation - the operation and its parameters
+   * @param name - name of the source image
+   * @param d - name of the destination
+   * @param compute - runs the operation on the wrapped model
+   */
+  private void cached(String operation, String name, String d, Runnable compute) {
+    String key = this.cache.key(this.model.getImage(name), operation);
+    Image result = this.cache.get(key);
+    if (result != null) {
+      this.model.getRegistry().put(d, result);
+      return;
+    }
+    compute.run();
+    this.cache.put(key, this.model.getImage(d));
+  }
+
+  @Override
+  public Image getImage(String name) throws IllegalArgumentException {
+    return this.model.getImage(name);
+  }
+
+  @Override
+  public Image getStoredImage(String name) throws IllegalArgumentException {
+    return this.model.getStoredImage(name);
+  }
+
+  @Override
+  public ImagePyramid getPyramid(String name) throws IllegalArgumentException {
+    return this.model.getPyramid(name);
+  }
+
+  @Override
+  public ImageStatistics getStatistics(String name) throws IllegalArgumentException {
+    return this.model.getStatistics(name);
+  }
+
+  @Override
+  public void load(String path, String name) throws FileNotFoundException {
+    this.model.load(path, name);
+  }
+
+  @Override
+  public void save(String path, String name) throws IOException {
+    this.model.save(path, name);
+  }
+
+  @Override
+  public void save(String path, String name, PpmFormat format) throws IOException {
+    this.model.save(path, name, format);
+  }
+
+  @Override
+  public void force(String name) throws IllegalArgumentException {
+    this.model.force(name);
+  }
+
+  @Override
+  public void redComponent(String name, String destName) throws IllegalArgumentException {
+    this.cached("red-component", name, destName,
+        () -> this.model.redComponent(name, destName));
+  }
+
+  @Override
+  public void greenComponent(String name, String destName) throws IllegalArgumentException {
+    this.cached("green-component", name, destName,
+        () -> this.model.greenComponent(name, destName));
+  }
+
+  @Override
+  public void blueComponent(String name, String destName) throws IllegalArgumentException {
+    this.cached("blue-component", name, destName,
+        () -> this.model.blueComponent(name, destName));
+  }
+
+  @Override
+  public void valueComponent(String name, String destName) throws IllegalArgumentException {
+    this.cached("value-component", name, destName,
+        () -> this.model.valueComponent(name, destName));
+  }
+
+  @Override
+  public void lumaComponent(String name, String destName) throws IllegalArgumentException {
+    this.cached("luma-component", name, destName,
+        () -> this.model.lumaComponent(name, destName));
+  }
+
+  @Override
+  public void intensityComponent(String name, String destName) throws IllegalArgumentException {
+    this.cached("intensity-component", name, destName,
+        () -> this.model.intensityComponent(name, destName));
+  }
+
+  @Override
+  public void brighten(int num, String name, String destName) throws IllegalArgumentException {
+    this.cached("brighten " + num, name, destName,
+        () -> this.model.brighten(num, name, destName));
+  }
+
+  @Override
+  public void horizontalFlip(String name, String destName) throws IllegalArgumentException {
+    this.model.horizontalFlip(name, destName);
+  }
+
+  @Override
+  public void verticalFlip(String name, String destName) throws IllegalArgumentException {
+    this.model.verticalFlip(name, destName);
+  }
+
+  @Override
+  public void gaussianBlur(int radius, String name, String destName)
+          throws IllegalArgumentException {
+    this.cached("gaussian-blur " + radius, name, destName,
+        () -> this.model.gaussianBlur(radius, name, destName));
+  }
+
+  @Override
+  public void boxBlur(int radius, String name, String destName)
+          throws IllegalArgumentException {
+    this.cached("box-blur " + radius, name, destName,
+        () -> this.model.boxBlur(radius, name, destName));
+  }
+
+  @Override
+  public void sharpen(String name, String destName) throws IllegalArgumentException {
+    this.cached("sharpen", name, destName, () -> this.model.sharpen(name, destName));
+  }
+
+  @Override
+  public void edgeDetect(String name, String destName) throws IllegalArgumentException {
+    this.cached("edge-detect", name, destName, () -> this.model.edgeDetect(name, destName));
+  }
+
+  @Override
+  public void resize(int width, int height, ResampleFilter filter, String name, String destName)
+          throws IllegalArgumentException {
+    this.cached("resize " + width + "x" + height + " " + filter.getName(), name, destName,
+        () -> this.model.resize(width, height, filter, name, destName));
+  }
+
+  @Override
+  public void scale(double factor, ResampleFilter filter, String name, String destName)
+          throws IllegalArgumentException {
+    this.cached("scale " + factor + " " + filter.getName(), name, destName,
+        () -> this.model.scale(factor, filter, name, destName));
+  }
+
+  @Override
+  public void autoLevels(String name, String destName) throws IllegalArgumentException {
+    this.cached("auto-levels", name, destName, () -> this.model.autoLevels(name, destName));
+  }
+
+  @Override
+  public void autoContrast(String name, String destName) throws IllegalArgumentException {
+    this.cached("auto-contrast", name, destName, () -> this.model.autoContrast(name, destName));
+  }
+}
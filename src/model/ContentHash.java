@@ -0,0 +1,80 @@
+package model;
+
+/**
+ * Computes a 128-bit fingerprint of an image's dimensions, maximum value and samples, using the
+ * MurmurHash3 x64 128-bit mixing functions over the bits of every sample. Two images with the
+ * same pixels have the same fingerprint however they are stored, since samples are read through
+ * {@link Image#getRow(int, double[], int)}. The hash is not cryptographic, so it identifies
+ * content reliably but should not be trusted against deliberately crafted collisions.
+ */
+public final class ContentHash {
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private ContentHash() {
+  }
+
+  /**
+   * Fingerprints an image.
+   *
+   * @param image - the image
+   * @return 32 hexadecimal digits identifying the image's content
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static String of(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    int w = image.getWidth();
+    int h = image.getHeight();
+    long h1 = mix1(((long) w << 32) | h);
+    long h2 = mix2(image.getMaximumValue());
+    h1 = Long.rotateLeft(h1 ^ 0x9e3779b97f4a7c15L, 27) + h2;
+    double[] row = new double[w * 3];
+    long count = 0;
+    for (int r = 0; r < h; r++) {
+      image.getRow(r, row, 0);
+      int k = 0;
+      for (; k + 1 < row.length; k += 2) {
+        h1 ^= mix1(Double.doubleToLongBits(row[k]));
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+        h2 ^= mix2(Double.doubleToLongBits(row[k + 1]));
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        h2 = h2 * 5 + 0x38495ab5;
+      }
+      if (k < row.length) {
+        h1 ^= mix1(Double.doubleToLongBits(row[k]));
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+      }
+      count += row.length;
+    }
+    h1 ^= count;
+    h2 ^= count;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix(h1);
+    h2 = fmix(h2);
+    h1 += h2;
+    h2 += h1;
+    return String.format("%016x%016x", h1, h2);
+  }
+
+  private static long mix1(long k) {
+    return Long.rotateLeft(k * C1, 31) * C2;
+  }
+
+  private static long mix2(long k) {
+    return Long.rotateLeft(k * C2, 33) * C1;
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
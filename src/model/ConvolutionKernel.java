@@ -0,0 +1,235 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Represents a matrix of weights that a neighborhood filter multiplies with the pixels around
+ * each pixel. Kernels have odd dimensions so that they are centred on the pixel being computed.
+ */
+public final class ConvolutionKernel {
+  private static final double SEPARABLE_TOLERANCE = 1e-12;
+
+  private final int width;
+  private final int height;
+  private final double[] weights;
+  private final double[] rowVector;
+  private final double[] columnVector;
+
+  /**
+   * Constructs a kernel from its weights, given row after row.
+   *
+   * @param width - number of columns, which must be odd
+   * @param height - number of rows, which must be odd
+   * @param weights - the weights, row after row
+   * @throws IllegalArgumentException if the dimensions are not odd and positive or do not match
+   *         the number of weights
+   */
+  public ConvolutionKernel(int width, int height, double[] weights)
+          throws IllegalArgumentException {
+    if (width <= 0 || height <= 0 || width % 2 == 0 || height % 2 == 0) {
+      throw new IllegalArgumentException("Kernel dimensions must be odd and positive");
+    }
+    if (weights == null || weights.length != width * height) {
+      throw new IllegalArgumentException("Kernel needs " + width * height + " weights");
+    }
+    this.width = width;
+    this.height = height;
+    this.weights = weights.clone();
+    double[][] factors = ConvolutionKernel.factor(width, height, this.weights);
+    this.columnVector = factors == null ? null : factors[0];
+    this.rowVector = factors == null ? null : factors[1];
+  }
+
+  /**
+   * Creates a Gaussian blur kernel whose standard deviation is a third of its radius.
+   *
+   * @param radius - the number of pixels on each side of the centre
+   * @return the normalised kernel
+   * @throws IllegalArgumentException if the radius is not positive
+   */
+  public static ConvolutionKernel gaussian(int radius) throws IllegalArgumentException {
+    if (radius <= 0) {
+      throw new IllegalArgumentException("Radius must be positive");
+    }
+    double sigma = radius / 3.0;
+    double[] g = new double[2 * radius + 1];
+    double sum = 0;
+    for (int i = -radius; i <= radius; i++) {
+      g[i + radius] = Math.exp(-(i * i) / (2 * sigma * sigma));
+      sum += g[i + radius];
+    }
+    for (int i = 0; i < g.length; i++) {
+      g[i] /= sum;
+    }
+    return ConvolutionKernel.outer(g, g);
+  }
+
+  /**
+   * Creates a box blur kernel, which averages a square of pixels.
+   *
+   * @param radius - the number of pixels on each side of the centre
+   * @return the normalised kernel
+   * @throws IllegalArgumentException if the radius is not positive
+   */
+  public static ConvolutionKernel box(int radius) throws IllegalArgumentException {
+    if (radius <= 0) {
+      throw new IllegalArgumentException("Radius must be positive");
+    }
+    double[] b = new double[2 * radius + 1];
+    Arrays.fill(b, 1.0 / b.length);
+    return ConvolutionKernel.outer(b, b);
+  }
+
+  /**
+   * Creates a 3 x 3 sharpening kernel.
+   *
+   * @return the kernel
+   */
+  public static ConvolutionKernel sharpen() {
+    return new ConvolutionKernel(3, 3, new double[] {
+      0, -1, 0,
+      -1, 5, -1,
+      0, -1, 0
+    });
+  }
+
+  /**
+   * Creates a 3 x 3 Laplacian edge detection kernel.
+   *
+   * @return the kernel
+   */
+  public static ConvolutionKernel edgeDetect() {
+    return new ConvolutionKernel(3, 3, new double[] {
+      -1, -1, -1,
+      -1, 8, -1,
+      -1, -1, -1
+    });
+  }
+
+  /**
+   * Retrieves the number of columns of this kernel.
+   *
+   * @return the width
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Retrieves the number of rows of this kernel.
+   *
+   * @return the height
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Retrieves one weight.
+   *
+   * @param r - row of the weight
+   * @param c - column of the weight
+   * @return the weight
+   */
+  public double getWeight(int r, int c) {
+    return this.weights[r * this.width + c];
+  }
+
+  /**
+   * Determines whether this kernel is the outer product of a column and a row vector, so that it
+   * can be applied as a horizontal pass followed by a vertical pass.
+   *
+   * @return true if the kernel is separable
+   */
+  public boolean isSeparable() {
+    return this.rowVector != null;
+  }
+
+  /**
+   * Retrieves the horizontal factor of a separable kernel.
+   *
+   * @return a copy of the row vector, or null if the kernel is not separable
+   */
+  public double[] getRowVector() {
+    return this.rowVector == null ? null : this.rowVector.clone();
+  }
+
+  /**
+   * Retrieves the vertical factor of a separable kernel.
+   *
+   * @return a copy of the column vector, or null if the kernel is not separable
+   */
+  public double[] getColumnVector() {
+    return this.columnVector == null ? null : this.columnVector.clone();
+  }
+
+  /**
+   * Retrieves all weights, row after row.
+   *
+   * @return a copy of the weights
+   */
+  public double[] getWeights() {
+    return this.weights.clone();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof ConvolutionKernel)) {
+      return false;
+    }
+    ConvolutionKernel k = (ConvolutionKernel) o;
+    return this.width == k.width && Arrays.equals(this.weights, k.weights);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * this.width + Arrays.hashCode(this.weights);
+  }
+
+  private static ConvolutionKernel outer(double[] column, double[] row) {
+    double[] w = new double[column.length * row.length];
+    for (int i = 0; i < column.length; i++) {
+      for (int j = 0; j < row.length; j++) {
+        w[i * row.length + j] = column[i] * row[j];
+      }
+    }
+    return new ConvolutionKernel(row.length, column.length, w);
+  }
+
+  /**
+   * Splits a kernel into a column and a row vector whose outer product is the kernel, using its
+   * largest weight as the pivot.
+   *
+   * @return the column and row vectors, or null if the kernel has rank above one
+   */
+  private static double[][] factor(int width, int height, double[] w) {
+    int pivot = 0;
+    for (int i = 1; i < w.length; i++) {
+      if (Math.abs(w[i]) > Math.abs(w[pivot])) {
+        pivot = i;
+      }
+    }
+    if (w[pivot] == 0) {
+      return null;
+    }
+    int pr = pivot / width;
+    int pc = pivot % width;
+    double[] row = new double[width];
+    double[] column = new double[height];
+    for (int j = 0; j < width; j++) {
+      row[j] = w[pr * width + j];
+    }
+    for (int i = 0; i < height; i++) {
+      column[i] = w[i * width + pc] / w[pivot];
+    }
+    double scale = Math.abs(w[pivot]);
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        if (Math.abs(column[i] * row[j] - w[i * width + j]) > SEPARABLE_TOLERANCE * scale) {
+          return null;
+        }
+      }
+    }
+    return new double[][] {column, row};
+  }
+}
@@ -0,0 +1,203 @@
+package model;
+
+/**
+ * Applies a convolution kernel to an image in tiles small enough to stay in cache. Each tile is
+ * read together with a halo of the pixels the kernel reaches beyond it, and the halo is filled by
+ * repeating the edge pixels where it falls outside the image, so the inner loops need no bounds
+ * checks. Separable kernels are applied as a horizontal pass into a scratch tile followed by a
+ * vertical pass. Results are clamped between 0 and 1, and stored at the depth the executor
+ * chooses for the source.
+ *
+ * <p>The halo rows of a tile are read and passed horizontally once per tile, so tiles and the
+ * bands they are grouped into are at least {@link #HALO_SHARE} times as tall as the kernel, which
+ * keeps that repeated work to a fraction of the tile for large radii.</p>
+ */
+class Convolver {
+  static final int TILE_WIDTH = 256;
+  static final int TILE_HEIGHT = 64;
+  static final int HALO_SHARE = 4;
+
+  private final Image src;
+  private final PackedImage dest;
+  private final ConvolutionKernel kernel;
+  private final double[] weights;
+  private final double[] row;
+  private final double[] col;
+  private final int rx;
+  private final int ry;
+  private final double[] in;
+  private final double[] tmp;
+  private final double[] out;
+
+  /**
+   * Constructs a convolver with its own tile buffers, so each thread needs its own instance.
+   *
+   * @param src - the image read
+   * @param dest - the image written, of the same size as the source
+   * @param kernel - the kernel applied
+   */
+  Convolver(Image src, PackedImage dest, ConvolutionKernel kernel) {
+    this.src = src;
+    this.dest = dest;
+    this.kernel = kernel;
+    this.weights = kernel.getWeights();
+    this.row = kernel.getRowVector();
+    this.col = kernel.getColumnVector();
+    this.rx = kernel.getWidth() / 2;
+    this.ry = kernel.getHeight() / 2;
+    int tw = Math.min(TILE_WIDTH, src.getWidth());
+    int th = Math.min(Convolver.tileHeight(kernel), src.getHeight());
+    this.in = new double[(th + 2 * this.ry) * (tw + 2 * this.rx) * 3];
+    this.tmp = kernel.isSeparable() ? new double[(th + 2 * this.ry) * tw * 3] : null;
+    this.out = new double[th * tw * 3];
+  }
+
+  /**
+   * Applies a kernel to an image, running bands of tiles on the executor's pool.
+   *
+   * @param src - the image read
+   * @param kernel - the kernel applied
+   * @param executor - the engine that runs the bands
+   * @return the filtered image
+   */
+  static PackedImage apply(Image src, ConvolutionKernel kernel, ImageExecutor executor) {
+    PackedImage dest = new PackedImage(src.getWidth(), src.getHeight(), src.getMaximumValue(),
+            executor.resultDepth(src), PixelLayout.INTERLEAVED);
+    int th = Convolver.tileHeight(kernel);
+    executor.forEachBand(src.getHeight(), src.getWidth(), th, (top, bottom) -> {
+      Convolver conv = new Convolver(src, dest, kernel);
+      for (int r = top; r < bottom; r += th) {
+        for (int c = 0; c < src.getWidth(); c += TILE_WIDTH) {
+          conv.tile(r, c, Math.min(th, bottom - r), Math.min(TILE_WIDTH, src.getWidth() - c));
+        }
+      }
+    });
+    return dest;
+  }
+
+  /**
+   * Computes the number of rows of a tile for a kernel.
+   *
+   * @param kernel - the kernel applied
+   * @return at least {@link #TILE_HEIGHT} rows, and at least {@link #HALO_SHARE} times the
+   *         height of the kernel
+   */
+  static int tileHeight(ConvolutionKernel kernel) {
+    return Math.max(TILE_HEIGHT, HALO_SHARE * kernel.getHeight());
+  }
+
+  /**
+   * Computes one tile of the destination.
+   */
+  private void tile(int r0, int c0, int th, int tw) {
+    this.load(r0, c0, th, tw);
+    if (this.kernel.isSeparable()) {
+      this.separable(th, tw);
+    } else {
+      this.direct(th, tw);
+    }
+    for (int i = 0; i < th * tw * 3; i++) {
+      this.out[i] = Math.max(0, Math.min(1, this.out[i]));
+    }
+    this.dest.storeRegion(r0, c0, th, tw, this.out, 0);
+  }
+
+  /**
+   * Reads a tile and its halo into the input buffer, repeating edge pixels outside the image.
+   */
+  private void load(int r0, int c0, int th, int tw) {
+    int w = this.src.getWidth();
+    int h = this.src.getHeight();
+    int pw = tw + 2 * this.rx;
+    int x0 = c0 - this.rx;
+    int cx0 = Math.max(0, x0);
+    int cx1 = Math.min(w, c0 + tw + this.rx);
+    int left = cx0 - x0;
+    int right = cx1 - x0;
+    for (int i = 0; i < th + 2 * this.ry; i++) {
+      int sy = Math.max(0, Math.min(h - 1, r0 - this.ry + i));
+      int base = i * pw * 3;
+      this.src.getRegion(sy, cx0, 1, cx1 - cx0, this.in, base + left * 3);
+      for (int p = 0; p < left; p++) {
+        System.arraycopy(this.in, base + left * 3, this.in, base + p * 3, 3);
+      }
+      for (int p = right; p < pw; p++) {
+        System.arraycopy(this.in, base + (right - 1) * 3, this.in, base + p * 3, 3);
+      }
+    }
+  }
+
+  /**
+   * Applies a separable kernel as a horizontal pass over the padded rows and a vertical pass.
+   */
+  private void separable(int th, int tw) {
+    double[] row = this.row;
+    double[] col = this.col;
+    int pw = tw + 2 * this.rx;
+    for (int i = 0; i < th + 2 * this.ry; i++) {
+      for (int x = 0; x < tw; x++) {
+        double s0 = 0;
+        double s1 = 0;
+        double s2 = 0;
+        int k = (i * pw + x) * 3;
+        for (int kx = 0; kx < row.length; kx++, k += 3) {
+          s0 += this.in[k] * row[kx];
+          s1 += this.in[k + 1] * row[kx];
+          s2 += this.in[k + 2] * row[kx];
+        }
+        int t = (i * tw + x) * 3;
+        this.tmp[t] = s0;
+        this.tmp[t + 1] = s1;
+        this.tmp[t + 2] = s2;
+      }
+    }
+    int stride = tw * 3;
+    for (int y = 0; y < th; y++) {
+      for (int x = 0; x < tw; x++) {
+        double s0 = 0;
+        double s1 = 0;
+        double s2 = 0;
+        int k = (y * tw + x) * 3;
+        for (int ky = 0; ky < col.length; ky++, k += stride) {
+          s0 += this.tmp[k] * col[ky];
+          s1 += this.tmp[k + 1] * col[ky];
+          s2 += this.tmp[k + 2] * col[ky];
+        }
+        int o = (y * tw + x) * 3;
+        this.out[o] = s0;
+        this.out[o + 1] = s1;
+        this.out[o + 2] = s2;
+      }
+    }
+  }
+
+  /**
+   * Applies a kernel that is not separable by summing over its whole window.
+   */
+  private void direct(int th, int tw) {
+    double[] weights = this.weights;
+    int kw = this.kernel.getWidth();
+    int kh = this.kernel.getHeight();
+    int pw = tw + 2 * this.rx;
+    for (int y = 0; y < th; y++) {
+      for (int x = 0; x < tw; x++) {
+        double s0 = 0;
+        double s1 = 0;
+        double s2 = 0;
+        for (int ky = 0; ky < kh; ky++) {
+          int k = ((y + ky) * pw + x) * 3;
+          for (int kx = 0; kx < kw; kx++, k += 3) {
+            double wt = weights[ky * kw + kx];
+            s0 += this.in[k] * wt;
+            s1 += this.in[k + 1] * wt;
+            s2 += this.in[k + 2] * wt;
+          }
+        }
+        int o = (y * tw + x) * 3;
+        this.out[o] = s0;
+        this.out[o + 1] = s1;
+        this.out[o + 2] = s2;
+      }
+    }
+  }
+}
@@ -13,6 +13,47 @@ public interface Image {
    */
   double[] getPixel(int r, int c);
 
+  /**
+   * Retrieves one color sample of a pixel without allocating.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @return the value of the sample
+   */
+  double getSample(int r, int c, int channel);
+
+  /**
+   * Copies a whole row into a caller supplied buffer as interleaved r, g, b samples.
+   *
+   * @param r - row number
+   * @param dest - the buffer to fill, needing room for three samples per column
+   * @param offset - index in the buffer of the first sample
+   */
+  void getRow(int r, double[] dest, int offset);
+
+  /**
+   * Copies a rectangular region into a caller supplied buffer as interleaved r, g, b samples,
+   * row after row.
+   *
+   * @param r - first row of the region
+   * @param c - first column of the region
+   * @param height - number of rows in the region
+   * @param width - number of columns in the region
+   * @param dest - the buffer to fill, needing room for three samples per pixel of the region
+   * @param offset - index in the buffer of the first sample
+   */
+  default void getRegion(int r, int c, int height, int width, double[] dest, int offset) {
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int k = offset + (i * width + j) * 3;
+        dest[k] = this.getSample(r + i, c + j, 0);
+        dest[k + 1] = this.getSample(r + i, c + j, 1);
+        dest[k + 2] = this.getSample(r + i, c + j, 2);
+      }
+    }
+  }
+
   /**
    * Retrieves the image's max color value.
    */
@@ -0,0 +1,462 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs remap and point operations over an image by splitting the output into bands of rows that
+ * are processed on a fork-join pool. Every pixel is computed exactly as the serial loop would,
+ * so the result does not depend on how the work was split. An executor with its own pool stops
+ * its worker threads when it is closed.
+ */
+public class ImageExecutor implements AutoCloseable {
+  /**
+   * Default number of pixels below which an image is processed on the calling thread.
+   */
+  public static final int DEFAULT_CUTOFF = 1 << 16;
+
+  private final ForkJoinPool pool;
+  private final int cutoff;
+  private final PlanarBackend vector;
+  private final boolean fixedPoint;
+
+  /**
+   * Constructs an executor that runs on the common fork-join pool with the default cutoff, uses
+   * vector instructions when the vector backend is available and keeps results over integer
+   * samples at the source depth.
+   */
+  public ImageExecutor() {
+    this(true);
+  }
+
+  /**
+   * Constructs an executor that runs on the common fork-join pool with the default cutoff, and
+   * uses vector instructions when the vector backend is available.
+   *
+   * @param fixedPoint - whether results over integer samples keep the source depth, with lookup
+   *                   kernels run in fixed point, see {@link #isFixedPoint()}
+   */
+  public ImageExecutor(boolean fixedPoint) {
+    this.pool = ForkJoinPool.commonPool();
+    this.cutoff = DEFAULT_CUTOFF;
+    this.vector = PlanarBackend.vector();
+    this.fixedPoint = fixedPoint;
+  }
+
+  /**
+   * Constructs an executor with its own pool, which uses vector instructions when the vector
+   * backend is available and keeps results over integer samples at the source depth.
+   *
+   * @param parallelism - the number of worker threads
+   * @param cutoff - the number of pixels below which work is not split any further
+   * @throws IllegalArgumentException if parallelism or cutoff is not positive
+   */
+  public ImageExecutor(int parallelism, int cutoff) throws IllegalArgumentException {
+    this(parallelism, cutoff, true);
+  }
+
+  /**
+   * Constructs an executor with its own pool, which keeps results over integer samples at the
+   * source depth.
+   *
+   * @param parallelism - the number of worker threads
+   * @param cutoff - the number of pixels below which work is not split any further
+   * @param vectorize - whether to use vector instructions when the vector backend is available
+   * @throws IllegalArgumentException if parallelism or cutoff is not positive
+   */
+  public ImageExecutor(int parallelism, int cutoff, boolean vectorize)
+          throws IllegalArgumentException {
+    this(parallelism, cutoff, vectorize, true);
+  }
+
+  /**
+   * Constructs an executor with its own pool.
+   *
+   * @param parallelism - the number of worker threads
+   * @param cutoff - the number of pixels below which work is not split any further
+   * @param vectorize - whether to use vector instructions when the vector backend is available
+   * @param fixedPoint - whether results over integer samples keep the source depth, with lookup
+   *                   kernels run in fixed point, see {@link #isFixedPoint()}
+   * @throws IllegalArgumentException if parallelism or cutoff is not positive
+   */
+  public ImageExecutor(int parallelism, int cutoff, boolean vectorize, boolean fixedPoint)
+          throws IllegalArgumentException {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive");
+    }
+    if (cutoff <= 0) {
+      throw new IllegalArgumentException("Cutoff must be positive");
+    }
+    this.pool = new ForkJoinPool(parallelism);
+    this.cutoff = cutoff;
+    this.vector = vectorize ? PlanarBackend.vector() : null;
+    this.fixedPoint = fixedPoint;
+  }
+
+  /**
+   * Shuts down this executor's own pool once the work already started has finished. Executors
+   * running on the common pool are left usable.
+   */
+  @Override
+  public void close() {
+    if (this.pool != ForkJoinPool.commonPool()) {
+      this.pool.shutdown();
+    }
+  }
+
+  /**
+   * Retrieves the number of worker threads used by this executor.
+   *
+   * @return the parallelism level
+   */
+  public int getParallelism() {
+    return this.pool.getParallelism();
+  }
+
+  /**
+   * Determines whether this executor runs the operations the vector backend implements with
+   * vector instructions.
+   *
+   * @return true if the vector backend is in use
+   */
+  public boolean isVectorized() {
+    return this.vector != null;
+  }
+
+  /**
+   * Determines whether results over integer samples keep the depth of the source instead of
+   * being stored as doubles, so a result takes no more memory than its source. Each sample is
+   * stored as the integer it would be saved as, and lookup kernels compute it with integer
+   * arithmetic only; their weighted sums can differ from the saved floating point result by
+   * one step of the max value.
+   *
+   * @return true if results over integer samples are stored as integers
+   */
+  public boolean isFixedPoint() {
+    return this.fixedPoint;
+  }
+
+  /**
+   * Chooses how an image computed from a source is stored: at the integer depth of the pixels
+   * the source reads when this executor keeps integer results, and as doubles otherwise.
+   *
+   * @param src - the source image
+   * @return the depth of the result
+   */
+  SampleDepth resultDepth(Image src) {
+    Image base = src;
+    while (base instanceof RemappedImage || base instanceof PipelineImage) {
+      base = base instanceof RemappedImage ? ((RemappedImage) base).getSource()
+              : ((PipelineImage) base).getSource();
+    }
+    int max = src.getMaximumValue();
+    if (this.fixedPoint && base instanceof PackedImage) {
+      SampleDepth depth = ((PackedImage) base).getDepth();
+      if (depth.isInteger() && max <= depth.getMaxSample()) {
+        return depth;
+      }
+    } else if (this.fixedPoint && base instanceof MappedImage) {
+      return max <= SampleDepth.BYTE.getMaxSample() ? SampleDepth.BYTE : SampleDepth.SHORT;
+    }
+    return SampleDepth.DOUBLE;
+  }
+
+  /**
+   * Retrieves the number of pixels below which work is not split any further.
+   *
+   * @return the cutoff in pixels
+   */
+  public int getCutoff() {
+    return this.cutoff;
+  }
+
+  /**
+   * Creates a new image where each pixel is read from the source position given by the map and
+   * then transformed by the kernel. A remapped view as the source is read through directly.
+   * Integer results are computed from stored samples as {@link SampleChain} describes. Lookup
+   * kernels over integer samples are run from tables when the image has at least as many
+   * samples as the tables have entries, and the operations the vector backend implements run
+   * with vector instructions over other sources when the backend is in use.
+   *
+   * @param src - the source image
+   * @param map - where each destination pixel is read from in the source
+   * @param op - the point operation applied to every pixel
+   * @return the new image, stored at the depth chosen by {@link #isFixedPoint()}
+   */
+  public PackedImage apply(Image src, PixelMap map, PixelKernel op) {
+    if (src instanceof RemappedImage) {
+      RemappedImage view = (RemappedImage) src;
+      return this.apply(view.getSource(), view.getMap().then(map), op);
+    }
+    SampleDepth result = this.resultDepth(src);
+    if (result.isInteger()) {
+      return this.apply(src, map, new PixelKernel[] {op}, result);
+    }
+    if (op instanceof LookupKernel && src instanceof PackedImage) {
+      SampleDepth depth = ((PackedImage) src).getDepth();
+      if (depth.isInteger()
+              && (long) src.getWidth() * src.getHeight() * 3 > depth.getMaxSample()) {
+        PackedImage packed = (PackedImage) src;
+        PackedImage dest = new PackedImage(src.getWidth(), src.getHeight(),
+                src.getMaximumValue(), result, PixelLayout.INTERLEAVED);
+        LookupKernel.Table table = ((LookupKernel) op).compile(depth, src.getMaximumValue());
+        this.forEachBand(dest.getHeight(), dest.getWidth(),
+            (top, bottom) -> ImageExecutor.lookupBand(packed, dest, map, table, top, bottom));
+        return dest;
+      }
+    }
+    PackedImage dest = new PackedImage(src.getWidth(), src.getHeight(), src.getMaximumValue(),
+            result, PixelLayout.INTERLEAVED);
+    if (this.vector != null && op instanceof LookupKernel && ((LookupKernel) op).isPlanar()) {
+      LookupKernel planar = (LookupKernel) op;
+      PlanarBackend backend = this.vector;
+      this.forEachBand(dest.getHeight(), dest.getWidth(),
+          (top, bottom) -> ImageExecutor.planarBand(src, dest, map, planar, backend, top, bottom));
+      return dest;
+    }
+    this.forEachBand(dest.getHeight(), dest.getWidth(),
+        (top, bottom) -> ImageExecutor.applyBand(src, dest, map, op, top, bottom));
+    return dest;
+  }
+
+  /**
+   * Creates a new image at an integer depth where each pixel is read from the source position
+   * given by the map and then transformed by every kernel in turn, storing each result as an
+   * integer before the next kernel runs.
+   *
+   * @param src - the source image, whose pixels are integer samples of its max value
+   * @param map - where each destination pixel is read from in the source
+   * @param kernels - the point operations applied to every pixel, in order
+   * @param depth - the integer depth of the result
+   * @return the new image
+   */
+  PackedImage apply(Image src, PixelMap map, PixelKernel[] kernels, SampleDepth depth) {
+    int max = src.getMaximumValue();
+    PackedImage dest = new PackedImage(src.getWidth(), src.getHeight(), max, depth,
+            PixelLayout.INTERLEAVED);
+    SampleChain chain = new SampleChain(kernels, depth, max,
+            (long) src.getWidth() * src.getHeight() * 3 > depth.getMaxSample());
+    this.forEachBand(dest.getHeight(), dest.getWidth(),
+        (top, bottom) -> ImageExecutor.chainBand(src, dest, map, chain, top, bottom));
+    return dest;
+  }
+
+  /**
+   * Creates a new image by applying a convolution kernel around every pixel, in cache-sized
+   * tiles. Separable kernels run as two one-dimensional passes, and pixels beyond the border are
+   * taken to repeat the edge pixels.
+   *
+   * @param src - the source image
+   * @param kernel - the kernel applied
+   * @return the new image, with samples clamped between 0 and 1 and stored at the depth chosen
+   *         by {@link #isFixedPoint()}
+   */
+  public PackedImage convolve(Image src, ConvolutionKernel kernel) {
+    return Convolver.apply(src, kernel, this);
+  }
+
+  /**
+   * Creates a new image of different dimensions by resampling with a filter, as a horizontal
+   * pass followed by a vertical pass. Large downscales average blocks of pixels first.
+   *
+   * @param src - the source image
+   * @param width - width of the new image
+   * @param height - height of the new image
+   * @param filter - the filter interpolating between source pixels
+   * @return the new image, with samples clamped between 0 and 1 and stored at the depth chosen
+   *         by {@link #isFixedPoint()}
+   * @throws IllegalArgumentException if a dimension is not positive
+   */
+  public PackedImage resample(Image src, int width, int height, ResampleFilter filter)
+          throws IllegalArgumentException {
+    return Resampler.apply(src, width, height, filter, this);
+  }
+
+  /**
+   * Computes the histograms and sample statistics of an image in one pass, in bands that run in
+   * parallel when the image is larger than the cutoff.
+   *
+   * @param src - the image
+   * @return the statistics
+   */
+  public ImageStatistics statistics(Image src) {
+    return ImageStatistics.of(src, this);
+  }
+
+  /**
+   * Runs a task over every row of an image, splitting the rows into bands that run in parallel
+   * when the image is larger than the cutoff.
+   *
+   * @param height - number of rows
+   * @param width - number of pixels in each row
+   * @param task - the work done on a band of rows
+   */
+  public void forEachBand(int height, int width, BandTask task) {
+    this.forEachBand(height, width, 1, task);
+  }
+
+  /**
+   * Runs a task over every row of an image, splitting the rows into bands of at least a given
+   * number of rows that run in parallel when the image is larger than the cutoff.
+   *
+   * @param height - number of rows
+   * @param width - number of pixels in each row
+   * @param minRows - the fewest rows a band is split into, for tasks that repeat work at the
+   *                edges of each band
+   * @param task - the work done on a band of rows
+   */
+  void forEachBand(int height, int width, int minRows, BandTask task) {
+    if ((long) height * width <= this.cutoff || this.pool.getParallelism() == 1) {
+      task.run(0, height);
+      return;
+    }
+    int rowsPerBand = Math.max(minRows, this.cutoff / Math.max(1, width));
+    this.pool.invoke(new Band(task, 0, height, rowsPerBand));
+  }
+
+  /**
+   * Computes the rows from top up to but not including bottom.
+   */
+  private static void applyBand(Image src, PackedImage dest, PixelMap map, PixelKernel op,
+                                int top, int bottom) {
+    int w = dest.getWidth();
+    double[] in = new double[w * 3];
+    double[] out = new double[w * 3];
+    for (int i = top; i < bottom; i++) {
+      src.getRow(map.sourceRow(i), in, 0);
+      for (int j = 0; j < w; j++) {
+        int k = map.sourceCol(j) * 3;
+        out[j * 3] = in[k];
+        out[j * 3 + 1] = in[k + 1];
+        out[j * 3 + 2] = in[k + 2];
+        op.apply(out, j * 3);
+      }
+      dest.storeRegion(i, 0, 1, w, out, 0);
+    }
+  }
+
+  /**
+   * Computes the rows from top up to but not including bottom by looking up raw samples.
+   */
+  private static void lookupBand(PackedImage src, PackedImage dest, PixelMap map,
+                                 LookupKernel.Table table, int top, int bottom) {
+    int w = dest.getWidth();
+    int[] in = new int[w * 3];
+    double[] out = new double[w * 3];
+    for (int i = top; i < bottom; i++) {
+      src.getRawRow(map.sourceRow(i), in, 0);
+      for (int j = 0; j < w; j++) {
+        table.apply(in, map.sourceCol(j) * 3, out, j * 3);
+      }
+      dest.storeRegion(i, 0, 1, w, out, 0);
+    }
+  }
+
+  /**
+   * Computes the rows from top up to but not including bottom from stored samples to stored
+   * samples.
+   */
+  private static void chainBand(Image src, PackedImage dest, PixelMap map, SampleChain chain,
+                                int top, int bottom) {
+    int w = dest.getWidth();
+    int max = src.getMaximumValue();
+    PackedImage packed = src instanceof PackedImage && ((PackedImage) src).getDepth().isInteger()
+            ? (PackedImage) src : null;
+    double[] row = packed == null ? new double[w * 3] : null;
+    int[] in = new int[w * 3];
+    int[] out = new int[w * 3];
+    double[] scratch = new double[w * 3];
+    for (int i = top; i < bottom; i++) {
+      if (packed != null) {
+        packed.getRawRow(map.sourceRow(i), in, 0);
+      } else {
+        src.getRow(map.sourceRow(i), row, 0);
+        for (int k = 0; k < w * 3; k++) {
+          in[k] = PpmWriter.toSample(row[k], max);
+        }
+      }
+      for (int j = 0; j < w; j++) {
+        int k = map.sourceCol(j) * 3;
+        out[j * 3] = in[k];
+        out[j * 3 + 1] = in[k + 1];
+        out[j * 3 + 2] = in[k + 2];
+      }
+      chain.apply(out, 0, w, scratch);
+      dest.setRawRow(i, out, 0);
+    }
+  }
+
+  /**
+   * Computes the rows from top up to but not including bottom, splitting each row into one
+   * array per channel for the backend.
+   */
+  private static void planarBand(Image src, PackedImage dest, PixelMap map, LookupKernel op,
+                                 PlanarBackend backend, int top, int bottom) {
+    int w = dest.getWidth();
+    double[] in = new double[w * 3];
+    double[] red = new double[w];
+    double[] green = new double[w];
+    double[] blue = new double[w];
+    double[] out = new double[w * 3];
+    for (int i = top; i < bottom; i++) {
+      src.getRow(map.sourceRow(i), in, 0);
+      for (int j = 0; j < w; j++) {
+        int k = map.sourceCol(j) * 3;
+        red[j] = in[k];
+        green[j] = in[k + 1];
+        blue[j] = in[k + 2];
+      }
+      op.applyPlanar(backend, red, green, blue, w);
+      for (int j = 0; j < w; j++) {
+        out[j * 3] = red[j];
+        out[j * 3 + 1] = green[j];
+        out[j * 3 + 2] = blue[j];
+      }
+      dest.storeRegion(i, 0, 1, w, out, 0);
+    }
+  }
+
+  /**
+   * Represents work done on a band of rows.
+   */
+  @FunctionalInterface
+  public interface BandTask {
+    /**
+     * Processes the rows from top up to but not including bottom.
+     *
+     * @param top - first row of the band
+     * @param bottom - row after the last row of the band
+     */
+    void run(int top, int bottom);
+  }
+
+  /**
+   * Splits a range of rows in half until it is no larger than one band.
+   */
+  private static class Band extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final BandTask task;
+    private final int top;
+    private final int bottom;
+    private final int rowsPerBand;
+
+    Band(BandTask task, int top, int bottom, int rowsPerBand) {
+      this.task = task;
+      this.top = top;
+      this.bottom = bottom;
+      this.rowsPerBand = rowsPerBand;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.bottom - this.top <= this.rowsPerBand) {
+        this.task.run(this.top, this.bottom);
+        return;
+      }
+      int mid = (this.top + this.bottom) >>> 1;
+      invokeAll(new Band(this.task, this.top, mid, this.rowsPerBand),
+              new Band(this.task, mid, this.bottom, this.rowsPerBand));
+    }
+  }
+}
@@ -41,6 +41,34 @@ public class ImageImpl implements Image {
     return this.p[r][c];
   }
 
+  /**
+   * Retrieves one color sample of a pixel.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @return the value of the sample
+   */
+  @Override
+  public double getSample(int r, int c, int channel) {
+    return this.p[r][c][channel];
+  }
+
+  /**
+   * Copies a whole row into a caller supplied buffer as interleaved r, g, b samples.
+   *
+   * @param r - row number
+   * @param dest - the buffer to fill
+   * @param offset - index in the buffer of the first sample
+   */
+  @Override
+  public void getRow(int r, double[] dest, int offset) {
+    double[][] row = this.p[r];
+    for (int c = 0; c < this.w; c++) {
+      System.arraycopy(row[c], 0, dest, offset + c * 3, 3);
+    }
+  }
+
   /**
    * Retrieves the image's max color value.
    */
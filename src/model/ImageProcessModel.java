@@ -26,6 +26,26 @@ public interface ImageProcessModel extends ImageProcessViewModel {
    */
   void save(String path, String name) throws IOException;
 
+  /**
+   * Saves the image with a given name to a given path using the given PPM encoding.
+   *
+   * @param path - image path
+   * @param name - name of the image
+   * @param format - the encoding to write
+   * @throws IllegalArgumentException if an image with the given name cannot be found
+   * @throws IOException if image cannot be transmitted
+   */
+  void save(String path, String name, PpmFormat format) throws IOException;
+
+  /**
+   * Computes an image whose operations were recorded but not yet run, or copies an image that is
+   * a view of another into its own buffer. Does nothing for images that are already computed.
+   *
+   * @param name - name of the image
+   * @throws IllegalArgumentException if the string cannot be found
+   */
+  void force(String name) throws IllegalArgumentException;
+
   /**
    * Visualizes individual red components of an image red value of every pixel.
    *
@@ -109,4 +129,87 @@ public interface ImageProcessModel extends ImageProcessViewModel {
    */
   void verticalFlip(String name, String destName) throws IllegalArgumentException;
 
+  /**
+   * Blurs an image with a Gaussian kernel.
+   *
+   * @param radius - the number of pixels on each side of a pixel that are blended into it
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found or the radius is not positive
+   */
+  void gaussianBlur(int radius, String name, String destName) throws IllegalArgumentException;
+
+  /**
+   * Blurs an image by averaging a square of pixels around every pixel.
+   *
+   * @param radius - the number of pixels on each side of a pixel that are averaged into it
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found or the radius is not positive
+   */
+  void boxBlur(int radius, String name, String destName) throws IllegalArgumentException;
+
+  /**
+   * Sharpens an image.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found
+   */
+  void sharpen(String name, String destName) throws IllegalArgumentException;
+
+  /**
+   * Highlights the edges of an image.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found
+   */
+  void edgeDetect(String name, String destName) throws IllegalArgumentException;
+
+  /**
+   * Resizes an image to the given dimensions.
+   *
+   * @param width - width of the result
+   * @param height - height of the result
+   * @param filter - the filter interpolating between pixels
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found or a dimension is not positive
+   */
+  void resize(int width, int height, ResampleFilter filter, String name, String destName)
+          throws IllegalArgumentException;
+
+  /**
+   * Scales both dimensions of an image by a factor, rounded to at least one pixel.
+   *
+   * @param factor - the factor, below 1 to shrink the image
+   * @param filter - the filter interpolating between pixels
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found or the factor is not positive
+   */
+  void scale(double factor, ResampleFilter filter, String name, String destName)
+          throws IllegalArgumentException;
+
+  /**
+   * Stretches every channel of an image on its own so that it spans the whole range of
+   * samples, ignoring a small share of the darkest and brightest samples.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found
+   */
+  void autoLevels(String name, String destName) throws IllegalArgumentException;
+
+  /**
+   * Stretches all channels of an image alike so that its luma spans the whole range of
+   * samples, ignoring a small share of the darkest and brightest pixels.
+   *
+   * @param name - name of the image
+   * @param destName - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found
+   */
+  void autoContrast(String name, String destName) throws IllegalArgumentException;
+
 }
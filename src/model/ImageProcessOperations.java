@@ -1,45 +1,179 @@
 package model;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Represents processing operations for a PPM image.
+ *
+ * <p>Stored images are never changed, so operations that would not change an image store the
+ * source itself under the destination name, and loading a file that has not changed since it
+ * was last loaded reuses the image already read from it. The registry then holds one copy of
+ * the pixels for every name sharing them.</p>
  */
 public class ImageProcessOperations implements ImageProcessModel {
-  private final Map<String, Image> imageMap;
+  /**
+   * Default file size in bytes from which binary files are memory-mapped instead of read.
+   */
+  public static final long DEFAULT_MAP_THRESHOLD = 256L << 20;
 
+  /**
+   * Share of the darkest and of the brightest samples that auto-levels and auto-contrast ignore
+   * when they find the range to stretch.
+   */
+  public static final double AUTO_CLIP = 0.005;
+
+  private final ImageRegistry imageMap;
+  private final ImageExecutor executor;
+  private final long mapThreshold;
+  private final boolean lazy;
+  private final Map<Path, LoadedFile> loaded;
+  private final Map<Image, ImageStatistics> statistics;
+
+  /**
+   * Constructs a model that runs operations on the common fork-join pool.
+   */
   public ImageProcessOperations() {
-    this.imageMap = new HashMap<String, Image>();
+    this(new ImageExecutor());
+  }
+
+  /**
+   * Constructs a model that runs operations with the given executor.
+   *
+   * @param executor - the engine used to compute new images
+   * @throws IllegalArgumentException if the executor is null
+   */
+  public ImageProcessOperations(ImageExecutor executor) throws IllegalArgumentException {
+    this(executor, DEFAULT_MAP_THRESHOLD);
+  }
+
+  /**
+   * Constructs a model that runs operations with the given executor and memory-maps binary files
+   * of at least the given size.
+   *
+   * @param executor - the engine used to compute new images
+   * @param mapThreshold - file size in bytes from which binary files are memory-mapped
+   * @throws IllegalArgumentException if the executor is null or the threshold is negative
+   */
+  public ImageProcessOperations(ImageExecutor executor, long mapThreshold)
+          throws IllegalArgumentException {
+    this(executor, mapThreshold, false);
+  }
+
+  /**
+   * Constructs a model that optionally records operations lazily. In lazy mode each operation
+   * stores a {@link PipelineImage} instead of computing its pixels, consecutive operations are
+   * fused into it, and pixels are only computed when an image is retrieved, saved or forced.
+   * Fused operations are stored at the depth the executor chooses and keep its rounding of
+   * each step, so their samples are the same as computing them in turn.
+   *
+   * @param executor - the engine used to compute new images
+   * @param mapThreshold - file size in bytes from which binary files are memory-mapped
+   * @param lazy - whether operations are recorded rather than computed
+   * @throws IllegalArgumentException if the executor is null or the threshold is negative
+   */
+  public ImageProcessOperations(ImageExecutor executor, long mapThreshold, boolean lazy)
+          throws IllegalArgumentException {
+    this(executor, new ImageRegistry(), mapThreshold, lazy);
+  }
+
+  /**
+   * Constructs a model that stores its images in the given registry, which may bound the
+   * memory they use.
+   *
+   * @param executor - the engine used to compute new images
+   * @param registry - where named images are stored
+   * @param mapThreshold - file size in bytes from which binary files are memory-mapped
+   * @param lazy - whether operations are recorded rather than computed
+   * @throws IllegalArgumentException if the executor or registry is null or the threshold is
+   *         negative
+   */
+  public ImageProcessOperations(ImageExecutor executor, ImageRegistry registry,
+                                long mapThreshold, boolean lazy)
+          throws IllegalArgumentException {
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null");
+    }
+    if (registry == null) {
+      throw new IllegalArgumentException("Registry cannot be null");
+    }
+    if (mapThreshold < 0) {
+      throw new IllegalArgumentException("Map threshold cannot be negative");
+    }
+    this.imageMap = registry;
+    this.executor = executor;
+    this.mapThreshold = mapThreshold;
+    this.lazy = lazy;
+    this.loaded = new HashMap<Path, LoadedFile>();
+    this.statistics = new WeakHashMap<Image, ImageStatistics>();
   }
 
   /**
-   * Constructs a new image with the given operation applied to the original image.
+   * Constructs a new image with the given operation applied to the original image. Each
+   * destination pixel is read from the source position given by the map and then transformed
+   * by the kernel. Pure remaps are stored as views of the original image rather than copied.
    *
    * @param name - name of the image
    * @param d - name of the destination
+   * @param map - where each destination pixel is read from in the source
    * @param op - the operation to use to create a new image
    * @throws IllegalArgumentException if the image cannot be found
    */
-  private void newAppliedImage(String name, String d, Function<Image, Integer, Integer,
-          double[]> op)
+  private void newAppliedImage(String name, String d, PixelMap map, PixelKernel op)
           throws IllegalArgumentException {
-    Image init = this.getImage(name);
-    int h = init.getHeight();
-    int w = init.getWidth();
-    double[][][] p = new double[h][w][3];
-    for (int i = 0; i < h; i++) {
-      for (int j = 0; j < w; j++) {
-        p[i][j] = op.apply(init, i, j);
-      }
+    Image init = this.lookup(name);
+    if (init instanceof PipelineImage) {
+      this.imageMap.put(d, ((PipelineImage) init).then(map, op));
+    } else if (op == PixelKernel.IDENTITY) {
+      this.imageMap.put(d, RemappedImage.of(init, map));
+    } else if (this.lazy) {
+      this.imageMap.put(d, new PipelineImage(init, map, op,
+              this.executor.resultDepth(init)));
+    } else {
+      this.imageMap.put(d, this.executor.apply(init, map, op));
     }
-    this.imageMap.put(d, new ImageImpl(p, init.getMaximumValue()));
   }
 
   /**
-   * Retrieves an image with a given name.
+   * Constructs a new image with the given point operation applied to every pixel.
+   *
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @param op - the operation to use to create a new image
+   * @throws IllegalArgumentException if the image cannot be found
+   */
+  private void newAppliedImage(String name, String d, PixelKernel op)
+          throws IllegalArgumentException {
+    this.newAppliedImage(name, d, PixelMap.identity(), op);
+  }
+
+  /**
+   * Constructs a new image by applying a convolution kernel around every pixel of the original
+   * image. Lazily recorded sources are computed first, since every pixel is read several times.
+   *
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @param kernel - the kernel to apply
+   * @throws IllegalArgumentException if the image cannot be found
+   */
+  private void newFilteredImage(String name, String d, ConvolutionKernel kernel)
+          throws IllegalArgumentException {
+    this.imageMap.put(d, this.executor.convolve(this.getImage(name), kernel));
+  }
+
+  /**
+   * Retrieves an image with a given name, computing it first if its operations were recorded
+   * lazily. Remapped views are returned as they are.
    *
    * @param name - name of an image
    * @throws IllegalArgumentException if the given name cannot be found
@@ -48,14 +182,117 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public Image getImage(String name) throws IllegalArgumentException {
-    if (this.imageMap.get(name) == null) {
+    if (this.lookup(name) instanceof PipelineImage) {
+      this.force(name);
+    }
+    return this.lookup(name);
+  }
+
+  /**
+   * Retrieves an image with a given name as it is stored, without computing operations that
+   * were recorded lazily.
+   *
+   * @param name - name of an image
+   * @throws IllegalArgumentException if the given name cannot be found
+   *
+   * @return the image
+   */
+  @Override
+  public Image getStoredImage(String name) throws IllegalArgumentException {
+    return this.lookup(name);
+  }
+
+  /**
+   * Computes the pixels of an image whose operations were recorded lazily, or copies a remapped
+   * view into a dense image, and stores the result in its place.
+   *
+   * @param name - name of an image
+   * @throws IllegalArgumentException if the given name cannot be found
+   */
+  @Override
+  public void force(String name) throws IllegalArgumentException {
+    Image image = this.lookup(name);
+    if (image instanceof PipelineImage) {
+      this.imageMap.put(name, ((PipelineImage) image).materialize(this.executor));
+    } else if (image instanceof RemappedImage) {
+      this.imageMap.put(name, ((RemappedImage) image).materialize(this.executor));
+    }
+  }
+
+  /**
+   * Retrieves the pyramid of an image with a given name. Lazily recorded images are not
+   * computed; their tiles compute only the pixels they cover.
+   *
+   * @param name - name of an image
+   * @throws IllegalArgumentException if the given name cannot be found
+   *
+   * @return the pyramid
+   */
+  @Override
+  public ImagePyramid getPyramid(String name) throws IllegalArgumentException {
+    ImagePyramid pyramid = this.imageMap.getPyramid(name);
+    if (pyramid == null) {
+      throw new IllegalArgumentException(name + " does not exist");
+    }
+    return pyramid;
+  }
+
+  /**
+   * Retrieves the histograms and sample statistics of an image with a given name, computing
+   * them on the first request for the image. Lazily recorded images are computed first.
+   *
+   * @param name - name of an image
+   * @throws IllegalArgumentException if the given name cannot be found
+   *
+   * @return the statistics
+   */
+  @Override
+  public ImageStatistics getStatistics(String name) throws IllegalArgumentException {
+    Image image = this.getImage(name);
+    ImageStatistics stats;
+    synchronized (this.statistics) {
+      stats = this.statistics.get(image);
+    }
+    if (stats == null) {
+      stats = this.executor.statistics(image);
+      synchronized (this.statistics) {
+        this.statistics.put(image, stats);
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Retrieves the registry holding this model's images, which reports hit, miss and spill
+   * counts.
+   *
+   * @return the registry
+   */
+  public ImageRegistry getRegistry() {
+    return this.imageMap;
+  }
+
+  /**
+   * Retrieves an image with a given name as stored, without computing it.
+   *
+   * @param name - name of an image
+   * @throws IllegalArgumentException if the given name cannot be found
+   *
+   * @return the image
+   */
+  private Image lookup(String name) throws IllegalArgumentException {
+    Image image = this.imageMap.get(name);
+    if (image == null) {
       throw new IllegalArgumentException(name + " does not exist");
     }
-    return this.imageMap.get(name);
+    return image;
   }
 
   /**
-   * Loads an image from a given path and changes the image name to a given name.
+   * Loads an image from a given path and changes the image name to a given name. Binary files
+   * at or above the map threshold are memory-mapped rather than read into memory. A file whose
+   * size and modification time are unchanged since it was last loaded is not read again while
+   * the image read from it is still in use.
    *
    * @param imagePath - name of the image path
    * @param name - name of the image
@@ -63,12 +300,36 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void load(String imagePath, String name) throws FileNotFoundException {
+    Path file;
+    BasicFileAttributes attributes;
+    try {
+      file = Paths.get(imagePath).toRealPath();
+      attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (IOException e) {
+      throw new FileNotFoundException(imagePath + " does not exist");
+    }
+    synchronized (this.loaded) {
+      LoadedFile previous = this.loaded.get(file);
+      Image i = previous == null ? null : previous.reuse(attributes);
+      if (i != null) {
+        this.imageMap.put(name, i);
+        return;
+      }
+    }
     Image i;
     try {
-      i = ImageUtil.readPPM(imagePath);
+      if (new File(imagePath).length() >= this.mapThreshold
+              && ImageUtil.readFormat(imagePath) == PpmFormat.P6) {
+        i = MappedImage.open(imagePath);
+      } else {
+        i = ImageUtil.readPPM(imagePath);
+      }
     } catch (FileNotFoundException e) {
       throw new FileNotFoundException(imagePath + " does not exist");
     }
+    synchronized (this.loaded) {
+      this.loaded.put(file, new LoadedFile(attributes, i));
+    }
     this.imageMap.put(name, i);
   }
 
@@ -85,6 +346,21 @@ public class ImageProcessOperations implements ImageProcessModel {
     ImageUtil.savePPM(this.getImage(name), imagePath);
   }
 
+  /**
+   * Saves the image with a given name to a given path using the given PPM encoding.
+   *
+   * @param imagePath - name of the image path
+   * @param name - name of the image
+   * @param format - the encoding to write
+   * @throws IllegalArgumentException if an image with the given name cannot be found
+   * @throws IOException if image cannot be transmitted
+   */
+  @Override
+  public void save(String imagePath, String name, PpmFormat format)
+          throws IllegalArgumentException, IOException {
+    ImageUtil.savePPM(this.getImage(name), imagePath, format);
+  }
+
   /**
    * Visualizes individual red components of an image red value of every pixel.
    *
@@ -94,13 +370,7 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void redComponent(String name, String d) throws IllegalArgumentException {
-    Function<Image, Integer, Integer, double[]> r = (k, i, j) -> {
-      double[] redArr = k.getPixel(i, j);
-      return new double[] {
-              redArr[0], redArr[0], redArr[0]
-      };
-    };
-    this.newAppliedImage(name, d, r);
+    this.newAppliedImage(name, d, PointOperations.red());
   }
 
   /**
@@ -112,13 +382,7 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void greenComponent(String name, String d) throws IllegalArgumentException {
-    Function<Image, Integer, Integer, double[]> g = (k, i, j) -> {
-      double[] greenArr = k.getPixel(i, j);
-      return new double[] {
-              greenArr[1], greenArr[1], greenArr[1]
-      };
-    };
-    this.newAppliedImage(name, d, g);
+    this.newAppliedImage(name, d, PointOperations.green());
   }
 
   /**
@@ -130,13 +394,7 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void blueComponent(String name, String d) throws IllegalArgumentException {
-    Function<Image, Integer, Integer, double[]> b = (k, i, j) -> {
-      double[] rgb = k.getPixel(i, j);
-      return new double[] {
-              rgb[2], rgb[2], rgb[2]
-      } ;
-    };
-    this.newAppliedImage(name, d, b);
+    this.newAppliedImage(name, d, PointOperations.blue());
   }
 
   /**
@@ -148,15 +406,7 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void valueComponent(String name, String d) throws IllegalArgumentException {
-    Function<Image, Integer, Integer, double[]> maxVal = (k, i, j) -> {
-      double[] valArr = k.getPixel(i, j);
-      return new double[] {
-              Math.max(Math.max(valArr[0], valArr[1]), valArr[2]),
-              Math.max(Math.max(valArr[0], valArr[1]), valArr[2]),
-              Math.max(Math.max(valArr[0], valArr[1]), valArr[2])
-      };
-    };
-    this.newAppliedImage(name, d, maxVal);
+    this.newAppliedImage(name, d, PointOperations.value());
   }
 
   /**
@@ -169,14 +419,7 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void lumaComponent(String name, String d) throws IllegalArgumentException {
-    Function<Image, Integer, Integer, double[]> l = (k, i, j) -> {
-      double[] lum = k.getPixel(i, j);
-      double lumArr = 0.2126 * lum[0] + 0.7152 * lum[1] + 0.0722 * lum[2];
-      return new double[] {
-        lumArr, lumArr, lumArr
-      };
-    };
-    this.newAppliedImage(name, d, l);
+    this.newAppliedImage(name, d, PointOperations.luma());
   }
 
   /**
@@ -188,15 +431,7 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void intensityComponent(String name, String d) throws IllegalArgumentException {
-    Function<Image, Integer, Integer, double[]> intensity = (k, i, j) -> {
-      double[] intArr = k.getPixel(i, j);
-      return new double[] {
-        ((intArr[0] + intArr[1] + intArr[2]) / 3),
-        ((intArr[0] + intArr[1] + intArr[2]) / 3),
-        ((intArr[0] + intArr[1] + intArr[2]) / 3)
-      };
-    };
-    this.newAppliedImage(name, d, intensity);
+    this.newAppliedImage(name, d, PointOperations.intensity());
   }
 
   /**
@@ -209,15 +444,12 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void brighten(int num, String name, String d) throws IllegalArgumentException {
-    Function<Image, Integer, Integer, double[]> brighten = (k, i, j) -> {
-      double[] briArr = k.getPixel(i, j);
-      return new double[] {
-              Math.max(0, Math.min(1, briArr[0] + num / 255.0)),
-              Math.max(0, Math.min(1, briArr[1] + num / 255.0)),
-              Math.max(0, Math.min(1, briArr[2] + num / 255.0))
-      };
-    };
-    this.newAppliedImage(name, d, brighten);
+    if (num == 0 && ImageProcessOperations.isNormalized(this.lookup(name))) {
+      this.imageMap.put(d, this.lookup(name));
+      return;
+    }
+    this.newAppliedImage(name, d,
+        PointOperations.brighten(num, this.lookup(name).getMaximumValue()));
   }
 
   /**
@@ -229,9 +461,8 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void horizontalFlip(String name, String d) throws IllegalArgumentException {
-    Function<Image, Integer, Integer, double[]> horArr = (k, i, j) -> k.getPixel(i, k.getWidth()
-            - j - 1);
-    this.newAppliedImage(name, d, horArr);
+    PixelMap horizontal = PixelMap.horizontalFlip(this.lookup(name).getWidth());
+    this.newAppliedImage(name, d, horizontal, PixelKernel.IDENTITY);
   }
 
   /**
@@ -243,8 +474,198 @@ public class ImageProcessOperations implements ImageProcessModel {
    */
   @Override
   public void verticalFlip(String name, String d) throws IllegalArgumentException {
-    Function<Image, Integer, Integer, double[]> vertical = (k, i, j) -> k.getPixel(k.getHeight()
-            - i - 1, j);
-    this.newAppliedImage(name, d, vertical);
+    PixelMap vertical = PixelMap.verticalFlip(this.lookup(name).getHeight());
+    this.newAppliedImage(name, d, vertical, PixelKernel.IDENTITY);
+  }
+
+  /**
+   * Blurs an image with a Gaussian kernel.
+   *
+   * @param radius - the number of pixels on each side of a pixel that are blended into it
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found or the radius is not positive
+   */
+  @Override
+  public void gaussianBlur(int radius, String name, String d) throws IllegalArgumentException {
+    this.newFilteredImage(name, d, ConvolutionKernel.gaussian(radius));
+  }
+
+  /**
+   * Blurs an image by averaging a square of pixels around every pixel.
+   *
+   * @param radius - the number of pixels on each side of a pixel that are averaged into it
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found or the radius is not positive
+   */
+  @Override
+  public void boxBlur(int radius, String name, String d) throws IllegalArgumentException {
+    this.newFilteredImage(name, d, ConvolutionKernel.box(radius));
+  }
+
+  /**
+   * Sharpens an image.
+   *
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found
+   */
+  @Override
+  public void sharpen(String name, String d) throws IllegalArgumentException {
+    this.newFilteredImage(name, d, ConvolutionKernel.sharpen());
+  }
+
+  /**
+   * Highlights the edges of an image.
+   *
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found
+   */
+  @Override
+  public void edgeDetect(String name, String d) throws IllegalArgumentException {
+    this.newFilteredImage(name, d, ConvolutionKernel.edgeDetect());
+  }
+
+  /**
+   * Resizes an image to the given dimensions. Lazily recorded sources are computed first.
+   *
+   * @param width - width of the result
+   * @param height - height of the result
+   * @param filter - the filter interpolating between pixels
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found or a dimension is not positive
+   */
+  @Override
+  public void resize(int width, int height, ResampleFilter filter, String name, String d)
+          throws IllegalArgumentException {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Dimensions must be positive");
+    }
+    Image src = this.getImage(name);
+    if (width == src.getWidth() && height == src.getHeight() && filter != ResampleFilter.LANCZOS
+            && ImageProcessOperations.isNormalized(src)) {
+      this.imageMap.put(d, src);
+      return;
+    }
+    this.imageMap.put(d, this.executor.resample(src, width, height, filter));
+  }
+
+  /**
+   * Scales both dimensions of an image by a factor, rounded to at least one pixel.
+   *
+   * @param factor - the factor, below 1 to shrink the image
+   * @param filter - the filter interpolating between pixels
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found or the factor is not positive
+   */
+  @Override
+  public void scale(double factor, ResampleFilter filter, String name, String d)
+          throws IllegalArgumentException {
+    if (!(factor > 0) || Double.isInfinite(factor)) {
+      throw new IllegalArgumentException("Scale factor must be positive");
+    }
+    Image src = this.lookup(name);
+    this.resize((int) Math.max(1, Math.round(src.getWidth() * factor)),
+            (int) Math.max(1, Math.round(src.getHeight() * factor)), filter, name, d);
+  }
+
+  /**
+   * Stretches every channel of an image on its own so that it spans the whole range of
+   * samples, ignoring the {@link #AUTO_CLIP} share of the darkest and brightest samples. The
+   * range is read from the statistics of the image, so an image whose statistics are known is
+   * not scanned again.
+   *
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found
+   */
+  @Override
+  public void autoLevels(String name, String d) throws IllegalArgumentException {
+    ImageStatistics stats = this.getStatistics(name);
+    double[] low = new double[3];
+    double[] high = new double[3];
+    for (int c = 0; c < 3; c++) {
+      low[c] = stats.getLow(c, AUTO_CLIP);
+      high[c] = stats.getHigh(c, AUTO_CLIP);
+    }
+    this.stretch(name, d, low, high);
+  }
+
+  /**
+   * Stretches all channels of an image alike so that its luma spans the whole range of
+   * samples, ignoring the {@link #AUTO_CLIP} share of the darkest and brightest pixels. The
+   * range is read from the statistics of the image.
+   *
+   * @param name - name of the image
+   * @param d - name of the destination
+   * @throws IllegalArgumentException if the string cannot be found
+   */
+  @Override
+  public void autoContrast(String name, String d) throws IllegalArgumentException {
+    ImageStatistics stats = this.getStatistics(name);
+    double low = stats.getLow(ImageStatistics.LUMA, AUTO_CLIP);
+    double high = stats.getHigh(ImageStatistics.LUMA, AUTO_CLIP);
+    this.stretch(name, d, new double[] {low, low, low}, new double[] {high, high, high});
+  }
+
+  /**
+   * Stores an image with its channels stretched from the given ranges, or the image itself when
+   * the ranges already span every sample.
+   */
+  private void stretch(String name, String d, double[] low, double[] high) {
+    boolean full = true;
+    for (int c = 0; c < 3; c++) {
+      full &= low[c] == 0 && high[c] == 1;
+    }
+    if (full && ImageProcessOperations.isNormalized(this.lookup(name))) {
+      this.imageMap.put(d, this.lookup(name));
+      return;
+    }
+    this.newAppliedImage(name, d, PointOperations.levels(low, high));
+  }
+
+  /**
+   * Determines whether every sample of an image is known to lie between 0 and 1, so that
+   * clamping its samples or reading them at their own positions changes nothing.
+   */
+  private static boolean isNormalized(Image image) {
+    if (image instanceof RemappedImage) {
+      return ImageProcessOperations.isNormalized(((RemappedImage) image).getSource());
+    }
+    int max = image.getMaximumValue();
+    if (image instanceof PackedImage) {
+      SampleDepth depth = ((PackedImage) image).getDepth();
+      return depth.isInteger() && depth.getMaxSample() <= max;
+    }
+    return image instanceof MappedImage && (max == 0xFF || max == 0xFFFF);
+  }
+
+  /**
+   * Represents an image read from a file, remembered for as long as it is in use elsewhere.
+   */
+  private static class LoadedFile {
+    private final long size;
+    private final FileTime modified;
+    private final WeakReference<Image> image;
+
+    LoadedFile(BasicFileAttributes attributes, Image image) {
+      this.size = attributes.size();
+      this.modified = attributes.lastModifiedTime();
+      this.image = new WeakReference<Image>(image);
+    }
+
+    /**
+     * Retrieves the image if the file still has the given size and modification time.
+     */
+    Image reuse(BasicFileAttributes attributes) {
+      if (attributes.size() != this.size || !attributes.lastModifiedTime().equals(this.modified)) {
+        return null;
+      }
+      return this.image.get();
+    }
   }
 }
@@ -14,4 +14,41 @@ public interface ImageProcessViewModel {
    * @throws IllegalArgumentException if the given name cannot be found
    */
   Image getImage(String name) throws IllegalArgumentException;
+
+  /**
+   * Retrieves an image with a given name as it is stored, without computing operations that
+   * were recorded lazily. Its dimensions are known at once, but reading its pixels may compute
+   * them again on every read.
+   *
+   * @param name - name of an image
+   *
+   * @return the image
+   * @throws IllegalArgumentException if the given name cannot be found
+   */
+  default Image getStoredImage(String name) throws IllegalArgumentException {
+    return this.getImage(name);
+  }
+
+  /**
+   * Retrieves the pyramid of an image with a given name, for previews that read only the tiles
+   * they show. The pyramid becomes invalid when the image is replaced, after which it has to be
+   * retrieved again.
+   *
+   * @param name - name of an image
+   *
+   * @return the pyramid
+   * @throws IllegalArgumentException if the given name cannot be found
+   */
+  ImagePyramid getPyramid(String name) throws IllegalArgumentException;
+
+  /**
+   * Retrieves the histograms and sample statistics of an image with a given name. They are
+   * computed once for every image and kept for as long as the image is in use.
+   *
+   * @param name - name of an image
+   *
+   * @return the statistics
+   * @throws IllegalArgumentException if the given name cannot be found
+   */
+  ImageStatistics getStatistics(String name) throws IllegalArgumentException;
 }
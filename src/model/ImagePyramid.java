@@ -0,0 +1,271 @@
+package model;
+
+import java.util.function.Supplier;
+
+/**
+ * Represents an image at a series of resolutions, each half the width and height of the one
+ * before, down to a level that fits in one tile. Every level is split into square tiles that are
+ * computed only when they are asked for and kept in a shared {@link TileCache}: tiles of the
+ * full resolution level are copied from the image, and every other tile averages blocks of two
+ * by two pixels of the four tiles below it. A preview at any zoom therefore reads only the tiles
+ * it shows, and an overview of a large image is computed once. Tiles hold single precision
+ * samples, which is plenty for display.
+ *
+ * <p>A pyramid belongs to a name in an {@link ImageRegistry} and becomes invalid when the image
+ * stored under that name is replaced or removed.</p>
+ */
+public final class ImagePyramid {
+  /**
+   * The width and height of a tile, in pixels of its level.
+   */
+  public static final int TILE_SIZE = 256;
+
+  private final Supplier<Image> source;
+  private final TileCache cache;
+  private final int[] widths;
+  private final int[] heights;
+  private final int maxValue;
+  private volatile boolean valid;
+
+  /**
+   * Constructs a pyramid over an image.
+   *
+   * @param source - retrieves the full resolution image whenever a tile of it is needed, which
+   *               may read it back from a spill file
+   * @param image - the image as it is now
+   * @param cache - where tiles are kept
+   */
+  ImagePyramid(Supplier<Image> source, Image image, TileCache cache) {
+    this.source = source;
+    this.cache = cache;
+    this.maxValue = image.getMaximumValue();
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int levels = 1;
+    for (int w = width, h = height; w > TILE_SIZE || h > TILE_SIZE; levels++) {
+      w = (w + 1) / 2;
+      h = (h + 1) / 2;
+    }
+    this.widths = new int[levels];
+    this.heights = new int[levels];
+    this.widths[0] = width;
+    this.heights[0] = height;
+    for (int l = 1; l < levels; l++) {
+      this.widths[l] = (this.widths[l - 1] + 1) / 2;
+      this.heights[l] = (this.heights[l - 1] + 1) / 2;
+    }
+    this.valid = true;
+  }
+
+  /**
+   * Retrieves the number of levels, the last of which fits in one tile.
+   *
+   * @return the level count
+   */
+  public int getLevelCount() {
+    return this.widths.length;
+  }
+
+  /**
+   * Retrieves the width of a level.
+   *
+   * @param level - the level, where 0 is the full resolution
+   * @return the width in pixels
+   * @throws IllegalArgumentException if there is no such level
+   */
+  public int getWidth(int level) throws IllegalArgumentException {
+    this.checkLevel(level);
+    return this.widths[level];
+  }
+
+  /**
+   * Retrieves the height of a level.
+   *
+   * @param level - the level, where 0 is the full resolution
+   * @return the height in pixels
+   * @throws IllegalArgumentException if there is no such level
+   */
+  public int getHeight(int level) throws IllegalArgumentException {
+    this.checkLevel(level);
+    return this.heights[level];
+  }
+
+  /**
+   * Finds the smallest level that still has at least the resolution of a zoom.
+   *
+   * @param zoom - the size of a displayed pixel over the size of a full resolution pixel
+   * @return the level to draw the zoom from
+   * @throws IllegalArgumentException if the zoom is not positive
+   */
+  public int levelFor(double zoom) throws IllegalArgumentException {
+    if (!(zoom > 0)) {
+      throw new IllegalArgumentException("Zoom must be positive");
+    }
+    int level = 0;
+    while (level + 1 < this.widths.length && zoom <= 1.0 / (1 << (level + 1))) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * Determines whether the image this pyramid was built on is still stored under its name.
+   *
+   * @return true if tiles can still be retrieved
+   */
+  public boolean isValid() {
+    return this.valid;
+  }
+
+  /**
+   * Retrieves a tile, computing it and the tiles below it that are not cached. Tiles on the
+   * right and bottom edges of a level are smaller than {@link #TILE_SIZE}.
+   *
+   * @param level - the level, where 0 is the full resolution
+   * @param row - the row of the tile among the tiles of its level
+   * @param col - the column of the tile among the tiles of its level
+   * @return the tile, which must not be changed
+   * @throws IllegalArgumentException if there is no such tile
+   * @throws IllegalStateException if the image of this pyramid was replaced
+   */
+  public Image getTile(int level, int row, int col)
+          throws IllegalArgumentException, IllegalStateException {
+    this.checkLevel(level);
+    if (row < 0 || col < 0 || row * TILE_SIZE >= this.heights[level]
+            || col * TILE_SIZE >= this.widths[level]) {
+      throw new IllegalArgumentException("There is no tile " + row + ", " + col + " at level "
+              + level);
+    }
+    return this.tile(level, row, col);
+  }
+
+  /**
+   * Copies a rectangle of a level into a new image, reading only the tiles it overlaps.
+   *
+   * @param level - the level, where 0 is the full resolution
+   * @param r - first row of the rectangle in pixels of the level
+   * @param c - first column of the rectangle in pixels of the level
+   * @param height - number of rows, cut off at the bottom of the level
+   * @param width - number of columns, cut off at the right of the level
+   * @return the rectangle
+   * @throws IllegalArgumentException if the rectangle does not start inside the level or is
+   *         empty
+   * @throws IllegalStateException if the image of this pyramid was replaced
+   */
+  public Image getRegion(int level, int r, int c, int height, int width)
+          throws IllegalArgumentException, IllegalStateException {
+    this.checkLevel(level);
+    if (r < 0 || c < 0 || r >= this.heights[level] || c >= this.widths[level] || height <= 0
+            || width <= 0) {
+      throw new IllegalArgumentException("The region is outside level " + level);
+    }
+    int h = Math.min(height, this.heights[level] - r);
+    int w = Math.min(width, this.widths[level] - c);
+    PackedImage out = new PackedImage(w, h, this.maxValue, SampleDepth.FLOAT,
+            PixelLayout.INTERLEAVED);
+    double[] buffer = new double[TILE_SIZE * TILE_SIZE * 3];
+    for (int tr = r / TILE_SIZE; tr <= (r + h - 1) / TILE_SIZE; tr++) {
+      for (int tc = c / TILE_SIZE; tc <= (c + w - 1) / TILE_SIZE; tc++) {
+        Image tile = this.tile(level, tr, tc);
+        int y0 = Math.max(r, tr * TILE_SIZE);
+        int x0 = Math.max(c, tc * TILE_SIZE);
+        int y1 = Math.min(r + h, tr * TILE_SIZE + tile.getHeight());
+        int x1 = Math.min(c + w, tc * TILE_SIZE + tile.getWidth());
+        tile.getRegion(y0 - tr * TILE_SIZE, x0 - tc * TILE_SIZE, y1 - y0, x1 - x0, buffer, 0);
+        out.setRegion(y0 - r, x0 - c, y1 - y0, x1 - x0, buffer, 0);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Marks this pyramid invalid. Called by the cache when the image is replaced.
+   */
+  void markInvalid() {
+    this.valid = false;
+  }
+
+  /**
+   * Retrieves a tile from the cache or computes it.
+   */
+  private PackedImage tile(int level, int row, int col) throws IllegalStateException {
+    if (!this.valid) {
+      throw new IllegalStateException("The image of this pyramid has been replaced");
+    }
+    PackedImage tile = this.cache.get(this, level, row, col);
+    if (tile != null) {
+      return tile;
+    }
+    int y0 = row * TILE_SIZE;
+    int x0 = col * TILE_SIZE;
+    int h = Math.min(TILE_SIZE, this.heights[level] - y0);
+    int w = Math.min(TILE_SIZE, this.widths[level] - x0);
+    double[] out = new double[h * w * 3];
+    if (level == 0) {
+      this.image().getRegion(y0, x0, h, w, out, 0);
+    } else {
+      this.downsample(level, row, col, h, w, out);
+    }
+    tile = new PackedImage(w, h, this.maxValue, SampleDepth.FLOAT,
+            PixelLayout.INTERLEAVED);
+    tile.setRegion(0, 0, h, w, out, 0);
+    this.cache.put(this, level, row, col, tile);
+    return tile;
+  }
+
+  /**
+   * Averages two by two blocks of the four tiles below a tile. Blocks on the right and bottom
+   * edges of an odd sized level hold fewer pixels.
+   */
+  private void downsample(int level, int row, int col, int h, int w, double[] out) {
+    int below = level - 1;
+    double[] child = new double[TILE_SIZE * TILE_SIZE * 3];
+    int[] counts = new int[h * w];
+    for (int dy = 0; dy < 2; dy++) {
+      for (int dx = 0; dx < 2; dx++) {
+        int cr = row * 2 + dy;
+        int cc = col * 2 + dx;
+        if (cr * TILE_SIZE >= this.heights[below] || cc * TILE_SIZE >= this.widths[below]) {
+          continue;
+        }
+        PackedImage t = this.tile(below, cr, cc);
+        int th = t.getHeight();
+        int tw = t.getWidth();
+        t.getRegion(0, 0, th, tw, child, 0);
+        for (int y = 0; y < th; y++) {
+          int oy = (dy * TILE_SIZE + y) / 2;
+          for (int x = 0; x < tw; x++) {
+            int o = oy * w + (dx * TILE_SIZE + x) / 2;
+            int k = (y * tw + x) * 3;
+            out[o * 3] += child[k];
+            out[o * 3 + 1] += child[k + 1];
+            out[o * 3 + 2] += child[k + 2];
+            counts[o]++;
+          }
+        }
+      }
+    }
+    for (int i = 0; i < counts.length; i++) {
+      out[i * 3] /= counts[i];
+      out[i * 3 + 1] /= counts[i];
+      out[i * 3 + 2] /= counts[i];
+    }
+  }
+
+  /**
+   * Retrieves the full resolution image.
+   */
+  private Image image() throws IllegalStateException {
+    Image image = this.source.get();
+    if (image == null || !this.valid) {
+      throw new IllegalStateException("The image of this pyramid has been replaced");
+    }
+    return image;
+  }
+
+  private void checkLevel(int level) throws IllegalArgumentException {
+    if (level < 0 || level >= this.widths.length) {
+      throw new IllegalArgumentException("There is no level " + level);
+    }
+  }
+}
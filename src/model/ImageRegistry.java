@@ -0,0 +1,510 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores named images within a byte budget. Each image is charged its estimated heap size, and
+ * when the total goes over the budget the least recently used images are written to temporary
+ * spill files and dropped from memory. A spilled image is read back transparently the next time
+ * it is retrieved. Views and pipelines are charged the buffer of the image they read from, since
+ * they keep it in memory even when that image is spilled, and spilling one writes its pixels and
+ * lets go of that buffer. Mapped files are charged nothing and are never spilled. Spill files are
+ * deleted as soon as their image is read back or removed, and any left are deleted by
+ * {@link #close()}.
+ *
+ * <p>Images are never changed once stored, so the same image stored under several names is
+ * shared rather than copied: the names reference one buffer, which is charged and spilled once
+ * and released when the last name referencing it is replaced or removed.</p>
+ *
+ * <p>Each image can also carry an {@link ImagePyramid} for previews, built the first time it is
+ * asked for. The tiles of all pyramids share one cache with its own byte budget, and a pyramid is
+ * dropped together with its tiles when its image is replaced or removed.</p>
+ */
+public class ImageRegistry implements AutoCloseable {
+  private static final int HEADER_SIZE = 16;
+
+  /**
+   * The byte budget of the tiles of every pyramid of a registry.
+   */
+  public static final long TILE_BUDGET = 64L << 20;
+
+  private final long budget;
+  private final LinkedHashMap<String, Entry> entries;
+  private final Map<Image, Buffer> resident;
+  private final TileCache tiles;
+  private long residentBytes;
+  private long hits;
+  private long misses;
+  private long spills;
+  private Path spillDir;
+
+  /**
+   * Constructs a registry without a byte budget, which never spills.
+   */
+  public ImageRegistry() {
+    this(Long.MAX_VALUE);
+  }
+
+  /**
+   * Constructs a registry that keeps at most the given number of bytes of images in memory.
+   *
+   * @param budget - the byte budget
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  public ImageRegistry(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget cannot be negative");
+    }
+    this.budget = budget;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    this.resident = new IdentityHashMap<Image, Buffer>();
+    this.tiles = new TileCache(TILE_BUDGET);
+  }
+
+  /**
+   * Retrieves an image with a given name, reading it back from its spill file if it was evicted.
+   *
+   * @param name - name of an image
+   * @return the image, or null if there is no image with that name
+   * @throws IllegalStateException if a spilled image cannot be read back
+   */
+  public synchronized Image get(String name) throws IllegalStateException {
+    Entry e = this.entries.get(name);
+    if (e == null) {
+      return null;
+    }
+    Buffer b = e.buffer;
+    if (b.image != null) {
+      this.hits++;
+      return b.image;
+    }
+    this.misses++;
+    try {
+      b.image = ImageRegistry.read(b.spillFile);
+      Files.deleteIfExists(b.spillFile);
+    } catch (IOException ex) {
+      throw new IllegalStateException("Spilled image " + name + " cannot be read back: "
+              + ex.getMessage());
+    }
+    b.spillFile = null;
+    b.bytes = ImageRegistry.estimateBytes(b.image);
+    this.resident.put(b.image, b);
+    this.residentBytes += b.bytes;
+    this.evict(name);
+    return b.image;
+  }
+
+  /**
+   * Stores an image under a given name, replacing any image already stored under it. An image
+   * already stored under another name is shared with it.
+   *
+   * @param name - name of the image
+   * @param image - the image, which must not be changed afterwards
+   * @throws IllegalArgumentException if the name or image is null
+   */
+  public synchronized void put(String name, Image image) throws IllegalArgumentException {
+    if (name == null || image == null) {
+      throw new IllegalArgumentException("Name and image cannot be null");
+    }
+    Entry old = this.entries.get(name);
+    if (old != null && old.buffer.image == image) {
+      return;
+    }
+    this.remove(name);
+    Buffer b = this.resident.get(image);
+    if (b == null) {
+      b = new Buffer(image, ImageRegistry.estimateBytes(image));
+      this.resident.put(image, b);
+      this.residentBytes += b.bytes;
+    }
+    b.references++;
+    this.entries.put(name, new Entry(b));
+    this.evict(name);
+  }
+
+  /**
+   * Removes the image with a given name, deleting its spill file if it has one.
+   *
+   * @param name - name of the image
+   * @return true if there was an image with that name
+   */
+  public synchronized boolean remove(String name) {
+    Entry e = this.entries.remove(name);
+    if (e == null) {
+      return false;
+    }
+    if (e.pyramid != null) {
+      this.tiles.invalidate(e.pyramid);
+    }
+    Buffer b = e.buffer;
+    if (--b.references > 0) {
+      return true;
+    }
+    if (b.image != null) {
+      this.resident.remove(b.image);
+      this.residentBytes -= b.bytes;
+    } else {
+      try {
+        Files.deleteIfExists(b.spillFile);
+      } catch (IOException ex) {
+        // the file is in the spill folder, which close() empties
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Retrieves the number of names that share the image stored under a given name.
+   *
+   * @param name - name of the image
+   * @return the number of names referencing the same image, or 0 if there is no such image
+   */
+  public synchronized int getReferences(String name) {
+    Entry e = this.entries.get(name);
+    return e == null ? 0 : e.buffer.references;
+  }
+
+  /**
+   * Retrieves the pyramid of the image with a given name, building it the first time. Its tiles
+   * read the image through this registry, so a spilled image is read back only if a tile of the
+   * full resolution level is not cached.
+   *
+   * @param name - name of the image
+   * @return the pyramid, or null if there is no image with that name
+   * @throws IllegalStateException if a spilled image cannot be read back
+   */
+  public synchronized ImagePyramid getPyramid(String name) throws IllegalStateException {
+    Entry e = this.entries.get(name);
+    if (e == null) {
+      return null;
+    }
+    if (e.pyramid == null) {
+      e.pyramid = new ImagePyramid(() -> this.get(name), this.get(name), this.tiles);
+    }
+    return e.pyramid;
+  }
+
+  /**
+   * Retrieves the number of pyramid tiles found in the tile cache.
+   *
+   * @return the tile hit count
+   */
+  public long getTileHits() {
+    return this.tiles.getHits();
+  }
+
+  /**
+   * Retrieves the number of pyramid tiles that had to be computed.
+   *
+   * @return the tile miss count
+   */
+  public long getTileMisses() {
+    return this.tiles.getMisses();
+  }
+
+  /**
+   * Determines whether there is an image with a given name, in memory or spilled.
+   *
+   * @param name - name of the image
+   * @return true if there is an image with that name
+   */
+  public synchronized boolean contains(String name) {
+    return this.entries.containsKey(name);
+  }
+
+  /**
+   * Retrieves the number of retrievals that found their image in memory.
+   *
+   * @return the hit count
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Retrieves the number of retrievals that had to read their image back from a spill file.
+   *
+   * @return the miss count
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Retrieves the number of images written to spill files.
+   *
+   * @return the spill count
+   */
+  public synchronized long getSpills() {
+    return this.spills;
+  }
+
+  /**
+   * Retrieves the estimated heap size of the images held in memory.
+   *
+   * @return the resident size in bytes
+   */
+  public synchronized long getResidentBytes() {
+    return this.residentBytes;
+  }
+
+  /**
+   * Retrieves the byte budget of this registry.
+   *
+   * @return the budget in bytes
+   */
+  public long getBudget() {
+    return this.budget;
+  }
+
+  /**
+   * Deletes every spill file and the spill folder. Images spilled at that point are removed,
+   * while images held in memory can still be retrieved and spilled again later.
+   */
+  @Override
+  public synchronized void close() {
+    Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Entry e = it.next().getValue();
+      if (e.buffer.image == null) {
+        if (e.pyramid != null) {
+          this.tiles.invalidate(e.pyramid);
+        }
+        it.remove();
+      }
+    }
+    if (this.spillDir == null) {
+      return;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(this.spillDir)) {
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+      Files.deleteIfExists(this.spillDir);
+    } catch (IOException ex) {
+      // the folder is in the temporary directory and is left for the system to clean up
+    }
+    this.spillDir = null;
+  }
+
+  /**
+   * Estimates the heap held by an image's pixels. A view or pipeline is charged the buffer of
+   * the image it reads from, which it keeps in memory.
+   *
+   * @param image - the image
+   * @return the estimated size in bytes
+   */
+  public static long estimateBytes(Image image) {
+    if (image instanceof PackedImage) {
+      return ((PackedImage) image).getByteSize();
+    }
+    if (image instanceof ImageImpl) {
+      // a double[3] per pixel is 24 bytes of samples, a 16 byte header and an 8 byte reference
+      return (long) image.getWidth() * image.getHeight() * 48;
+    }
+    if (image instanceof RemappedImage) {
+      return ImageRegistry.estimateBytes(((RemappedImage) image).getSource());
+    }
+    if (image instanceof PipelineImage) {
+      return ImageRegistry.estimateBytes(((PipelineImage) image).getSource());
+    }
+    return 0;
+  }
+
+  /**
+   * Spills least recently used images until the resident size is within budget. The image
+   * that was just used is never spilled.
+   */
+  private void evict(String keep) {
+    Buffer kept = this.entries.get(keep).buffer;
+    Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+    while (this.residentBytes > this.budget && it.hasNext()) {
+      Map.Entry<String, Entry> next = it.next();
+      Buffer b = next.getValue().buffer;
+      if (b == kept || b.image == null || b.bytes == 0) {
+        continue;
+      }
+      try {
+        b.spillFile = this.spill(b.image);
+      } catch (IOException ex) {
+        throw new IllegalStateException("Image " + next.getKey() + " cannot be spilled: "
+                + ex.getMessage());
+      }
+      this.resident.remove(b.image);
+      b.image = null;
+      this.residentBytes -= b.bytes;
+      this.spills++;
+    }
+  }
+
+  /**
+   * Writes an image's samples to a new temporary file, keeping the depth of packed images.
+   */
+  private Path spill(Image image) throws IOException {
+    if (this.spillDir == null) {
+      this.spillDir = Files.createTempDirectory("image-spill");
+      this.spillDir.toFile().deleteOnExit();
+    }
+    Path file = Files.createTempFile(this.spillDir, "spill", ".bin");
+    ImageRegistry.write(image, file);
+    return file;
+  }
+
+  /**
+   * Writes an image's samples to a file in a raw format that keeps the depth of packed images,
+   * and of the packed images flipped views read from.
+   *
+   * @param image - the image
+   * @param file - the file, which is created or replaced
+   * @throws IOException if the file cannot be written
+   */
+  static void write(Image image, Path file) throws IOException {
+    SampleDepth depth = ImageRegistry.depthOf(image);
+    int w = image.getWidth();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(HEADER_SIZE,
+            w * 3 * depth.getBytes()));
+    double[] row = new double[w * 3];
+    int[] raw = new int[w * 3];
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      buffer.putInt(w).putInt(image.getHeight()).putInt(image.getMaximumValue())
+              .putInt(depth.ordinal());
+      ImageRegistry.drain(buffer, channel);
+      for (int r = 0; r < image.getHeight(); r++) {
+        if (depth.isInteger()) {
+          if (image instanceof PackedImage) {
+            ((PackedImage) image).getRawRow(r, raw, 0);
+          } else {
+            image.getRow(r, row, 0);
+            for (int k = 0; k < w * 3; k++) {
+              raw[k] = PpmWriter.toSample(row[k], image.getMaximumValue());
+            }
+          }
+          for (int sample : raw) {
+            if (depth == SampleDepth.BYTE) {
+              buffer.put((byte) sample);
+            } else {
+              buffer.putShort((short) sample);
+            }
+          }
+        } else {
+          image.getRow(r, row, 0);
+          for (double v : row) {
+            if (depth == SampleDepth.FLOAT) {
+              buffer.putFloat((float) v);
+            } else {
+              buffer.putDouble(v);
+            }
+          }
+        }
+        ImageRegistry.drain(buffer, channel);
+      }
+    }
+  }
+
+  /**
+   * Reads an image written by {@link #write(Image, Path)}.
+   *
+   * @param file - the file
+   * @return the image, stored with the depth it was written with
+   * @throws IOException if the file cannot be read or is truncated
+   */
+  static PackedImage read(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      ImageRegistry.fill(header, channel);
+      int w = header.getInt();
+      int h = header.getInt();
+      int maxValue = header.getInt();
+      SampleDepth depth = SampleDepth.values()[header.getInt()];
+      PackedImage image = new PackedImage(w, h, maxValue, depth, PixelLayout.INTERLEAVED);
+      ByteBuffer buffer = ByteBuffer.allocateDirect(w * 3 * depth.getBytes());
+      double[] row = new double[w * 3];
+      int i = 0;
+      for (int r = 0; r < h; r++) {
+        buffer.clear();
+        ImageRegistry.fill(buffer, channel);
+        if (depth.isInteger()) {
+          for (int k = 0; k < w * 3; k++, i++) {
+            image.putRaw(i, depth == SampleDepth.BYTE
+                    ? buffer.get() & 0xFF : buffer.getShort() & 0xFFFF);
+          }
+        } else {
+          for (int k = 0; k < w * 3; k++) {
+            row[k] = depth == SampleDepth.FLOAT ? buffer.getFloat() : buffer.getDouble();
+          }
+          image.setRow(r, row, 0);
+        }
+      }
+      return image;
+    }
+  }
+
+  /**
+   * Retrieves the depth an image is spilled with: that of a packed image, or of the packed image
+   * a view only rearranges, and doubles otherwise.
+   */
+  private static SampleDepth depthOf(Image image) {
+    if (image instanceof PackedImage) {
+      return ((PackedImage) image).getDepth();
+    }
+    if (image instanceof RemappedImage) {
+      return ImageRegistry.depthOf(((RemappedImage) image).getSource());
+    }
+    return SampleDepth.DOUBLE;
+  }
+
+  private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static void fill(ByteBuffer buffer, FileChannel channel) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("Image file is truncated");
+      }
+    }
+    buffer.flip();
+  }
+
+  /**
+   * Represents a name under which an image is stored, with the image's pyramid once built.
+   */
+  private static class Entry {
+    private final Buffer buffer;
+    private ImagePyramid pyramid;
+
+    Entry(Buffer buffer) {
+      this.buffer = buffer;
+    }
+  }
+
+  /**
+   * Represents an image shared by every name it is stored under, in memory or spilled.
+   */
+  private static class Buffer {
+    private Image image;
+    private Path spillFile;
+    private long bytes;
+    private int references;
+
+    Buffer(Image image, long bytes) {
+      this.image = image;
+      this.bytes = bytes;
+    }
+  }
+}
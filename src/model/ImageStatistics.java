@@ -0,0 +1,259 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Summarizes the samples of an image: a histogram and the smallest, largest and mean sample of
+ * every channel and of the luma (0.2126r + 0.7152g + 0.0722b). Whatever the max value, a
+ * sample falls into the bin of the value it would be saved as out of 255, and samples outside
+ * 0 to 1 are counted in the first or last bin.
+ *
+ * <p>The image is read once, in bands that run in parallel and each fill their own histograms,
+ * which are merged in row order at the end so the result does not depend on the schedule.</p>
+ */
+public final class ImageStatistics {
+  /**
+   * Number of bins of every histogram.
+   */
+  public static final int BINS = 256;
+
+  /**
+   * Channel index of the luma, after the red, green and blue channels.
+   */
+  public static final int LUMA = 3;
+
+  private static final int CHANNELS = 4;
+  private static final String[] NAMES = {"red", "green", "blue", "luma"};
+
+  private final long pixels;
+  private final long[][] histograms;
+  private final double[] min;
+  private final double[] max;
+  private final double[] sum;
+
+  private ImageStatistics(long pixels, Partial total) {
+    this.pixels = pixels;
+    this.histograms = total.histograms;
+    this.min = total.min;
+    this.max = total.max;
+    this.sum = total.sum;
+  }
+
+  /**
+   * Computes the statistics of an image in one pass.
+   *
+   * @param image - the image
+   * @param executor - runs the bands of rows
+   * @return the statistics
+   */
+  static ImageStatistics of(Image image, ImageExecutor executor) {
+    int w = image.getWidth();
+    int h = image.getHeight();
+    Queue<Partial> partials = new ConcurrentLinkedQueue<Partial>();
+    executor.forEachBand(h, w, (top, bottom) -> {
+      Partial p = new Partial(top);
+      p.add(image, top, bottom);
+      partials.add(p);
+    });
+    List<Partial> ordered = new ArrayList<Partial>(partials);
+    ordered.sort(Comparator.comparingInt(p -> p.top));
+    Partial total = new Partial(0);
+    for (Partial p : ordered) {
+      total.merge(p);
+    }
+    return new ImageStatistics((long) w * h, total);
+  }
+
+  /**
+   * Retrieves the number of pixels summarized.
+   *
+   * @return the pixel count
+   */
+  public long getPixelCount() {
+    return this.pixels;
+  }
+
+  /**
+   * Retrieves the histogram of a channel.
+   *
+   * @param channel - 0, 1 or 2 for red, green or blue, or {@link #LUMA}
+   * @return the number of samples in each of the {@link #BINS} bins
+   * @throws IllegalArgumentException if the channel does not exist
+   */
+  public long[] getHistogram(int channel) throws IllegalArgumentException {
+    return this.histograms[ImageStatistics.check(channel)].clone();
+  }
+
+  /**
+   * Retrieves the smallest sample of a channel.
+   *
+   * @param channel - 0, 1 or 2 for red, green or blue, or {@link #LUMA}
+   * @return the smallest sample
+   * @throws IllegalArgumentException if the channel does not exist
+   */
+  public double getMinimum(int channel) throws IllegalArgumentException {
+    return this.min[ImageStatistics.check(channel)];
+  }
+
+  /**
+   * Retrieves the largest sample of a channel.
+   *
+   * @param channel - 0, 1 or 2 for red, green or blue, or {@link #LUMA}
+   * @return the largest sample
+   * @throws IllegalArgumentException if the channel does not exist
+   */
+  public double getMaximum(int channel) throws IllegalArgumentException {
+    return this.max[ImageStatistics.check(channel)];
+  }
+
+  /**
+   * Retrieves the mean sample of a channel.
+   *
+   * @param channel - 0, 1 or 2 for red, green or blue, or {@link #LUMA}
+   * @return the mean sample
+   * @throws IllegalArgumentException if the channel does not exist
+   */
+  public double getMean(int channel) throws IllegalArgumentException {
+    return this.sum[ImageStatistics.check(channel)] / this.pixels;
+  }
+
+  /**
+   * Retrieves the lowest bin of a channel once a share of the darkest samples is ignored.
+   *
+   * @param channel - 0, 1 or 2 for red, green or blue, or {@link #LUMA}
+   * @param clip - the share of samples ignored, from 0 to 1
+   * @return the value of the bin, between 0 and 1
+   * @throws IllegalArgumentException if the channel does not exist
+   */
+  public double getLow(int channel, double clip) throws IllegalArgumentException {
+    long[] bins = this.histograms[ImageStatistics.check(channel)];
+    long seen = 0;
+    for (int b = 0; b < BINS - 1; b++) {
+      seen += bins[b];
+      if (seen > clip * this.pixels) {
+        return b / 255.0;
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * Retrieves the highest bin of a channel once a share of the brightest samples is ignored.
+   *
+   * @param channel - 0, 1 or 2 for red, green or blue, or {@link #LUMA}
+   * @param clip - the share of samples ignored, from 0 to 1
+   * @return the value of the bin, between 0 and 1
+   * @throws IllegalArgumentException if the channel does not exist
+   */
+  public double getHigh(int channel, double clip) throws IllegalArgumentException {
+    long[] bins = this.histograms[ImageStatistics.check(channel)];
+    long seen = 0;
+    for (int b = BINS - 1; b > 0; b--) {
+      seen += bins[b];
+      if (seen > clip * this.pixels) {
+        return b / 255.0;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Describes the smallest, largest and mean sample of every channel.
+   *
+   * @return one line per channel
+   */
+  public String summary() {
+    StringBuilder s = new StringBuilder();
+    for (int c = 0; c < CHANNELS; c++) {
+      s.append(String.format("%s: min %.4f, max %.4f, mean %.4f", NAMES[c], this.min[c],
+              this.max[c], this.getMean(c)));
+      s.append(c < CHANNELS - 1 ? "\n" : "");
+    }
+    return s.toString();
+  }
+
+  /**
+   * Writes the histograms as comma separated values, one line per bin after a header line.
+   *
+   * @return the histograms
+   */
+  public String toCsv() {
+    StringBuilder s = new StringBuilder("bin,").append(String.join(",", NAMES)).append('\n');
+    for (int b = 0; b < BINS; b++) {
+      s.append(b);
+      for (int c = 0; c < CHANNELS; c++) {
+        s.append(',').append(this.histograms[c][b]);
+      }
+      s.append('\n');
+    }
+    return s.toString();
+  }
+
+  private static int check(int channel) throws IllegalArgumentException {
+    if (channel < 0 || channel >= CHANNELS) {
+      throw new IllegalArgumentException("Channel " + channel + " does not exist");
+    }
+    return channel;
+  }
+
+  /**
+   * Represents the statistics of a band of rows.
+   */
+  private static class Partial {
+    private final int top;
+    private final long[][] histograms = new long[CHANNELS][BINS];
+    private final double[] min = new double[CHANNELS];
+    private final double[] max = new double[CHANNELS];
+    private final double[] sum = new double[CHANNELS];
+
+    Partial(int top) {
+      this.top = top;
+      Arrays.fill(this.min, Double.POSITIVE_INFINITY);
+      Arrays.fill(this.max, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Adds the rows from top up to but not including bottom.
+     */
+    void add(Image image, int top, int bottom) {
+      int w = image.getWidth();
+      double[] row = new double[w * 3];
+      double[] sample = new double[CHANNELS];
+      for (int r = top; r < bottom; r++) {
+        image.getRow(r, row, 0);
+        for (int j = 0; j < w * 3; j += 3) {
+          sample[0] = row[j];
+          sample[1] = row[j + 1];
+          sample[2] = row[j + 2];
+          sample[3] = 0.2126 * row[j] + 0.7152 * row[j + 1] + 0.0722 * row[j + 2];
+          for (int c = 0; c < CHANNELS; c++) {
+            double v = sample[c];
+            this.histograms[c][Math.max(0, Math.min(BINS - 1, PpmWriter.toSample(v, BINS - 1)))]++;
+            this.min[c] = Math.min(this.min[c], v);
+            this.max[c] = Math.max(this.max[c], v);
+            this.sum[c] += v;
+          }
+        }
+      }
+    }
+
+    /**
+     * Adds the statistics of another band.
+     */
+    void merge(Partial other) {
+      for (int c = 0; c < CHANNELS; c++) {
+        for (int b = 0; b < BINS; b++) {
+          this.histograms[c][b] += other.histograms[c][b];
+        }
+        this.min[c] = Math.min(this.min[c], other.min[c]);
+        this.max[c] = Math.max(this.max[c], other.max[c]);
+        this.sum[c] += other.sum[c];
+      }
+    }
+  }
+}
@@ -1,14 +1,24 @@
 package model;
 
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Scanner;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import controller.ImageProcessController;
 import controller.ImageTextController;
@@ -21,52 +31,56 @@ import view.ImageView;
  * Feel free to change this method as required.
  */
 public class ImageUtil {
+  private static final long STRIP_BYTES = 1 << 20;
+  private static final long ENCODE_BUDGET = 8 << 20;
 
   /**
-   * Read an image file in the PPM format and print the colors.
+   * Read an image file in the PPM format and print the colors. Both the plain P3 and the raw P6
+   * encodings are accepted, and the encoding is detected from the magic number.
    *
    * @param filename the path of the file.
+   * @throws FileNotFoundException if the file does not exist
+   * @throws IllegalArgumentException if the file cannot be read or is not a valid PPM file
    */
   public static Image readPPM(String filename) throws FileNotFoundException {
-    Scanner sc;
-
-    sc = new Scanner(new FileInputStream(filename));
-    StringBuilder builder = new StringBuilder();
-    // read the file line by line, and populate a string. This will throw away any comment lines
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s + System.lineSeparator());
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      PpmReader reader = new PpmReader(channel);
+      PpmFormat format = reader.readFormat();
+      int[] header = reader.readHeader(format);
+      int width = header[0];
+      int height = header[1];
+      int maxValue = header[2];
+      SampleDepth depth = SampleDepth.forMaxSample(maxValue);
+      PackedImage image = new PackedImage(width, height, maxValue, depth,
+              PixelLayout.INTERLEAVED);
+      if (format == PpmFormat.P6) {
+        reader.readRaster(image, depth.getBytes());
+        return image;
       }
+      return reader.readPlainRaster(image);
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException(filename + " does not exist");
+    } catch (IOException e) {
+      throw new IllegalArgumentException(filename + " cannot be read: " + e.getMessage());
     }
+  }
 
-    // now set up the scanner to read from the string we just built
-    sc = new Scanner(builder.toString());
-    String token;
-
-    token = sc.next();
-    if (!token.equals("P3")) {
-      System.out.println("File should begin with P3");
-    }
-    int width = sc.nextInt();
-    System.out.println("Width of image: " + width);
-    int height = sc.nextInt();
-    System.out.println("Height of image: " + height);
-    int maxValue = sc.nextInt();
-    System.out.println("Maximum value of a color in this file (usually 255): " + maxValue);
-
-    double[][][] pixArr = new double[height][width][3];
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int r = sc.nextInt();
-        int g = sc.nextInt();
-        int b = sc.nextInt();
-        pixArr[i][j] = new double[]{
-          r / 255., g / 255., b / 255.0
-        };
-      }
+  /**
+   * Reads the magic number of a PPM file to find its encoding.
+   *
+   * @param filename the path of the file.
+   * @return the encoding of the file
+   * @throws FileNotFoundException if the file does not exist
+   * @throws IllegalArgumentException if the file cannot be read or is not a PPM file
+   */
+  public static PpmFormat readFormat(String filename) throws FileNotFoundException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      return new PpmReader(channel).readFormat();
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException(filename + " does not exist");
+    } catch (IOException e) {
+      throw new IllegalArgumentException(filename + " cannot be read: " + e.getMessage());
     }
-    return new ImageImpl(pixArr, maxValue);
   }
 
   /**
@@ -77,18 +91,148 @@ public class ImageUtil {
    * @throws IOException if the program cannot read/write the file
    */
   public static void savePPM(Image i, String filename) throws IOException {
-    StringBuilder ppm = new StringBuilder();
-    ppm.append("P3" + "\n" + i.getWidth() + " "
-            + i.getHeight() + "\n" + i.getMaximumValue() + "\n");
-    for (int row = 0; row < i.getHeight(); row++) {
-      for (int col = 0; col < i.getWidth(); col++) {
-        double[] pixelArr = i.getPixel(row, col);
-        ppm.append((int) (pixelArr[0] * 255)).append(System.lineSeparator());
-        ppm.append((int) (pixelArr[1] * 255)).append(System.lineSeparator());
-        ppm.append((int) (pixelArr[2] * 255)).append(System.lineSeparator());
+    ImageUtil.savePPM(i, filename, PpmFormat.P3);
+  }
+
+  /**
+   * Saves a given image as a PPM image as the given name using the given encoding.
+   *
+   * @param i - an image
+   * @param filename - the file name
+   * @param format - the encoding to write
+   * @throws IOException if the program cannot read/write the file
+   */
+  public static void savePPM(Image i, String filename, PpmFormat format) throws IOException {
+    if (format == PpmFormat.P6) {
+      ImageUtil.saveP6(i, filename);
+    } else {
+      ImageUtil.saveP3(i, filename);
+    }
+  }
+
+  /**
+   * Saves a given image as a raw P6 image. Samples are clamped to the image's max value, and take
+   * two bytes when the max value is above 255.
+   *
+   * @param i - an image
+   * @param filename - the file name
+   * @throws IOException if the program cannot write the file
+   */
+  private static void saveP6(Image i, String filename) throws IOException {
+    ImageUtil.write(i, filename, PpmFormat.P6);
+  }
+
+  /**
+   * Saves a given image as a plain P3 image.
+   *
+   * @param i - an image
+   * @param filename - the file name
+   * @throws IOException if the program cannot write the file
+   */
+  private static void saveP3(Image i, String filename) throws IOException {
+    ImageUtil.write(i, filename, PpmFormat.P3);
+  }
+
+  /**
+   * Writes an image one row at a time into a new file next to the target, then moves it into
+   * place. The image may still be read from the file it replaces, such as a memory-mapped
+   * image saved back to its own path, so that file is never truncated while it is in use.
+   */
+  private static void write(Image i, String filename, PpmFormat format) throws IOException {
+    int w = i.getWidth();
+    Path target = Paths.get(filename).toAbsolutePath();
+    Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID()
+            + ".tmp");
+    try {
+      try (PpmWriter out = new PpmWriter(temp, format, w, i.getHeight(),
+              i.getMaximumValue())) {
+        if (format == PpmFormat.P3) {
+          ImageUtil.writePlain(i, out);
+        } else {
+          double[] row = new double[w * 3];
+          int[] samples = new int[w * 3];
+          for (int r = 0; r < i.getHeight(); r++) {
+            ImageUtil.samples(i, r, row, samples);
+            out.writeRow(samples, 0, samples.length);
+          }
+        }
       }
+      try {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Writes the samples of a plain image in strips of rows of about a megabyte each. Strips are
+   * encoded in parallel on the common pool and written in order, with at most eight megabytes of
+   * strips encoded or being encoded ahead of the writer, however many workers there are.
+   */
+  private static void writePlain(Image i, PpmWriter out) throws IOException {
+    int w = i.getWidth();
+    int h = i.getHeight();
+    int rowsPerStrip = (int) Math.max(1, STRIP_BYTES / PpmWriter.maxEncodedBytes(w * 3));
+    boolean small = (long) w * h <= ImageExecutor.DEFAULT_CUTOFF;
+    Executor executor = small ? Runnable::run : ForkJoinPool.commonPool();
+    long stripBytes = rowsPerStrip * PpmWriter.maxEncodedBytes(w * 3);
+    int window = small ? 1 : (int) Math.max(1, ENCODE_BUDGET / stripBytes);
+    ArrayDeque<CompletableFuture<ByteBuffer>> pending =
+            new ArrayDeque<CompletableFuture<ByteBuffer>>();
+    try {
+      for (int start = 0; start < h; start += rowsPerStrip) {
+        int from = start;
+        int to = Math.min(h, start + rowsPerStrip);
+        pending.add(CompletableFuture.supplyAsync(() -> encodeStrip(i, out, from, to),
+                executor));
+        if (pending.size() >= window) {
+          out.write(pending.remove().join());
+        }
+      }
+      while (!pending.isEmpty()) {
+        out.write(pending.remove().join());
+      }
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Encodes the plain samples of a strip of rows.
+   */
+  private static ByteBuffer encodeStrip(Image i, PpmWriter out, int from, int to) {
+    int n = i.getWidth() * 3;
+    double[] row = new double[n];
+    int[] samples = new int[n];
+    byte[] bytes = new byte[(int) PpmWriter.maxEncodedBytes(n * (to - from))];
+    int pos = 0;
+    for (int r = from; r < to; r++) {
+      ImageUtil.samples(i, r, row, samples);
+      pos = out.encode(samples, 0, n, bytes, pos);
+    }
+    return ByteBuffer.wrap(bytes, 0, pos);
+  }
+
+  /**
+   * Computes the integer samples written for a row. Images stored as integers give their stored
+   * samples as they are, without converting them to floating point and back.
+   */
+  private static void samples(Image i, int r, double[] row, int[] samples) {
+    if (i instanceof PackedImage && ((PackedImage) i).getDepth().isInteger()) {
+      ((PackedImage) i).getRawRow(r, samples, 0);
+      return;
+    }
+    i.getRow(r, row, 0);
+    int maxValue = i.getMaximumValue();
+    for (int k = 0; k < samples.length; k++) {
+      samples[k] = PpmWriter.toSample(row[k], maxValue);
     }
-    Files.writeString(Paths.get(filename), ppm.toString(), StandardCharsets.UTF_8);
   }
 
   /**
@@ -122,10 +266,15 @@ public class ImageUtil {
     } else {
       readable = new InputStreamReader(System.in);
     }
-    ImageProcessModel model = new ImageProcessOperations();
+    ImageProcessOperations operations = new ImageProcessOperations(new ImageExecutor(),
+            ImageProcessOperations.DEFAULT_MAP_THRESHOLD, true);
+    ImageProcessModel model = new InstrumentedImageProcessModel(operations);
     ImageView view = new ImageTextView(model);
-    ImageProcessController c = new ImageTextController(model, view, readable);
+    ImageProcessController c = new ImageTextController(model, view, readable,
+        () -> new ImageProcessOperations(new ImageExecutor(),
+                ImageProcessOperations.DEFAULT_MAP_THRESHOLD, true));
     c.run();
+    operations.getRegistry().close();
   }
 }
 
@@ -0,0 +1,392 @@
+package model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Represents a model that records, for every operation and for load and save, the number of
+ * calls, a latency histogram, the pixels processed, the bytes read from and written to files and
+ * the bytes allocated on the heap. The statistics can be read as text, JSON or the Prometheus
+ * text format.
+ *
+ * <p>Allocations are counted over every thread of the JVM, so work running at the same time in
+ * other threads is included. When the wrapped model defers operations, their work is timed by
+ * the save or force that runs it.</p>
+ */
+public class InstrumentedImageProcessModel implements ImageProcessModel {
+  private final ImageProcessModel model;
+  private final Map<String, OperationStats> stats;
+
+  /**
+   * Constructs an instrumented model around another model.
+   *
+   * @param model - the model that runs the operations
+   * @throws IllegalArgumentException if the model is null
+   */
+  public InstrumentedImageProcessModel(ImageProcessModel model) throws IllegalArgumentException {
+    if (model == null) {
+      throw new IllegalArgumentException("Model cannot be null");
+    }
+    this.model = model;
+    this.stats = new ConcurrentHashMap<String, OperationStats>();
+  }
+
+  /**
+   * Retrieves the statistics of every operation called so far.
+   *
+   * @return the statistics by operation name, in alphabetical order
+   */
+  public Map<String, OperationStats> getStats() {
+    return new TreeMap<String, OperationStats>(this.stats);
+  }
+
+  /**
+   * Describes the statistics of every operation called so far, one line each.
+   *
+   * @return the description
+   */
+  public String summary() {
+    Map<String, OperationStats> all = this.getStats();
+    if (all.isEmpty()) {
+      return "No operations have been run";
+    }
+    StringBuilder s = new StringBuilder();
+    for (Map.Entry<String, OperationStats> e : all.entrySet()) {
+      OperationStats o = e.getValue();
+      if (s.length() > 0) {
+        s.append("\n");
+      }
+      s.append(String.format(Locale.ROOT, "%s: %d calls (%d failed), %.1f ms total, "
+                      + "%.1f ms mean, %.1f ms max, %.2f Mpx/s, %.1f MB read, "
+                      + "%.1f MB written, %.1f MB allocated",
+              e.getKey(), o.getCount(), o.getErrors(), o.getTotalNanos() / 1e6,
+              o.getTotalNanos() / 1e6 / o.getCount(), o.getMaxNanos() / 1e6,
+              o.getPixelsPerSecond() / 1e6, o.getBytesRead() / 1e6,
+              o.getBytesWritten() / 1e6, o.getBytesAllocated() / 1e6));
+    }
+    return s.toString();
+  }
+
+  /**
+   * Writes the statistics of every operation as a JSON object.
+   *
+   * @return the JSON text
+   */
+  public String toJson() {
+    double[] bounds = OperationStats.getBucketBounds();
+    StringBuilder s = new StringBuilder("{\"bucketBoundsSeconds\":[");
+    for (int i = 0; i < bounds.length; i++) {
+      s.append(i == 0 ? "" : ",").append(bounds[i]);
+    }
+    s.append("],\"operations\":{");
+    boolean first = true;
+    for (Map.Entry<String, OperationStats> e : this.getStats().entrySet()) {
+      OperationStats o = e.getValue();
+      s.append(first ? "" : ",").append('"').append(e.getKey()).append("\":{")
+              .append("\"count\":").append(o.getCount())
+              .append(",\"errors\":").append(o.getErrors())
+              .append(",\"totalSeconds\":").append(o.getTotalNanos() / 1e9)
+              .append(",\"maxSeconds\":").append(o.getMaxNanos() / 1e9)
+              .append(",\"pixels\":").append(o.getPixels())
+              .append(",\"pixelsPerSecond\":").append(o.getPixelsPerSecond())
+              .append(",\"bytesRead\":").append(o.getBytesRead())
+              .append(",\"bytesWritten\":").append(o.getBytesWritten())
+              .append(",\"bytesAllocated\":").append(o.getBytesAllocated())
+              .append(",\"bucketCounts\":[");
+      long[] counts = o.getBucketCounts();
+      for (int i = 0; i < counts.length; i++) {
+        s.append(i == 0 ? "" : ",").append(counts[i]);
+      }
+      s.append("]}");
+      first = false;
+    }
+    return s.append("}}").toString();
+  }
+
+  /**
+   * Writes the statistics of every operation in the Prometheus text exposition format.
+   *
+   * @return the exposition text
+   */
+  public String toPrometheus() {
+    Map<String, OperationStats> all = this.getStats();
+    double[] bounds = OperationStats.getBucketBounds();
+    StringBuilder s = new StringBuilder();
+    s.append("# HELP image_operation_seconds Time spent in image operations.\n")
+            .append("# TYPE image_operation_seconds histogram\n");
+    for (Map.Entry<String, OperationStats> e : all.entrySet()) {
+      String label = "operation=\"" + e.getKey() + "\"";
+      long[] counts = e.getValue().getBucketCounts();
+      long cumulative = 0;
+      for (int i = 0; i < counts.length; i++) {
+        cumulative += counts[i];
+        String le = i < bounds.length ? Double.toString(bounds[i]) : "+Inf";
+        s.append("image_operation_seconds_bucket{").append(label).append(",le=\"").append(le)
+                .append("\"} ").append(cumulative).append("\n");
+      }
+      s.append("image_operation_seconds_sum{").append(label).append("} ")
+              .append(e.getValue().getTotalNanos() / 1e9).append("\n")
+              .append("image_operation_seconds_count{").append(label).append("} ")
+              .append(e.getValue().getCount()).append("\n");
+    }
+    this.counter(s, all, "errors", "Image operations that failed.", OperationStats::getErrors);
+    this.counter(s, all, "pixels", "Pixels processed by image operations.",
+        OperationStats::getPixels);
+    this.counter(s, all, "read_bytes", "Bytes read from files by image operations.",
+        OperationStats::getBytesRead);
+    this.counter(s, all, "written_bytes", "Bytes written to files by image operations.",
+        OperationStats::getBytesWritten);
+    this.counter(s, all, "allocated_bytes", "Bytes allocated while image operations ran.",
+        OperationStats::getBytesAllocated);
+    return s.toString();
+  }
+
+  /**
+   * Appends a counter with one sample per operation.
+   */
+  private void counter(StringBuilder s, Map<String, OperationStats> all, String name,
+                       String help, ToLongFunction<OperationStats> value) {
+    String metric = "image_operation_" + name + "_total";
+    s.append("# HELP ").append(metric).append(" ").append(help).append("\n")
+            .append("# TYPE ").append(metric).append(" counter\n");
+    for (Map.Entry<String, OperationStats> e : all.entrySet()) {
+      s.append(metric).append("{operation=\"").append(e.getKey()).append("\"} ")
+              .append(value.applyAsLong(e.getValue())).append("\n");
+    }
+  }
+
+  /**
+   * Represents a call to the wrapped model.
+   */
+  @FunctionalInterface
+  private interface Call<E extends Exception> {
+    void run() throws E;
+  }
+
+  /**
+   * Runs a call and records it.
+   *
+   * @param operation - the name the call is recorded under
+   * @param image - the image whose pixels the call processes, looked up after the call without
+   *              computing it if it was recorded lazily
+   * @param read - the file the call reads, or null
+   * @param written - the file the call writes, or null
+   * @param call - the call
+   */
+  private <E extends Exception> void measured(String operation, String image, String read,
+                                              String written, Call<E> call) throws E {
+    long allocated = InstrumentedImageProcessModel.allocatedBytes();
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      call.run();
+      failed = false;
+    } finally {
+      long nanos = System.nanoTime() - start;
+      long after = InstrumentedImageProcessModel.allocatedBytes();
+      long pixels = 0;
+      long bytesRead = 0;
+      long bytesWritten = 0;
+      if (!failed) {
+        Image i = this.model.getStoredImage(image);
+        pixels = (long) i.getWidth() * i.getHeight();
+        bytesRead = InstrumentedImageProcessModel.size(read);
+        bytesWritten = InstrumentedImageProcessModel.size(written);
+      }
+      this.stats.computeIfAbsent(operation, k -> new OperationStats()).record(nanos, failed,
+              pixels, bytesRead, bytesWritten,
+              allocated < 0 || after < allocated ? 0 : after - allocated);
+    }
+  }
+
+  /**
+   * Retrieves the size of a file, or 0 if there is none.
+   */
+  private static long size(String path) {
+    if (path == null) {
+      return 0;
+    }
+    try {
+      return Files.size(Paths.get(path));
+    } catch (IOException | RuntimeException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Retrieves the bytes allocated so far by every live thread, or -1 if the JVM does not count
+   * allocations.
+   */
+  private static long allocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    if (!threads.isThreadAllocatedMemorySupported()
+            || !threads.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    long total = 0;
+    for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      total += Math.max(0, bytes);
+    }
+    return total;
+  }
+
+  @Override
+  public Image getImage(String name) throws IllegalArgumentException {
+    return this.model.getImage(name);
+  }
+
+  @Override
+  public Image getStoredImage(String name) throws IllegalArgumentException {
+    return this.model.getStoredImage(name);
+  }
+
+  @Override
+  public ImagePyramid getPyramid(String name) throws IllegalArgumentException {
+    return this.model.getPyramid(name);
+  }
+
+  @Override
+  public ImageStatistics getStatistics(String name) throws IllegalArgumentException {
+    ImageStatistics[] result = new ImageStatistics[1];
+    this.measured("statistics", name, null, null,
+        () -> result[0] = this.model.getStatistics(name));
+    return result[0];
+  }
+
+  @Override
+  public void load(String path, String name) throws FileNotFoundException {
+    this.measured("load", name, path, null, () -> this.model.load(path, name));
+  }
+
+  @Override
+  public void save(String path, String name) throws IOException {
+    this.measured("save", name, null, path, () -> this.model.save(path, name));
+  }
+
+  @Override
+  public void save(String path, String name, PpmFormat format) throws IOException {
+    this.measured(format == PpmFormat.P6 ? "save-binary" : "save", name, null, path,
+        () -> this.model.save(path, name, format));
+  }
+
+  @Override
+  public void force(String name) throws IllegalArgumentException {
+    this.measured("force", name, null, null, () -> this.model.force(name));
+  }
+
+  @Override
+  public void redComponent(String name, String destName) throws IllegalArgumentException {
+    this.measured("red-component", name, null, null,
+        () -> this.model.redComponent(name, destName));
+  }
+
+  @Override
+  public void greenComponent(String name, String destName) throws IllegalArgumentException {
+    this.measured("green-component", name, null, null,
+        () -> this.model.greenComponent(name, destName));
+  }
+
+  @Override
+  public void blueComponent(String name, String destName) throws IllegalArgumentException {
+    this.measured("blue-component", name, null, null,
+        () -> this.model.blueComponent(name, destName));
+  }
+
+  @Override
+  public void valueComponent(String name, String destName) throws IllegalArgumentException {
+    this.measured("value-component", name, null, null,
+        () -> this.model.valueComponent(name, destName));
+  }
+
+  @Override
+  public void lumaComponent(String name, String destName) throws IllegalArgumentException {
+    this.measured("luma-component", name, null, null,
+        () -> this.model.lumaComponent(name, destName));
+  }
+
+  @Override
+  public void intensityComponent(String name, String destName) throws IllegalArgumentException {
+    this.measured("intensity-component", name, null, null,
+        () -> this.model.intensityComponent(name, destName));
+  }
+
+  @Override
+  public void brighten(int num, String name, String destName) throws IllegalArgumentException {
+    this.measured("brighten", name, null, null,
+        () -> this.model.brighten(num, name, destName));
+  }
+
+  @Override
+  public void horizontalFlip(String name, String destName) throws IllegalArgumentException {
+    this.measured("horizontal-flip", name, null, null,
+        () -> this.model.horizontalFlip(name, destName));
+  }
+
+  @Override
+  public void verticalFlip(String name, String destName) throws IllegalArgumentException {
+    this.measured("vertical-flip", name, null, null,
+        () -> this.model.verticalFlip(name, destName));
+  }
+
+  @Override
+  public void gaussianBlur(int radius, String name, String destName)
+          throws IllegalArgumentException {
+    this.measured("gaussian-blur", name, null, null,
+        () -> this.model.gaussianBlur(radius, name, destName));
+  }
+
+  @Override
+  public void boxBlur(int radius, String name, String destName) throws IllegalArgumentException {
+    this.measured("box-blur", name, null, null,
+        () -> this.model.boxBlur(radius, name, destName));
+  }
+
+  @Override
+  public void sharpen(String name, String destName) throws IllegalArgumentException {
+    this.measured("sharpen", name, null, null, () -> this.model.sharpen(name, destName));
+  }
+
+  @Override
+  public void edgeDetect(String name, String destName) throws IllegalArgumentException {
+    this.measured("edge-detect", name, null, null, () -> this.model.edgeDetect(name, destName));
+  }
+
+  @Override
+  public void resize(int width, int height, ResampleFilter filter, String name, String destName)
+          throws IllegalArgumentException {
+    this.measured("resize", name, null, null,
+        () -> this.model.resize(width, height, filter, name, destName));
+  }
+
+  @Override
+  public void scale(double factor, ResampleFilter filter, String name, String destName)
+          throws IllegalArgumentException {
+    this.measured("scale", name, null, null,
+        () -> this.model.scale(factor, filter, name, destName));
+  }
+
+  @Override
+  public void autoLevels(String name, String destName) throws IllegalArgumentException {
+    this.measured("auto-levels", name, null, null,
+        () -> this.model.autoLevels(name, destName));
+  }
+
+  @Override
+  public void autoContrast(String name, String destName) throws IllegalArgumentException {
+    this.measured("auto-contrast", name, null, null,
+        () -> this.model.autoContrast(name, destName));
+  }
+}
@@ -0,0 +1,404 @@
+package model;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Represents a point operation simple enough to be compiled into lookup tables. When the source
+ * stores integer samples, every possible sample can be transformed once up front, so that
+ * processing a pixel is reduced to a few array reads.
+ *
+ * <p>The tables hold exactly the values the floating point path computes, and sums are taken in
+ * the same order, so both paths produce identical images. Fixed-point tables instead map stored
+ * samples straight to the stored samples of an integer result, truncated as they would be when
+ * saved, and weighted sums are taken in fixed point, so a pixel is processed without any floating
+ * point arithmetic; results are clamped to the samples the depth can hold, as an integer result
+ * stores them, and weighted sums may differ from the saved floating point result by one
+ * step.</p>
+ */
+public final class LookupKernel implements PixelKernel {
+  private static final int FRACTION_BITS = 16;
+  private static final long ROUNDING_SLACK = 2;
+
+  private enum Mode {
+    CHANNEL, MIX, MAX
+  }
+
+  private final Mode mode;
+  private final DoubleUnaryOperator pre;
+  private final double[] weights;
+  private final DoubleUnaryOperator post;
+  private final double divisor;
+  private final PlanarOp planar;
+  private volatile Table byteTable;
+  private volatile Table shortTable;
+  private volatile FixedTable fixedTable;
+
+  private LookupKernel(Mode mode, DoubleUnaryOperator pre, double[] weights,
+                       DoubleUnaryOperator post, double divisor, PlanarOp planar) {
+    this.mode = mode;
+    this.pre = pre;
+    this.weights = weights;
+    this.post = post;
+    this.divisor = divisor;
+    this.planar = planar;
+  }
+
+  /**
+   * Constructs a kernel that transforms every channel independently with the same function.
+   *
+   * @param fn - the function applied to each sample
+   * @return the kernel
+   * @throws IllegalArgumentException if the function is null
+   */
+  public static LookupKernel perChannel(DoubleUnaryOperator fn) throws IllegalArgumentException {
+    if (fn == null) {
+      throw new IllegalArgumentException("Function cannot be null");
+    }
+    return new LookupKernel(Mode.CHANNEL, fn, null, null, Double.NaN, null);
+  }
+
+  /**
+   * Constructs a kernel that adds a constant to every sample, clamped between 0 and 1.
+   *
+   * @param delta - the value added to each sample
+   * @return the kernel
+   */
+  public static LookupKernel offset(double delta) {
+    return new LookupKernel(Mode.CHANNEL, v -> Math.max(0, Math.min(1, v + delta)), null, null,
+        Double.NaN, (backend, r, g, b, n) -> backend.offset(r, g, b, n, delta));
+  }
+
+  /**
+   * Constructs a kernel that replaces every channel with a weighted sum of the channels,
+   * passed through a function.
+   *
+   * @param wr - weight of the red sample
+   * @param wg - weight of the green sample
+   * @param wb - weight of the blue sample
+   * @param fn - the function applied to the sum
+   * @return the kernel
+   * @throws IllegalArgumentException if the function is null
+   */
+  public static LookupKernel weighted(double wr, double wg, double wb, DoubleUnaryOperator fn)
+          throws IllegalArgumentException {
+    if (fn == null) {
+      throw new IllegalArgumentException("Function cannot be null");
+    }
+    return new LookupKernel(Mode.MIX, DoubleUnaryOperator.identity(),
+            new double[] {wr, wg, wb}, fn, Double.NaN, null);
+  }
+
+  /**
+   * Constructs a kernel that replaces every channel with a weighted sum of the channels
+   * divided by a constant.
+   *
+   * @param wr - weight of the red sample
+   * @param wg - weight of the green sample
+   * @param wb - weight of the blue sample
+   * @param divisor - the value the sum is divided by
+   * @return the kernel
+   */
+  public static LookupKernel average(double wr, double wg, double wb, double divisor) {
+    return new LookupKernel(Mode.MIX, DoubleUnaryOperator.identity(),
+            new double[] {wr, wg, wb}, sum -> sum / divisor, divisor,
+        (backend, r, g, b, n) -> backend.mix(r, g, b, n, wr, wg, wb, divisor));
+  }
+
+  /**
+   * Constructs a kernel that replaces every channel with the largest of the channels.
+   *
+   * @return the kernel
+   */
+  public static LookupKernel maximum() {
+    return new LookupKernel(Mode.MAX, null, null, DoubleUnaryOperator.identity(), Double.NaN,
+        (backend, r, g, b, n) -> backend.maximum(r, g, b, n));
+  }
+
+  /**
+   * Replaces the pixel stored at the given offset with its transformed value.
+   *
+   * @param rgb - buffer of interleaved r, g, b samples
+   * @param off - index of the red sample of the pixel
+   */
+  @Override
+  public void apply(double[] rgb, int off) {
+    switch (this.mode) {
+      case CHANNEL:
+        rgb[off] = this.pre.applyAsDouble(rgb[off]);
+        rgb[off + 1] = this.pre.applyAsDouble(rgb[off + 1]);
+        rgb[off + 2] = this.pre.applyAsDouble(rgb[off + 2]);
+        return;
+      case MIX:
+        double sum = this.weights[0] * this.pre.applyAsDouble(rgb[off])
+                + this.weights[1] * this.pre.applyAsDouble(rgb[off + 1])
+                + this.weights[2] * this.pre.applyAsDouble(rgb[off + 2]);
+        fill(rgb, off, this.post.applyAsDouble(sum));
+        return;
+      default:
+        double max = Math.max(Math.max(rgb[off], rgb[off + 1]), rgb[off + 2]);
+        fill(rgb, off, this.post.applyAsDouble(max));
+    }
+  }
+
+  /**
+   * Fuses this kernel with a kernel applied to its result. A per-channel kernel that follows
+   * or precedes another lookup kernel is folded into it, so the result can still be compiled
+   * into tables.
+   *
+   * @param next - the kernel applied after this one
+   * @return the combined kernel
+   */
+  @Override
+  public PixelKernel andThen(PixelKernel next) {
+    if (next instanceof LookupKernel) {
+      LookupKernel k = (LookupKernel) next;
+      if (k.mode == Mode.CHANNEL) {
+        if (this.mode == Mode.CHANNEL) {
+          return new LookupKernel(Mode.CHANNEL, this.pre.andThen(k.pre), null, null, Double.NaN,
+                  null);
+        }
+        return new LookupKernel(this.mode, this.pre, this.weights, this.post.andThen(k.pre),
+                Double.NaN, null);
+      }
+      if (this.mode == Mode.CHANNEL && k.mode == Mode.MIX) {
+        return new LookupKernel(Mode.MIX, this.pre.andThen(k.pre), k.weights, k.post,
+                k.divisor, null);
+      }
+    }
+    return PixelKernel.super.andThen(next);
+  }
+
+  /**
+   * Determines whether this kernel can run on a {@link PlanarBackend}.
+   *
+   * @return true if the kernel is one of the operations the backend implements
+   */
+  boolean isPlanar() {
+    return this.planar != null;
+  }
+
+  /**
+   * Transforms a row held as one array per channel, using a backend.
+   *
+   * @param backend - the backend running the operation
+   * @param r - red samples, updated in place
+   * @param g - green samples, updated in place
+   * @param b - blue samples, updated in place
+   * @param n - number of pixels
+   */
+  void applyPlanar(PlanarBackend backend, double[] r, double[] g, double[] b, int n) {
+    this.planar.apply(backend, r, g, b, n);
+  }
+
+  /**
+   * Determines whether this kernel can be compiled into fixed-point tables. Weighted sums can
+   * only when they are divided by a constant afterwards and by nothing else.
+   *
+   * @return true if {@link #compileFixed(SampleDepth, int)} can be used
+   */
+  boolean isFixedPoint() {
+    return this.mode != Mode.MIX || !Double.isNaN(this.divisor);
+  }
+
+  /**
+   * Retrieves the tables for samples of an integer depth, building them on first use or when
+   * the max value changes.
+   *
+   * @param depth - the integer depth of the source
+   * @param maxValue - the max value of the source, which a stored sample is divided by
+   * @return the compiled tables
+   */
+  Table compile(SampleDepth depth, int maxValue) {
+    if (depth == SampleDepth.BYTE) {
+      Table t = this.byteTable;
+      if (t == null || t.scale != maxValue) {
+        t = new Table(depth.getMaxSample() + 1, maxValue);
+        this.byteTable = t;
+      }
+      return t;
+    }
+    Table t = this.shortTable;
+    if (t == null || t.scale != maxValue) {
+      t = new Table(depth.getMaxSample() + 1, maxValue);
+      this.shortTable = t;
+    }
+    return t;
+  }
+
+  /**
+   * Retrieves the fixed-point tables for samples of an integer depth, building them on first
+   * use or when the depth or max value changes.
+   *
+   * @param depth - the integer depth of the source and of the result
+   * @param maxValue - the max value of the source and of the result
+   * @return the compiled tables
+   * @throws IllegalStateException if this kernel cannot be compiled into fixed-point tables
+   */
+  FixedTable compileFixed(SampleDepth depth, int maxValue) throws IllegalStateException {
+    if (!this.isFixedPoint()) {
+      throw new IllegalStateException("Kernel cannot be computed in fixed point");
+    }
+    FixedTable t = this.fixedTable;
+    if (t == null || t.size != depth.getMaxSample() + 1 || t.maxValue != maxValue) {
+      t = new FixedTable(depth.getMaxSample() + 1, maxValue);
+      this.fixedTable = t;
+    }
+    return t;
+  }
+
+  /**
+   * Represents a kernel expressed as a call to a planar backend.
+   */
+  @FunctionalInterface
+  private interface PlanarOp {
+    void apply(PlanarBackend backend, double[] r, double[] g, double[] b, int n);
+  }
+
+  private static void fill(double[] rgb, int off, double value) {
+    rgb[off] = value;
+    rgb[off + 1] = value;
+    rgb[off + 2] = value;
+  }
+
+  /**
+   * Represents a kernel compiled for every possible sample of an integer depth.
+   */
+  final class Table {
+    private final double scale;
+    private final double[] first;
+    private final double[] second;
+    private final double[] third;
+
+    private Table(int size, double scale) {
+      this.scale = scale;
+      this.first = new double[size];
+      switch (LookupKernel.this.mode) {
+        case CHANNEL:
+          for (int i = 0; i < size; i++) {
+            this.first[i] = LookupKernel.this.pre.applyAsDouble(i / scale);
+          }
+          this.second = null;
+          this.third = null;
+          break;
+        case MIX:
+          this.second = new double[size];
+          this.third = new double[size];
+          double[] w = LookupKernel.this.weights;
+          for (int i = 0; i < size; i++) {
+            double v = LookupKernel.this.pre.applyAsDouble(i / scale);
+            this.first[i] = w[0] * v;
+            this.second[i] = w[1] * v;
+            this.third[i] = w[2] * v;
+          }
+          break;
+        default:
+          for (int i = 0; i < size; i++) {
+            this.first[i] = LookupKernel.this.post.applyAsDouble(i / scale);
+          }
+          this.second = null;
+          this.third = null;
+      }
+    }
+
+    /**
+     * Transforms one pixel of raw samples.
+     *
+     * @param raw - buffer of interleaved raw r, g, b samples
+     * @param in - index of the red sample of the source pixel
+     * @param out - buffer the transformed pixel is written to
+     * @param off - index of the red sample of the destination pixel
+     */
+    void apply(int[] raw, int in, double[] out, int off) {
+      switch (LookupKernel.this.mode) {
+        case CHANNEL:
+          out[off] = this.first[raw[in]];
+          out[off + 1] = this.first[raw[in + 1]];
+          out[off + 2] = this.first[raw[in + 2]];
+          return;
+        case MIX:
+          double sum = this.first[raw[in]] + this.second[raw[in + 1]] + this.third[raw[in + 2]];
+          fill(out, off, LookupKernel.this.post.applyAsDouble(sum));
+          return;
+        default:
+          fill(out, off, this.first[Math.max(Math.max(raw[in], raw[in + 1]), raw[in + 2])]);
+      }
+    }
+  }
+
+  /**
+   * Represents a kernel compiled for every possible sample of an integer depth into the stored
+   * samples of an integer result with the same max value.
+   */
+  final class FixedTable {
+    private final int size;
+    private final int maxValue;
+    private final int[] samples;
+    private final long[] red;
+    private final long[] green;
+    private final long[] blue;
+
+    private FixedTable(int size, int maxValue) {
+      this.size = size;
+      this.maxValue = maxValue;
+      double scale = maxValue;
+      if (LookupKernel.this.mode == Mode.MIX) {
+        this.samples = null;
+        this.red = new long[size];
+        this.green = new long[size];
+        this.blue = new long[size];
+        double[] w = LookupKernel.this.weights;
+        double unit = scale * (1L << FRACTION_BITS) / LookupKernel.this.divisor;
+        for (int i = 0; i < size; i++) {
+          double v = LookupKernel.this.pre.applyAsDouble(i / scale) * unit;
+          this.red[i] = Math.round(w[0] * v);
+          this.green[i] = Math.round(w[1] * v);
+          this.blue[i] = Math.round(w[2] * v);
+        }
+        return;
+      }
+      DoubleUnaryOperator fn = LookupKernel.this.mode == Mode.CHANNEL
+              ? LookupKernel.this.pre : LookupKernel.this.post;
+      this.samples = new int[size];
+      this.red = null;
+      this.green = null;
+      this.blue = null;
+      for (int i = 0; i < size; i++) {
+        this.samples[i] = this.clamp(PpmWriter.toSample(fn.applyAsDouble(i / scale), maxValue));
+      }
+    }
+
+    private int clamp(long sample) {
+      return (int) Math.max(0, Math.min(this.size - 1, sample));
+    }
+
+    /**
+     * Transforms one pixel of stored samples into stored samples.
+     *
+     * @param raw - buffer of interleaved stored r, g, b samples
+     * @param in - index of the red sample of the source pixel
+     * @param out - buffer the transformed pixel is written to
+     * @param off - index of the red sample of the destination pixel
+     */
+    void apply(int[] raw, int in, int[] out, int off) {
+      switch (LookupKernel.this.mode) {
+        case CHANNEL:
+          out[off] = this.samples[raw[in]];
+          out[off + 1] = this.samples[raw[in + 1]];
+          out[off + 2] = this.samples[raw[in + 2]];
+          return;
+        case MIX:
+          long sum = this.red[raw[in]] + this.green[raw[in + 1]] + this.blue[raw[in + 2]];
+          int v = this.clamp((sum + ROUNDING_SLACK) >> FRACTION_BITS);
+          out[off] = v;
+          out[off + 1] = v;
+          out[off + 2] = v;
+          return;
+        default:
+          int max = this.samples[Math.max(Math.max(raw[in], raw[in + 1]), raw[in + 2])];
+          out[off] = max;
+          out[off + 1] = max;
+          out[off + 2] = max;
+      }
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents a raw P6 image that is memory-mapped from its file and decoded on demand, so that
+ * opening it takes constant time and its heap cost does not depend on its size. The file is
+ * mapped in segments of whole rows, since one mapping cannot exceed 2 GB.
+ */
+public class MappedImage implements Image {
+  private static final int SEGMENT_SIZE = 1 << 30;
+
+  private final int w;
+  private final int h;
+  private final int maxValue;
+  private final double scale;
+  private final int bytesPerSample;
+  private final int rowBytes;
+  private final int rowsPerSegment;
+  private final MappedByteBuffer[] segments;
+
+  private MappedImage(int w, int h, int maxValue, MappedByteBuffer[] segments,
+                      int rowsPerSegment) {
+    this.w = w;
+    this.h = h;
+    this.maxValue = maxValue;
+    this.scale = maxValue;
+    this.bytesPerSample = maxValue > 0xFF ? 2 : 1;
+    this.rowBytes = w * 3 * this.bytesPerSample;
+    this.rowsPerSegment = rowsPerSegment;
+    this.segments = segments;
+  }
+
+  /**
+   * Maps a raw P6 file.
+   *
+   * @param filename - the path of the file
+   * @return the mapped image
+   * @throws FileNotFoundException if the file does not exist
+   * @throws IllegalArgumentException if the file cannot be read, is not a P6 file or is shorter
+   *         than its header claims
+   */
+  public static MappedImage open(String filename)
+          throws FileNotFoundException, IllegalArgumentException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      PpmReader reader = new PpmReader(channel);
+      if (reader.readFormat() != PpmFormat.P6) {
+        throw new IllegalArgumentException(filename + " is not a binary P6 file");
+      }
+      int width = reader.readInt();
+      int height = reader.readInt();
+      int maxValue = reader.readInt();
+      if (width <= 0 || height <= 0 || maxValue <= 0 || maxValue > 0xFFFF) {
+        throw new IllegalArgumentException("Invalid P6 header " + width + " " + height + " "
+                + maxValue);
+      }
+      long start = reader.position();
+      long rowBytes = (long) width * 3 * (maxValue > 0xFF ? 2 : 1);
+      if (rowBytes > SEGMENT_SIZE) {
+        throw new IllegalArgumentException("Rows of " + filename + " are too wide to map");
+      }
+      if (channel.size() < start + rowBytes * height) {
+        throw new IllegalArgumentException(filename + " is shorter than its header claims");
+      }
+      int rowsPerSegment = (int) (SEGMENT_SIZE / rowBytes);
+      MappedByteBuffer[] segments = new MappedByteBuffer[(height - 1) / rowsPerSegment + 1];
+      for (int i = 0; i < segments.length; i++) {
+        int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                start + (long) i * rowsPerSegment * rowBytes, rows * rowBytes);
+      }
+      return new MappedImage(width, height, maxValue, segments, rowsPerSegment);
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException(filename + " does not exist");
+    } catch (IOException e) {
+      throw new IllegalArgumentException(filename + " cannot be read: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Retrieves a pixel with a given row and column.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @return a newly allocated RGB value of a pixel
+   */
+  @Override
+  public double[] getPixel(int r, int c) {
+    return new double[] {
+      this.getSample(r, c, 0), this.getSample(r, c, 1), this.getSample(r, c, 2)
+    };
+  }
+
+  /**
+   * Retrieves one color sample of a pixel, decoded from the mapped file.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @return the sample divided by the max value
+   */
+  @Override
+  public double getSample(int r, int c, int channel) {
+    MappedByteBuffer segment = this.segments[r / this.rowsPerSegment];
+    int i = (r % this.rowsPerSegment) * this.rowBytes + (c * 3 + channel) * this.bytesPerSample;
+    if (this.bytesPerSample == 1) {
+      return (segment.get(i) & 0xFF) / this.scale;
+    }
+    return (segment.getShort(i) & 0xFFFF) / this.scale;
+  }
+
+  /**
+   * Decodes a whole row into a caller supplied buffer as interleaved r, g, b samples.
+   *
+   * @param r - row number
+   * @param dest - the buffer to fill
+   * @param offset - index in the buffer of the first sample
+   */
+  @Override
+  public void getRow(int r, double[] dest, int offset) {
+    MappedByteBuffer segment = this.segments[r / this.rowsPerSegment];
+    int i = (r % this.rowsPerSegment) * this.rowBytes;
+    int end = offset + this.w * 3;
+    if (this.bytesPerSample == 1) {
+      for (int k = offset; k < end; k++, i++) {
+        dest[k] = (segment.get(i) & 0xFF) / this.scale;
+      }
+    } else {
+      for (int k = offset; k < end; k++, i += 2) {
+        dest[k] = (segment.getShort(i) & 0xFFFF) / this.scale;
+      }
+    }
+  }
+
+  /**
+   * Retrieves the image's max color value.
+   */
+  @Override
+  public int getMaximumValue() {
+    return this.maxValue;
+  }
+
+  /**
+   * Retrieves the width of this image.
+   *
+   * @return the number of pixels in the width
+   */
+  @Override
+  public int getWidth() {
+    return this.w;
+  }
+
+  /**
+   * Retrieves the height of this image.
+   *
+   * @return the number of pixels in the height
+   */
+  @Override
+  public int getHeight() {
+    return this.h;
+  }
+}
@@ -0,0 +1,154 @@
+package model;
+
+/**
+ * Accumulates the calls of one operation: how many there were, how long they took, with a
+ * histogram of their latencies, and how many pixels and bytes they processed.
+ */
+public final class OperationStats {
+  private static final long[] BOUNDS_NANOS = {1_000_000L, 5_000_000L, 10_000_000L,
+      50_000_000L, 100_000_000L, 500_000_000L, 1_000_000_000L, 5_000_000_000L,
+      10_000_000_000L};
+
+  private final long[] buckets = new long[BOUNDS_NANOS.length + 1];
+  private long count;
+  private long errors;
+  private long totalNanos;
+  private long maxNanos;
+  private long pixels;
+  private long bytesRead;
+  private long bytesWritten;
+  private long bytesAllocated;
+
+  /**
+   * Records one call.
+   *
+   * @param nanos - how long the call took
+   * @param failed - whether the call threw an exception
+   * @param pixels - the number of pixels processed
+   * @param read - the number of bytes read from files
+   * @param written - the number of bytes written to files
+   * @param allocated - the number of bytes allocated on the heap
+   */
+  synchronized void record(long nanos, boolean failed, long pixels, long read, long written,
+                           long allocated) {
+    int bucket = 0;
+    while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+      bucket++;
+    }
+    this.buckets[bucket]++;
+    this.count++;
+    if (failed) {
+      this.errors++;
+    }
+    this.totalNanos += nanos;
+    this.maxNanos = Math.max(this.maxNanos, nanos);
+    this.pixels += pixels;
+    this.bytesRead += read;
+    this.bytesWritten += written;
+    this.bytesAllocated += allocated;
+  }
+
+  /**
+   * Retrieves the upper bounds of the latency buckets, in seconds. A last bucket without a bound
+   * holds the slower calls.
+   *
+   * @return the bucket bounds in increasing order
+   */
+  public static double[] getBucketBounds() {
+    double[] bounds = new double[BOUNDS_NANOS.length];
+    for (int i = 0; i < bounds.length; i++) {
+      bounds[i] = BOUNDS_NANOS[i] / 1e9;
+    }
+    return bounds;
+  }
+
+  /**
+   * Retrieves the number of calls that fell in each latency bucket.
+   *
+   * @return one count per bound of {@link #getBucketBounds()}, then the count above the last
+   */
+  public synchronized long[] getBucketCounts() {
+    return this.buckets.clone();
+  }
+
+  /**
+   * Retrieves the number of calls.
+   *
+   * @return the call count, failed calls included
+   */
+  public synchronized long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Retrieves the number of calls that threw an exception.
+   *
+   * @return the failed call count
+   */
+  public synchronized long getErrors() {
+    return this.errors;
+  }
+
+  /**
+   * Retrieves the time spent in all calls.
+   *
+   * @return the total latency in nanoseconds
+   */
+  public synchronized long getTotalNanos() {
+    return this.totalNanos;
+  }
+
+  /**
+   * Retrieves the time taken by the slowest call.
+   *
+   * @return the largest latency in nanoseconds
+   */
+  public synchronized long getMaxNanos() {
+    return this.maxNanos;
+  }
+
+  /**
+   * Retrieves the number of pixels processed by successful calls.
+   *
+   * @return the pixel count
+   */
+  public synchronized long getPixels() {
+    return this.pixels;
+  }
+
+  /**
+   * Retrieves the number of bytes read from files by successful calls.
+   *
+   * @return the bytes read
+   */
+  public synchronized long getBytesRead() {
+    return this.bytesRead;
+  }
+
+  /**
+   * Retrieves the number of bytes written to files by successful calls.
+   *
+   * @return the bytes written
+   */
+  public synchronized long getBytesWritten() {
+    return this.bytesWritten;
+  }
+
+  /**
+   * Retrieves the number of bytes allocated on the heap while the calls ran.
+   *
+   * @return the bytes allocated, or 0 if the JVM does not count allocations
+   */
+  public synchronized long getBytesAllocated() {
+    return this.bytesAllocated;
+  }
+
+  /**
+   * Retrieves the number of pixels processed per second spent in the calls.
+   *
+   * @return the throughput, or 0 before any time was recorded
+   */
+  public synchronized double getPixelsPerSecond() {
+    return this.totalNanos == 0 ? 0 : this.pixels * 1e9 / this.totalNanos;
+  }
+}
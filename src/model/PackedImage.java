@@ -0,0 +1,501 @@
+package model;
+
+/**
+ * Represents an image whose samples are stored in one flat primitive buffer.
+ *
+ * <p>Integer depths hold the raw PPM sample and report it divided by the max value, the same
+ * normalisation used by {@link ImageUtil#readPPM(String)}. Floating point depths hold the
+ * normalised value itself.</p>
+ */
+public class PackedImage implements WritableImage {
+  private final int w;
+  private final int h;
+  private final int maxValue;
+  private final double scale;
+  private final SampleDepth depth;
+  private final PixelLayout layout;
+  private final byte[] bytes;
+  private final short[] shorts;
+  private final float[] floats;
+  private final double[] doubles;
+
+  /**
+   * Constructs a black image with the given dimensions and storage.
+   *
+   * @param w - width of the image
+   * @param h - height of the image
+   * @param maxValue - the image's max color value
+   * @param depth - the type used to store each sample
+   * @param layout - the order of samples in the buffer
+   * @throws IllegalArgumentException if the dimensions or max value are not positive or the
+   *         storage is null
+   */
+  public PackedImage(int w, int h, int maxValue, SampleDepth depth, PixelLayout layout)
+          throws IllegalArgumentException {
+    if (w <= 0 || h <= 0) {
+      throw new IllegalArgumentException("Image dimensions must be positive");
+    }
+    if (maxValue <= 0) {
+      throw new IllegalArgumentException("Max value must be positive");
+    }
+    if (depth == null || layout == null) {
+      throw new IllegalArgumentException("Depth and layout cannot be null");
+    }
+    if ((long) w * h * 3 > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image is too large to be packed into one buffer");
+    }
+    int size = w * h * 3;
+    this.w = w;
+    this.h = h;
+    this.maxValue = maxValue;
+    this.scale = maxValue;
+    this.depth = depth;
+    this.layout = layout;
+    this.bytes = depth == SampleDepth.BYTE ? new byte[size] : null;
+    this.shorts = depth == SampleDepth.SHORT ? new short[size] : null;
+    this.floats = depth == SampleDepth.FLOAT ? new float[size] : null;
+    this.doubles = depth == SampleDepth.DOUBLE ? new double[size] : null;
+  }
+
+  /**
+   * Constructs a packed copy of any image.
+   *
+   * @param image - the image to copy
+   * @param depth - the type used to store each sample
+   * @param layout - the order of samples in the buffer
+   * @return a packed image with the same pixels
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static PackedImage copyOf(Image image, SampleDepth depth, PixelLayout layout)
+          throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    PackedImage copy = new PackedImage(image.getWidth(), image.getHeight(),
+            image.getMaximumValue(), depth, layout);
+    double[] row = new double[copy.w * 3];
+    for (int r = 0; r < copy.h; r++) {
+      image.getRow(r, row, 0);
+      copy.setRow(r, row, 0);
+    }
+    return copy;
+  }
+
+  /**
+   * Copies this image into a buffer of a different depth, keeping the layout.
+   *
+   * @param newDepth - the type used to store each sample of the copy
+   * @return a copy of this image stored with the given depth
+   */
+  public PackedImage convert(SampleDepth newDepth) {
+    PackedImage copy = new PackedImage(this.w, this.h, this.maxValue, newDepth, this.layout);
+    int size = this.w * this.h * 3;
+    if (this.depth.isInteger() && newDepth.isInteger()) {
+      for (int i = 0; i < size; i++) {
+        copy.putRaw(i, this.getRaw(i));
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        copy.put(i, this.get(i));
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Retrieves a pixel with a given row and column.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @return a newly allocated RGB value of a pixel
+   */
+  @Override
+  public double[] getPixel(int r, int c) {
+    return new double[] {
+      this.getSample(r, c, 0), this.getSample(r, c, 1), this.getSample(r, c, 2)
+    };
+  }
+
+  /**
+   * Retrieves one color sample of a pixel.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @return the normalised value of the sample
+   */
+  @Override
+  public double getSample(int r, int c, int channel) {
+    return this.get(this.layout.index(this.w, this.h, r, c, channel));
+  }
+
+  /**
+   * Sets one color sample of a pixel from its normalised value. Integer depths round the value
+   * to the nearest storable sample.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @param value - the normalised value of the sample
+   */
+  @Override
+  public void setSample(int r, int c, int channel, double value) {
+    this.put(this.layout.index(this.w, this.h, r, c, channel), value);
+  }
+
+  /**
+   * Copies a whole row into a caller supplied buffer as interleaved r, g, b samples.
+   *
+   * @param r - row number
+   * @param dest - the buffer to fill
+   * @param offset - index in the buffer of the first sample
+   */
+  @Override
+  public void getRow(int r, double[] dest, int offset) {
+    this.readSpan(r, 0, this.w, dest, offset);
+  }
+
+  /**
+   * Copies a rectangular region into a caller supplied buffer as interleaved r, g, b samples.
+   *
+   * @param r - first row of the region
+   * @param c - first column of the region
+   * @param height - number of rows in the region
+   * @param width - number of columns in the region
+   * @param dest - the buffer to fill
+   * @param offset - index in the buffer of the first sample
+   */
+  @Override
+  public void getRegion(int r, int c, int height, int width, double[] dest, int offset) {
+    for (int i = 0; i < height; i++) {
+      this.readSpan(r + i, c, width, dest, offset + i * width * 3);
+    }
+  }
+
+  /**
+   * Sets a whole row from a caller supplied buffer of interleaved r, g, b samples.
+   *
+   * @param r - row number
+   * @param src - the buffer to read
+   * @param offset - index in the buffer of the first sample
+   */
+  @Override
+  public void setRow(int r, double[] src, int offset) {
+    this.writeSpan(r, 0, this.w, src, offset);
+  }
+
+  /**
+   * Sets a rectangular region from a caller supplied buffer of interleaved r, g, b samples.
+   *
+   * @param r - first row of the region
+   * @param c - first column of the region
+   * @param height - number of rows in the region
+   * @param width - number of columns in the region
+   * @param src - the buffer to read
+   * @param offset - index in the buffer of the first sample
+   */
+  @Override
+  public void setRegion(int r, int c, int height, int width, double[] src, int offset) {
+    for (int i = 0; i < height; i++) {
+      this.writeSpan(r + i, c, width, src, offset + i * width * 3);
+    }
+  }
+
+  /**
+   * Retrieves the stored integer of a sample. Only valid for integer depths.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @return the unsigned stored sample
+   * @throws IllegalStateException if this image is stored as floating point
+   */
+  public int getRawSample(int r, int c, int channel) throws IllegalStateException {
+    return this.getRaw(this.layout.index(this.w, this.h, r, c, channel));
+  }
+
+  /**
+   * Stores an integer sample as is. Only valid for integer depths.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @param sample - the unsigned sample
+   * @throws IllegalStateException if this image is stored as floating point
+   * @throws IllegalArgumentException if the sample does not fit this depth
+   */
+  public void setRawSample(int r, int c, int channel, int sample)
+          throws IllegalStateException, IllegalArgumentException {
+    if (sample < 0 || sample > this.depth.getMaxSample()) {
+      throw new IllegalArgumentException(sample + " does not fit in a " + this.depth + " sample");
+    }
+    this.putRaw(this.layout.index(this.w, this.h, r, c, channel), sample);
+  }
+
+  /**
+   * Retrieves the image's max color value.
+   */
+  @Override
+  public int getMaximumValue() {
+    return this.maxValue;
+  }
+
+  /**
+   * Retrieves the width of this image.
+   *
+   * @return the number of pixels in the width
+   */
+  @Override
+  public int getWidth() {
+    return this.w;
+  }
+
+  /**
+   * Retrieves the height of this image.
+   *
+   * @return the number of pixels in the height
+   */
+  @Override
+  public int getHeight() {
+    return this.h;
+  }
+
+  /**
+   * Retrieves the type used to store each sample.
+   *
+   * @return the sample depth
+   */
+  public SampleDepth getDepth() {
+    return this.depth;
+  }
+
+  /**
+   * Retrieves the order of samples in the buffer.
+   *
+   * @return the pixel layout
+   */
+  public PixelLayout getLayout() {
+    return this.layout;
+  }
+
+  /**
+   * Retrieves the size of the pixel buffer.
+   *
+   * @return the number of bytes held by the pixel buffer
+   */
+  public long getByteSize() {
+    return (long) this.w * this.h * 3 * this.depth.getBytes();
+  }
+
+  /**
+   * Copies count pixels of a row, starting at column c, into an interleaved buffer.
+   */
+  private void readSpan(int r, int c, int count, double[] dest, int offset) {
+    int stride = this.layout.pixelStride();
+    for (int ch = 0; ch < 3; ch++) {
+      int i = this.layout.index(this.w, this.h, r, c, ch);
+      int end = offset + count * 3;
+      switch (this.depth) {
+        case BYTE:
+          for (int k = offset + ch; k < end; k += 3, i += stride) {
+            dest[k] = (this.bytes[i] & 0xFF) / this.scale;
+          }
+          break;
+        case SHORT:
+          for (int k = offset + ch; k < end; k += 3, i += stride) {
+            dest[k] = (this.shorts[i] & 0xFFFF) / this.scale;
+          }
+          break;
+        case FLOAT:
+          for (int k = offset + ch; k < end; k += 3, i += stride) {
+            dest[k] = this.floats[i];
+          }
+          break;
+        default:
+          if (stride == 3 && ch == 0) {
+            System.arraycopy(this.doubles, i, dest, offset, count * 3);
+            return;
+          }
+          for (int k = offset + ch; k < end; k += 3, i += stride) {
+            dest[k] = this.doubles[i];
+          }
+      }
+    }
+  }
+
+  /**
+   * Copies count pixels from an interleaved buffer into a row, starting at column c.
+   */
+  private void writeSpan(int r, int c, int count, double[] src, int offset) {
+    if (this.depth == SampleDepth.DOUBLE && this.layout == PixelLayout.INTERLEAVED) {
+      System.arraycopy(src, offset, this.doubles, this.layout.index(this.w, this.h, r, c, 0),
+              count * 3);
+      return;
+    }
+    int stride = this.layout.pixelStride();
+    for (int ch = 0; ch < 3; ch++) {
+      int i = this.layout.index(this.w, this.h, r, c, ch);
+      for (int k = offset + ch; k < offset + count * 3; k += 3, i += stride) {
+        this.put(i, src[k]);
+      }
+    }
+  }
+
+  private double get(int i) {
+    switch (this.depth) {
+      case BYTE:
+        return (this.bytes[i] & 0xFF) / this.scale;
+      case SHORT:
+        return (this.shorts[i] & 0xFFFF) / this.scale;
+      case FLOAT:
+        return this.floats[i];
+      default:
+        return this.doubles[i];
+    }
+  }
+
+  private void put(int i, double value) {
+    switch (this.depth) {
+      case BYTE:
+      case SHORT:
+        long sample = Math.round(value * this.scale);
+        this.putRaw(i, (int) Math.max(0, Math.min(this.depth.getMaxSample(), sample)));
+        break;
+      case FLOAT:
+        this.floats[i] = (float) value;
+        break;
+      default:
+        this.doubles[i] = value;
+    }
+  }
+
+  /**
+   * Copies the stored integers of a row into an interleaved buffer. Only valid for integer
+   * depths.
+   *
+   * @param r - row number
+   * @param dest - buffer receiving the unsigned samples
+   * @param offset - index in dest of the red sample of the first pixel
+   */
+  void getRawRow(int r, int[] dest, int offset) {
+    int stride = this.layout.pixelStride();
+    int end = offset + this.w * 3;
+    if (this.layout == PixelLayout.INTERLEAVED && this.depth == SampleDepth.BYTE) {
+      int i = this.layout.index(this.w, this.h, r, 0, 0) - offset;
+      for (int k = offset; k < end; k++) {
+        dest[k] = this.bytes[i + k] & 0xFF;
+      }
+      return;
+    }
+    for (int ch = 0; ch < 3; ch++) {
+      int i = this.layout.index(this.w, this.h, r, 0, ch);
+      switch (this.depth) {
+        case BYTE:
+          for (int k = offset + ch; k < end; k += 3, i += stride) {
+            dest[k] = this.bytes[i] & 0xFF;
+          }
+          break;
+        case SHORT:
+          for (int k = offset + ch; k < end; k += 3, i += stride) {
+            dest[k] = this.shorts[i] & 0xFFFF;
+          }
+          break;
+        default:
+          throw new IllegalStateException("Floating point images have no raw samples");
+      }
+    }
+  }
+
+  /**
+   * Stores a row of integers from an interleaved buffer without range checks. Only valid for
+   * integer depths.
+   *
+   * @param r - row number
+   * @param src - buffer of unsigned samples
+   * @param offset - index in src of the red sample of the first pixel
+   */
+  void setRawRow(int r, int[] src, int offset) {
+    int stride = this.layout.pixelStride();
+    int end = offset + this.w * 3;
+    if (this.layout == PixelLayout.INTERLEAVED && this.depth == SampleDepth.BYTE) {
+      int i = this.layout.index(this.w, this.h, r, 0, 0) - offset;
+      for (int k = offset; k < end; k++) {
+        this.bytes[i + k] = (byte) src[k];
+      }
+      return;
+    }
+    for (int ch = 0; ch < 3; ch++) {
+      int i = this.layout.index(this.w, this.h, r, 0, ch);
+      for (int k = offset + ch; k < end; k += 3, i += stride) {
+        this.putRaw(i, src[k]);
+      }
+    }
+  }
+
+  /**
+   * Sets a rectangular region the way it would be saved. Integer depths store each value as
+   * {@link PpmWriter#toSample(double, int)} computes it, clamped to the samples the depth can
+   * hold, instead of rounding it to the nearest sample; floating point depths store it as is.
+   *
+   * @param r - first row of the region
+   * @param c - first column of the region
+   * @param height - number of rows in the region
+   * @param width - number of columns in the region
+   * @param src - the buffer to read
+   * @param offset - index in the buffer of the first sample
+   */
+  void storeRegion(int r, int c, int height, int width, double[] src, int offset) {
+    if (!this.depth.isInteger()) {
+      this.setRegion(r, c, height, width, src, offset);
+      return;
+    }
+    int stride = this.layout.pixelStride();
+    int top = this.depth.getMaxSample();
+    for (int y = 0; y < height; y++) {
+      int start = offset + y * width * 3;
+      for (int ch = 0; ch < 3; ch++) {
+        int i = this.layout.index(this.w, this.h, r + y, c, ch);
+        for (int k = start + ch; k < start + width * 3; k += 3, i += stride) {
+          int sample = PpmWriter.toSample(src[k], this.maxValue);
+          this.putRaw(i, Math.max(0, Math.min(top, sample)));
+        }
+      }
+    }
+  }
+
+  /**
+   * Retrieves the stored integer at a buffer index. Only valid for integer depths.
+   *
+   * @param i - index in the buffer
+   * @return the unsigned stored sample
+   */
+  int getRaw(int i) {
+    switch (this.depth) {
+      case BYTE:
+        return this.bytes[i] & 0xFF;
+      case SHORT:
+        return this.shorts[i] & 0xFFFF;
+      default:
+        throw new IllegalStateException("Floating point images have no raw samples");
+    }
+  }
+
+  /**
+   * Stores an integer at a buffer index without range checks. Only valid for integer depths.
+   *
+   * @param i - index in the buffer
+   * @param sample - the unsigned sample
+   */
+  void putRaw(int i, int sample) {
+    switch (this.depth) {
+      case BYTE:
+        this.bytes[i] = (byte) sample;
+        break;
+      case SHORT:
+        this.shorts[i] = (short) sample;
+        break;
+      default:
+        throw new IllegalStateException("Floating point images have no raw samples");
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Represents an image that has not been computed yet, described as a source image, a remap of its
+ * coordinates and a point operation. Chaining operations onto a pipeline fuses them into a
+ * single remap and a single kernel over the original source, which works because point
+ * operations do not depend on where a pixel is read from. Pixels are computed on demand, or all
+ * at once in one pass by {@link #materialize(ImageExecutor)}.
+ *
+ * <p>A pipeline computing integer results keeps every operation it records and stores each
+ * result as an integer before the next one runs, as {@link SampleChain} describes, so its
+ * pixels are the same as computing the operations one image at a time.</p>
+ */
+public class PipelineImage implements Image {
+  private final Image source;
+  private final PixelMap map;
+  private final PixelKernel kernel;
+  private final PixelKernel[] steps;
+  private final SampleDepth depth;
+  private final ThreadLocal<double[]> scratch;
+  private final ThreadLocal<int[]> samples;
+  private volatile SampleChain chain;
+
+  /**
+   * Constructs a pipeline over a source image. A remapped view as the source is read through
+   * directly, by folding its map into this pipeline's map.
+   *
+   * @param source - the image pixels are read from
+   * @param map - where each pixel is read from in the source
+   * @param kernel - the point operation applied to every pixel
+   * @throws IllegalArgumentException if any parameter is null
+   */
+  public PipelineImage(Image source, PixelMap map, PixelKernel kernel)
+          throws IllegalArgumentException {
+    this(source, map, kernel, SampleDepth.DOUBLE);
+  }
+
+  /**
+   * Constructs a pipeline over a source image whose results are stored at a given depth. A
+   * remapped view as the source is read through directly, by folding its map into this
+   * pipeline's map.
+   *
+   * @param source - the image pixels are read from
+   * @param map - where each pixel is read from in the source
+   * @param kernel - the point operation applied to every pixel
+   * @param depth - the depth each result is stored at, where integer depths round the result of
+   *              every operation and need a source whose pixels are integer samples
+   * @throws IllegalArgumentException if any parameter is null
+   */
+  public PipelineImage(Image source, PixelMap map, PixelKernel kernel, SampleDepth depth)
+          throws IllegalArgumentException {
+    this(source, map, kernel, new PixelKernel[] {kernel}, depth);
+  }
+
+  private PipelineImage(Image source, PixelMap map, PixelKernel kernel, PixelKernel[] steps,
+                        SampleDepth depth) throws IllegalArgumentException {
+    if (source == null || map == null || kernel == null || depth == null) {
+      throw new IllegalArgumentException("Source, map, kernel and depth cannot be null");
+    }
+    if (source instanceof RemappedImage) {
+      RemappedImage view = (RemappedImage) source;
+      source = view.getSource();
+      map = view.getMap().then(map);
+    }
+    this.source = source;
+    this.map = map;
+    this.kernel = kernel;
+    this.steps = steps;
+    this.depth = depth;
+    int w = source.getWidth();
+    this.scratch = ThreadLocal.withInitial(() -> new double[w * 3]);
+    this.samples = ThreadLocal.withInitial(() -> new int[w * 3]);
+  }
+
+  /**
+   * Retrieves the image this pipeline reads from.
+   *
+   * @return the source image
+   */
+  public Image getSource() {
+    return this.source;
+  }
+
+  /**
+   * Records an operation applied to the result of this pipeline, fusing it with the operations
+   * already recorded.
+   *
+   * @param nextMap - where each pixel of the result is read from in this image
+   * @param nextKernel - the point operation applied after this pipeline's kernel
+   * @return a pipeline over the same source computing both operations
+   */
+  public PipelineImage then(PixelMap nextMap, PixelKernel nextKernel) {
+    PixelKernel[] next = Arrays.copyOf(this.steps, this.steps.length + 1);
+    next[this.steps.length] = nextKernel;
+    return new PipelineImage(this.source, this.map.then(nextMap),
+            this.kernel.andThen(nextKernel), next, this.depth);
+  }
+
+  /**
+   * Computes every pixel of this pipeline in one pass.
+   *
+   * @param executor - the engine used to compute the pixels
+   * @return the computed image
+   */
+  public PackedImage materialize(ImageExecutor executor) {
+    if (this.depth.isInteger()) {
+      return executor.apply(this.source, this.map, this.steps, this.depth);
+    }
+    return executor.apply(this.source, this.map, this.kernel);
+  }
+
+  /**
+   * Computes a pixel with a given row and column.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @return a newly allocated RGB value of a pixel
+   */
+  @Override
+  public double[] getPixel(int r, int c) {
+    double[] rgb = new double[3];
+    this.computePixel(r, c, rgb);
+    return rgb;
+  }
+
+  /**
+   * Computes one color sample of a pixel.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @return the value of the sample
+   */
+  @Override
+  public double getSample(int r, int c, int channel) {
+    double[] rgb = this.scratch.get();
+    this.computePixel(r, c, rgb);
+    return rgb[channel];
+  }
+
+  /**
+   * Computes a whole row into a caller supplied buffer as interleaved r, g, b samples.
+   *
+   * @param r - row number
+   * @param dest - the buffer to fill
+   * @param offset - index in the buffer of the first sample
+   */
+  @Override
+  public void getRow(int r, double[] dest, int offset) {
+    double[] in = this.scratch.get();
+    this.source.getRow(this.map.sourceRow(r), in, 0);
+    if (this.depth.isInteger()) {
+      int max = this.getMaximumValue();
+      int[] raw = this.samples.get();
+      for (int c = 0; c < this.getWidth(); c++) {
+        int k = this.map.sourceCol(c) * 3;
+        raw[c * 3] = PpmWriter.toSample(in[k], max);
+        raw[c * 3 + 1] = PpmWriter.toSample(in[k + 1], max);
+        raw[c * 3 + 2] = PpmWriter.toSample(in[k + 2], max);
+      }
+      this.chain().apply(raw, 0, this.getWidth(), in);
+      for (int k = 0; k < this.getWidth() * 3; k++) {
+        dest[offset + k] = raw[k] / (double) max;
+      }
+      return;
+    }
+    for (int c = 0; c < this.getWidth(); c++) {
+      int k = this.map.sourceCol(c) * 3;
+      int j = offset + c * 3;
+      dest[j] = in[k];
+      dest[j + 1] = in[k + 1];
+      dest[j + 2] = in[k + 2];
+      this.kernel.apply(dest, j);
+    }
+  }
+
+  /**
+   * Retrieves the image's max color value.
+   */
+  @Override
+  public int getMaximumValue() {
+    return this.source.getMaximumValue();
+  }
+
+  /**
+   * Retrieves the width of this image.
+   *
+   * @return the number of pixels in the width
+   */
+  @Override
+  public int getWidth() {
+    return this.source.getWidth();
+  }
+
+  /**
+   * Retrieves the height of this image.
+   *
+   * @return the number of pixels in the height
+   */
+  @Override
+  public int getHeight() {
+    return this.source.getHeight();
+  }
+
+  private void computePixel(int r, int c, double[] rgb) {
+    int sr = this.map.sourceRow(r);
+    int sc = this.map.sourceCol(c);
+    rgb[0] = this.source.getSample(sr, sc, 0);
+    rgb[1] = this.source.getSample(sr, sc, 1);
+    rgb[2] = this.source.getSample(sr, sc, 2);
+    if (this.depth.isInteger()) {
+      int max = this.getMaximumValue();
+      int[] raw = new int[3];
+      for (int k = 0; k < 3; k++) {
+        raw[k] = PpmWriter.toSample(rgb[k], max);
+      }
+      this.chain().apply(raw, 0, 1, rgb);
+      for (int k = 0; k < 3; k++) {
+        rgb[k] = raw[k] / (double) max;
+      }
+      return;
+    }
+    this.kernel.apply(rgb, 0);
+  }
+
+  private SampleChain chain() {
+    SampleChain c = this.chain;
+    if (c == null) {
+      c = new SampleChain(this.steps, this.depth, this.getMaximumValue(), false);
+      this.chain = c;
+    }
+    return c;
+  }
+}
@@ -0,0 +1,40 @@
+package model;
+
+/**
+ * Represents a point operation that computes a new pixel from the old value of the same pixel.
+ * Kernels work on primitive buffers in place so that applying one allocates nothing.
+ */
+@FunctionalInterface
+public interface PixelKernel {
+  /**
+   * A kernel that leaves every pixel unchanged.
+   */
+  PixelKernel IDENTITY = (rgb, off) -> { };
+
+  /**
+   * Replaces the pixel stored at the given offset with its transformed value.
+   *
+   * @param rgb - buffer of interleaved r, g, b samples
+   * @param off - index of the red sample of the pixel
+   */
+  void apply(double[] rgb, int off);
+
+  /**
+   * Fuses this kernel with a kernel applied to its result, so both run in one pass.
+   *
+   * @param next - the kernel applied after this one
+   * @return the combined kernel
+   */
+  default PixelKernel andThen(PixelKernel next) {
+    if (this == IDENTITY) {
+      return next;
+    }
+    if (next == IDENTITY) {
+      return this;
+    }
+    return (rgb, off) -> {
+      this.apply(rgb, off);
+      next.apply(rgb, off);
+    };
+  }
+}
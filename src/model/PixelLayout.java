@@ -0,0 +1,42 @@
+package model;
+
+/**
+ * Represents the order in which the samples of a packed image are stored in its buffer.
+ */
+public enum PixelLayout {
+  /**
+   * Samples are stored pixel by pixel, as r, g, b, r, g, b, ...
+   */
+  INTERLEAVED,
+
+  /**
+   * Samples are stored channel by channel, as a red plane, then a green plane, then a blue plane.
+   */
+  PLANAR;
+
+  /**
+   * Computes the buffer index of a sample.
+   *
+   * @param w - width of the image
+   * @param h - height of the image
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @return the index of the sample in the buffer
+   */
+  public int index(int w, int h, int r, int c, int channel) {
+    if (this == INTERLEAVED) {
+      return (r * w + c) * 3 + channel;
+    }
+    return channel * w * h + r * w + c;
+  }
+
+  /**
+   * Computes the distance in the buffer between two horizontally adjacent samples of a channel.
+   *
+   * @return the pixel stride
+   */
+  public int pixelStride() {
+    return this == INTERLEAVED ? 3 : 1;
+  }
+}
@@ -0,0 +1,128 @@
+package model;
+
+import java.util.Objects;
+
+/**
+ * Represents a remapping of pixel coordinates, where each axis of the destination is read from
+ * {@code scale * index + offset} in the source. Flips are the maps with a scale of -1.
+ */
+public final class PixelMap {
+  private static final PixelMap IDENTITY = new PixelMap(1, 0, 1, 0);
+
+  private final int rowScale;
+  private final int rowOffset;
+  private final int colScale;
+  private final int colOffset;
+
+  private PixelMap(int rowScale, int rowOffset, int colScale, int colOffset) {
+    this.rowScale = rowScale;
+    this.rowOffset = rowOffset;
+    this.colScale = colScale;
+    this.colOffset = colOffset;
+  }
+
+  /**
+   * Retrieves the map that reads every pixel from the same position.
+   *
+   * @return the identity map
+   */
+  public static PixelMap identity() {
+    return IDENTITY;
+  }
+
+  /**
+   * Retrieves the map that mirrors an image horizontally.
+   *
+   * @param width - width of the image
+   * @return the horizontal flip map
+   */
+  public static PixelMap horizontalFlip(int width) {
+    return new PixelMap(1, 0, -1, width - 1);
+  }
+
+  /**
+   * Retrieves the map that mirrors an image vertically.
+   *
+   * @param height - height of the image
+   * @return the vertical flip map
+   */
+  public static PixelMap verticalFlip(int height) {
+    return new PixelMap(-1, height - 1, 1, 0);
+  }
+
+  /**
+   * Computes the source row read by a destination row.
+   *
+   * @param r - destination row number
+   * @return source row number
+   */
+  public int sourceRow(int r) {
+    return this.rowScale * r + this.rowOffset;
+  }
+
+  /**
+   * Computes the source column read by a destination column.
+   *
+   * @param c - destination column number
+   * @return source column number
+   */
+  public int sourceCol(int c) {
+    return this.colScale * c + this.colOffset;
+  }
+
+  /**
+   * Composes this map with a map applied to its result, so that reading through the returned
+   * map is the same as remapping with this map and then remapping the result with next.
+   *
+   * @param next - the map applied after this one
+   * @return the combined map
+   */
+  public PixelMap then(PixelMap next) {
+    return new PixelMap(this.rowScale * next.rowScale,
+            this.rowScale * next.rowOffset + this.rowOffset,
+            this.colScale * next.colScale,
+            this.colScale * next.colOffset + this.colOffset);
+  }
+
+  /**
+   * Determines whether this map reads every column from the same column.
+   *
+   * @return true if only rows are remapped
+   */
+  public boolean preservesColumns() {
+    return this.colScale == 1 && this.colOffset == 0;
+  }
+
+  /**
+   * Determines whether this map reads every row from the same row.
+   *
+   * @return true if only columns are remapped
+   */
+  public boolean preservesRows() {
+    return this.rowScale == 1 && this.rowOffset == 0;
+  }
+
+  /**
+   * Determines whether this map reads every pixel from the same position.
+   *
+   * @return true if this is the identity map
+   */
+  public boolean isIdentity() {
+    return this.equals(IDENTITY);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof PixelMap)) {
+      return false;
+    }
+    PixelMap m = (PixelMap) o;
+    return this.rowScale == m.rowScale && this.rowOffset == m.rowOffset
+            && this.colScale == m.colScale && this.colOffset == m.colOffset;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.rowScale, this.rowOffset, this.colScale, this.colOffset);
+  }
+}
@@ -0,0 +1,81 @@
+package model;
+
+/**
+ * Represents a backend running the simple point operations over rows held as one array per
+ * channel, which is the shape vector instructions work on. The vector implementation lives in
+ * its own source folder, simd/src, because it needs the jdk.incubator.vector module to compile
+ * and run; {@link #vector()} loads it reflectively and reports when it is missing.
+ *
+ * <p>Every method must compute exactly what the scalar kernels compute for each sample, without
+ * fused multiply-adds or reordered sums, so that the backend never changes a result.</p>
+ */
+interface PlanarBackend {
+  /**
+   * Name of the class implementing this interface with the vector API.
+   */
+  String VECTOR_CLASS = "model.VectorPlanarBackend";
+
+  /**
+   * Adds a constant to every sample, clamped between 0 and 1.
+   *
+   * @param r - red samples, updated in place
+   * @param g - green samples, updated in place
+   * @param b - blue samples, updated in place
+   * @param n - number of pixels
+   * @param delta - the value added
+   */
+  void offset(double[] r, double[] g, double[] b, int n, double delta);
+
+  /**
+   * Replaces every channel with a weighted sum of the channels divided by a constant.
+   *
+   * @param r - red samples, updated in place
+   * @param g - green samples, updated in place
+   * @param b - blue samples, updated in place
+   * @param n - number of pixels
+   * @param wr - weight of the red sample
+   * @param wg - weight of the green sample
+   * @param wb - weight of the blue sample
+   * @param divisor - the value the sum is divided by
+   */
+  void mix(double[] r, double[] g, double[] b, int n, double wr, double wg, double wb,
+           double divisor);
+
+  /**
+   * Replaces every channel with the largest of the channels.
+   *
+   * @param r - red samples, updated in place
+   * @param g - green samples, updated in place
+   * @param b - blue samples, updated in place
+   * @param n - number of pixels
+   */
+  void maximum(double[] r, double[] g, double[] b, int n);
+
+  /**
+   * Retrieves the vector backend.
+   *
+   * @return the backend, or null if it was not compiled or the vector module is not available
+   */
+  static PlanarBackend vector() {
+    return Holder.VECTOR;
+  }
+
+  /**
+   * Loads the vector backend once, on first use.
+   */
+  final class Holder {
+    private static final PlanarBackend VECTOR = load();
+
+    private Holder() {
+    }
+
+    private static PlanarBackend load() {
+      try {
+        return (PlanarBackend) Class.forName(VECTOR_CLASS).getDeclaredConstructor()
+                .newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package model;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Creates the kernels of the point operations offered by the model, so that the model and the
+ * streaming processor compute them the same way.
+ */
+final class PointOperations {
+
+  private PointOperations() {
+  }
+
+  /**
+   * Creates a kernel copying the red sample into the other channels.
+   *
+   * @return the kernel
+   */
+  static PixelKernel red() {
+    return LookupKernel.average(1, 0, 0, 1);
+  }
+
+  /**
+   * Creates a kernel copying the green sample into the other channels.
+   *
+   * @return the kernel
+   */
+  static PixelKernel green() {
+    return LookupKernel.average(0, 1, 0, 1);
+  }
+
+  /**
+   * Creates a kernel copying the blue sample into the other channels.
+   *
+   * @return the kernel
+   */
+  static PixelKernel blue() {
+    return LookupKernel.average(0, 0, 1, 1);
+  }
+
+  /**
+   * Creates a kernel replacing every channel with the largest channel.
+   *
+   * @return the kernel
+   */
+  static PixelKernel value() {
+    return LookupKernel.maximum();
+  }
+
+  /**
+   * Creates a kernel replacing every channel with the luma (0.2126r + 0.7152g + 0.0722b).
+   *
+   * @return the kernel
+   */
+  static PixelKernel luma() {
+    return LookupKernel.average(0.2126, 0.7152, 0.0722, 1);
+  }
+
+  /**
+   * Creates a kernel replacing every channel with the average of the channels.
+   *
+   * @return the kernel
+   */
+  static PixelKernel intensity() {
+    return LookupKernel.average(1, 1, 1, 3);
+  }
+
+  /**
+   * Creates a kernel adding a brightness level to every sample, clamped between 0 and 1.
+   *
+   * @param num - change of brightness level, in steps of the image's samples
+   * @param maxValue - the max value of the image
+   * @return the kernel
+   */
+  static PixelKernel brighten(int num, int maxValue) {
+    return LookupKernel.offset(num / (double) maxValue);
+  }
+
+  /**
+   * Creates a kernel stretching the samples of every channel so that its low value becomes 0
+   * and its high value becomes 1, clamped between 0 and 1. A channel whose high value is not
+   * above its low value is left unchanged.
+   *
+   * @param low - the low value of the red, green and blue channels
+   * @param high - the high value of the red, green and blue channels
+   * @return the kernel
+   */
+  static PixelKernel levels(double[] low, double[] high) {
+    if (low[0] == low[1] && low[1] == low[2] && high[0] == high[1] && high[1] == high[2]) {
+      return LookupKernel.perChannel(PointOperations.stretch(low[0], high[0]));
+    }
+    DoubleUnaryOperator r = PointOperations.stretch(low[0], high[0]);
+    DoubleUnaryOperator g = PointOperations.stretch(low[1], high[1]);
+    DoubleUnaryOperator b = PointOperations.stretch(low[2], high[2]);
+    return (rgb, off) -> {
+      rgb[off] = r.applyAsDouble(rgb[off]);
+      rgb[off + 1] = g.applyAsDouble(rgb[off + 1]);
+      rgb[off + 2] = b.applyAsDouble(rgb[off + 2]);
+    };
+  }
+
+  private static DoubleUnaryOperator stretch(double low, double high) {
+    if (!(high > low)) {
+      return DoubleUnaryOperator.identity();
+    }
+    double scale = 1 / (high - low);
+    return v -> Math.max(0, Math.min(1, (v - low) * scale));
+  }
+}
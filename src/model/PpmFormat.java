@@ -0,0 +1,17 @@
+package model;
+
+/**
+ * Represents the two encodings of a PPM file.
+ */
+public enum PpmFormat {
+  /**
+   * Plain PPM, where every sample is written as decimal text.
+   */
+  P3,
+
+  /**
+   * Raw PPM, where every sample is written as one byte, or two big-endian bytes when the max
+   * value is above 255.
+   */
+  P6
+}
@@ -0,0 +1,268 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads the tokens and raw samples of a PPM file from a channel through a fixed size buffer.
+ */
+class PpmReader {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ReadableByteChannel channel;
+  private final ByteBuffer buffer;
+  private boolean eof;
+  private long consumed;
+
+  /**
+   * Constructs a reader over a channel positioned at the start of a PPM file.
+   *
+   * @param channel - the channel to read from
+   */
+  PpmReader(ReadableByteChannel channel) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    this.buffer.flip();
+    this.eof = false;
+    this.consumed = 0;
+  }
+
+  /**
+   * Retrieves the number of bytes of the file that have been parsed so far.
+   *
+   * @return the offset in the file of the next unread byte
+   */
+  long position() {
+    return this.consumed - this.buffer.remaining();
+  }
+
+  /**
+   * Reads the two character magic number at the start of the file.
+   *
+   * @return the format of the file
+   * @throws IOException if the channel cannot be read
+   * @throws IllegalArgumentException if the file is not a P3 or P6 file
+   */
+  PpmFormat readFormat() throws IOException, IllegalArgumentException {
+    int p = this.read();
+    int n = this.read();
+    if (p == 'P' && n == '3') {
+      return PpmFormat.P3;
+    }
+    if (p == 'P' && n == '6') {
+      return PpmFormat.P6;
+    }
+    throw new IllegalArgumentException("File should begin with P3 or P6");
+  }
+
+  /**
+   * Reads the next number, skipping whitespace and comments.
+   *
+   * @return the number
+   * @throws IOException if the channel cannot be read
+   * @throws IllegalArgumentException if the next token is not a non-negative number
+   */
+  int readInt() throws IOException, IllegalArgumentException {
+    int b = this.skipWhitespaceAndComments();
+    if (b == -1) {
+      throw new IllegalArgumentException("Unexpected end of PPM file");
+    }
+    if (b < '0' || b > '9') {
+      throw new IllegalArgumentException("Expected a number in the PPM file, found '"
+              + (char) b + "'");
+    }
+    long value = 0;
+    while (b >= '0' && b <= '9') {
+      value = value * 10 + (b - '0');
+      if (value > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Number in the PPM file is too large");
+      }
+      b = this.read();
+    }
+    if (b == '#') {
+      this.skipComment();
+    } else if (b != -1 && !isWhitespace(b)) {
+      throw new IllegalArgumentException("Unexpected character '" + (char) b
+              + "' in the PPM file");
+    }
+    return (int) value;
+  }
+
+  /**
+   * Reads the width, height and max value that follow the magic number.
+   *
+   * @param format - the format read by {@link #readFormat()}
+   * @return the width, height and max value
+   * @throws IOException if the channel cannot be read
+   * @throws IllegalArgumentException if the header is malformed or out of range
+   */
+  int[] readHeader(PpmFormat format) throws IOException, IllegalArgumentException {
+    int width = this.readInt();
+    int height = this.readInt();
+    int maxValue = this.readInt();
+    if (width <= 0 || height <= 0 || maxValue <= 0) {
+      throw new IllegalArgumentException("Invalid PPM header " + width + " " + height + " "
+              + maxValue);
+    }
+    if (format == PpmFormat.P6 && maxValue > 0xFFFF) {
+      throw new IllegalArgumentException("P6 files need a max value from 1 to 65535, not "
+              + maxValue);
+    }
+    return new int[] {width, height, maxValue};
+  }
+
+  /**
+   * Reads the next samples of the raster as they are stored in the file.
+   *
+   * @param format - the format of the file
+   * @param bytesPerSample - 1, or 2 for big-endian 16-bit samples; ignored for P3 files
+   * @param dest - buffer receiving the samples
+   * @param count - number of samples to read
+   * @throws IOException if the channel cannot be read
+   * @throws IllegalArgumentException if the raster ends first or is malformed
+   */
+  void readSamples(PpmFormat format, int bytesPerSample, int[] dest, int count)
+          throws IOException, IllegalArgumentException {
+    for (int i = 0; i < count; i++) {
+      if (format == PpmFormat.P3) {
+        dest[i] = this.readInt();
+        continue;
+      }
+      while (this.buffer.remaining() < bytesPerSample) {
+        if (!this.fill()) {
+          throw new IllegalArgumentException("PPM raster ends early");
+        }
+      }
+      dest[i] = bytesPerSample == 1 ? this.buffer.get() & 0xFF : this.buffer.getShort() & 0xFFFF;
+    }
+  }
+
+  /**
+   * Reads the decimal raster of a P3 file into an interleaved image. Samples above what the
+   * image's depth can hold widen the image, since files may hold samples above their declared
+   * max value.
+   *
+   * @param image - the image to fill, stored with an interleaved layout
+   * @return the filled image, which is a widened copy if the depth had to change
+   * @throws IOException if the channel cannot be read
+   * @throws IllegalArgumentException if the raster is shorter than the image or malformed
+   */
+  PackedImage readPlainRaster(PackedImage image) throws IOException, IllegalArgumentException {
+    int w = image.getWidth();
+    int size = w * image.getHeight() * 3;
+    int max = image.getDepth().getMaxSample();
+    for (int i = 0; i < size; i++) {
+      int sample = this.readInt();
+      if (sample > max) {
+        image = image.convert(SampleDepth.forMaxSample(sample));
+        max = image.getDepth().getMaxSample();
+      }
+      if (image.getDepth().isInteger()) {
+        image.putRaw(i, sample);
+      } else {
+        image.setSample(i / 3 / w, i / 3 % w, i % 3, sample / (double) image.getMaximumValue());
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Reads the binary raster of a P6 file into an interleaved integer image. The single whitespace
+   * character after the max value must already have been consumed by {@link #readInt()}.
+   *
+   * @param image - the image to fill, stored with an integer depth and interleaved layout
+   * @param bytesPerSample - 1, or 2 for big-endian 16-bit samples
+   * @throws IOException if the channel cannot be read
+   * @throws IllegalArgumentException if the raster is shorter than the image
+   */
+  void readRaster(PackedImage image, int bytesPerSample)
+          throws IOException, IllegalArgumentException {
+    int size = image.getWidth() * image.getHeight() * 3;
+    int i = 0;
+    while (i < size) {
+      if (this.buffer.remaining() < bytesPerSample && !this.fill()) {
+        throw new IllegalArgumentException("PPM raster ends after " + i + " of " + size
+                + " samples");
+      }
+      if (bytesPerSample == 1) {
+        int end = Math.min(size, i + this.buffer.remaining());
+        for (; i < end; i++) {
+          image.putRaw(i, this.buffer.get() & 0xFF);
+        }
+      } else {
+        int end = Math.min(size, i + this.buffer.remaining() / 2);
+        for (; i < end; i++) {
+          image.putRaw(i, this.buffer.getShort() & 0xFFFF);
+        }
+      }
+    }
+  }
+
+  /**
+   * Skips whitespace and comments, which run from '#' to the end of the line.
+   *
+   * @return the first byte that is neither, or -1 at the end of the file
+   */
+  private int skipWhitespaceAndComments() throws IOException {
+    int b = this.read();
+    while (b != -1) {
+      if (b == '#') {
+        this.skipComment();
+      } else if (!isWhitespace(b)) {
+        return b;
+      }
+      b = this.read();
+    }
+    return b;
+  }
+
+  /**
+   * Skips the rest of a comment, up to and including the end of the line.
+   */
+  private void skipComment() throws IOException {
+    int b = this.read();
+    while (b != -1 && b != '\n' && b != '\r') {
+      b = this.read();
+    }
+  }
+
+  /**
+   * Reads one byte.
+   *
+   * @return the unsigned byte, or -1 at the end of the file
+   */
+  private int read() throws IOException {
+    if (!this.buffer.hasRemaining() && !this.fill()) {
+      return -1;
+    }
+    return this.buffer.get() & 0xFF;
+  }
+
+  /**
+   * Reads more of the channel into the buffer, keeping any bytes not yet consumed.
+   *
+   * @return false if no more bytes could be read
+   */
+  private boolean fill() throws IOException {
+    if (this.eof) {
+      return false;
+    }
+    this.buffer.compact();
+    int n = 0;
+    while (n == 0) {
+      n = this.channel.read(this.buffer);
+    }
+    this.buffer.flip();
+    if (n < 0) {
+      this.eof = true;
+    } else {
+      this.consumed += n;
+    }
+    return this.buffer.hasRemaining();
+  }
+
+  private static boolean isWhitespace(int b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+  }
+}
@@ -0,0 +1,212 @@
+package model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Applies a chain of point operations and flips to a PPM file and writes the result to another
+ * file one row at a time, so that only a few rows are ever held in memory however large the
+ * file is. The result is the same as loading the file, applying the operations with an
+ * executor that keeps integer results, as the program does by default, and saving it in the
+ * input's encoding: each operation is stored as an integer before the next one runs, as
+ * {@link SampleChain} describes.
+ *
+ * <p>When the chain flips the image vertically, rows are first processed in order into a
+ * temporary file of fixed size rows, which is then read back from the last row to the first.</p>
+ */
+public final class PpmStreamer {
+  private final List<String> operations;
+  private final List<IntFunction<PixelKernel>> kernels;
+  private final boolean horizontal;
+  private final boolean vertical;
+
+  /**
+   * Constructs a streamer from a list of operations written like the commands of the text
+   * controller: red-component, green-component, blue-component, value-component,
+   * luma-component, intensity-component, horizontal-flip, vertical-flip, or brighten:num.
+   *
+   * @param operations - the operations, applied in order
+   * @throws IllegalArgumentException if an operation is unknown or cannot be streamed
+   */
+  public PpmStreamer(List<String> operations) throws IllegalArgumentException {
+    if (operations == null) {
+      throw new IllegalArgumentException("Operations cannot be null");
+    }
+    List<IntFunction<PixelKernel>> k = new ArrayList<IntFunction<PixelKernel>>();
+    boolean h = false;
+    boolean v = false;
+    for (String op : operations) {
+      String[] parts = op.toLowerCase().split(":", 2);
+      switch (parts[0]) {
+        case "red-component":
+          k.add(max -> PointOperations.red());
+          break;
+        case "green-component":
+          k.add(max -> PointOperations.green());
+          break;
+        case "blue-component":
+          k.add(max -> PointOperations.blue());
+          break;
+        case "value-component":
+          k.add(max -> PointOperations.value());
+          break;
+        case "luma-component":
+          k.add(max -> PointOperations.luma());
+          break;
+        case "intensity-component":
+          k.add(max -> PointOperations.intensity());
+          break;
+        case "brighten":
+          try {
+            int amount = Integer.parseInt(parts[1]);
+            k.add(max -> PointOperations.brighten(amount, max));
+          } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Brighten needs an amount, as in brighten:10");
+          }
+          break;
+        case "horizontal-flip":
+          h = !h;
+          break;
+        case "vertical-flip":
+          v = !v;
+          break;
+        default:
+          throw new IllegalArgumentException(op + " cannot be streamed");
+      }
+    }
+    this.operations = Collections.unmodifiableList(new ArrayList<String>(operations));
+    this.kernels = k;
+    this.horizontal = h;
+    this.vertical = v;
+  }
+
+  /**
+   * Retrieves the operations this streamer applies.
+   *
+   * @return the operations in order
+   */
+  public List<String> getOperations() {
+    return this.operations;
+  }
+
+  /**
+   * Streams a file through the operations into another file of the same encoding.
+   *
+   * @param input - path of the PPM file read
+   * @param output - path of the PPM file written, which must not be the input
+   * @throws FileNotFoundException if the input does not exist
+   * @throws IOException if a file cannot be read or written
+   * @throws IllegalArgumentException if the input is not a valid PPM file or is the output
+   */
+  public void stream(String input, String output)
+          throws FileNotFoundException, IOException, IllegalArgumentException {
+    if (Paths.get(input).toAbsolutePath().normalize()
+            .equals(Paths.get(output).toAbsolutePath().normalize())) {
+      throw new IllegalArgumentException("Cannot stream " + input + " onto itself");
+    }
+    try (FileChannel channel = FileChannel.open(Paths.get(input), StandardOpenOption.READ)) {
+      PpmReader reader = new PpmReader(channel);
+      PpmFormat format = reader.readFormat();
+      int[] header = reader.readHeader(format);
+      int w = header[0];
+      int h = header[1];
+      int bytesPerSample = header[2] > 0xFF ? 2 : 1;
+      PixelMap map = this.horizontal ? PixelMap.horizontalFlip(w) : PixelMap.identity();
+      PixelKernel kernel = PixelKernel.IDENTITY;
+      PixelKernel[] steps = new PixelKernel[this.kernels.size()];
+      for (int i = 0; i < steps.length; i++) {
+        steps[i] = this.kernels.get(i).apply(header[2]);
+        kernel = kernel.andThen(steps[i]);
+      }
+      SampleDepth depth = format == PpmFormat.P3 ? SampleDepth.SHORT
+              : SampleDepth.forMaxSample(header[2]);
+      SampleChain chain = new SampleChain(steps, depth, header[2], true);
+      try (PpmWriter out = new PpmWriter(Paths.get(output), format, w, h, header[2])) {
+        int[] raw = new int[w * 3];
+        double[] row = new double[w * 3];
+        int[] samples = new int[w * 3];
+        if (!this.vertical) {
+          for (int r = 0; r < h; r++) {
+            reader.readSamples(format, bytesPerSample, raw, raw.length);
+            this.transform(raw, row, samples, map, chain, kernel, header[2]);
+            out.writeRow(samples, 0, samples.length);
+          }
+          return;
+        }
+        Path temp = Files.createTempFile("stream", ".rows");
+        try (FileChannel rows = FileChannel.open(temp, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+          ByteBuffer buffer = ByteBuffer.allocateDirect(w * 3 * Integer.BYTES);
+          for (int r = 0; r < h; r++) {
+            reader.readSamples(format, bytesPerSample, raw, raw.length);
+            this.transform(raw, row, samples, map, chain, kernel, header[2]);
+            buffer.clear();
+            buffer.asIntBuffer().put(samples);
+            while (buffer.hasRemaining()) {
+              rows.write(buffer);
+            }
+          }
+          long rowBytes = (long) w * 3 * Integer.BYTES;
+          for (int r = h - 1; r >= 0; r--) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+              if (rows.read(buffer, r * rowBytes + buffer.position()) < 0) {
+                throw new IOException("Temporary row file is truncated");
+              }
+            }
+            buffer.flip();
+            buffer.asIntBuffer().get(samples);
+            out.writeRow(samples, 0, samples.length);
+          }
+        }
+      }
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException(input + " does not exist");
+    }
+  }
+
+  /**
+   * Remaps and transforms a row of raw samples into the samples written. Rows of plain files
+   * holding samples too large for 16 bits are loaded as doubles, so they are computed in
+   * floating point like the loaded image would be.
+   */
+  private void transform(int[] raw, double[] row, int[] samples, PixelMap map,
+                         SampleChain chain, PixelKernel kernel, int maxValue) {
+    int w = raw.length / 3;
+    boolean wide = false;
+    for (int j = 0; j < w; j++) {
+      int k = map.sourceCol(j) * 3;
+      samples[j * 3] = raw[k];
+      samples[j * 3 + 1] = raw[k + 1];
+      samples[j * 3 + 2] = raw[k + 2];
+    }
+    for (int sample : samples) {
+      wide |= sample < 0 || sample > SampleDepth.SHORT.getMaxSample();
+    }
+    if (!wide) {
+      chain.apply(samples, 0, w, row);
+      return;
+    }
+    double scale = maxValue;
+    for (int k = 0; k < row.length; k++) {
+      row[k] = samples[k] / scale;
+    }
+    for (int k = 0; k < row.length; k += 3) {
+      kernel.apply(row, k);
+    }
+    for (int k = 0; k < row.length; k++) {
+      samples[k] = PpmWriter.toSample(row[k], maxValue);
+    }
+  }
+}
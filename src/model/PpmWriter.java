@@ -0,0 +1,221 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a PPM file one row at a time through a fixed size buffer. Rows are given as the
+ * integer samples written to the file, which {@link #toSample(double, int)} computes from a
+ * sample of an image. Plain files get one sample per line, the way this program has always written
+ * them; raw files clamp each sample to the max value.
+ *
+ * <p>Plain samples from 0 to the max value are copied from a table of their digits built when
+ * the writer is created. Rows can also be encoded into byte arrays with
+ * {@link #encode(int[], int, int, byte[], int)}, which any number of threads may call at once,
+ * and the arrays written in order with {@link #write(ByteBuffer)}.</p>
+ */
+class PpmWriter implements Closeable {
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final byte[] LINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+  private static final int MAX_TABLE = 0xFFFF;
+  private static final int MAX_DIGITS = 11;
+  private static final double ROUNDING_ERROR = 1e-9;
+
+  private final FileChannel channel;
+  private final PpmFormat format;
+  private final int maxValue;
+  private final boolean wide;
+  private final ByteBuffer buffer;
+  private final byte[] digits;
+  private final int[] starts;
+
+  /**
+   * Creates or replaces a file and writes its header.
+   *
+   * @param file - the file
+   * @param format - the encoding to write
+   * @param width - width of the image
+   * @param height - height of the image
+   * @param maxValue - the max value written to the header
+   * @throws IOException if the file cannot be written
+   * @throws IllegalArgumentException if the max value cannot be written in a P6 file
+   */
+  PpmWriter(Path file, PpmFormat format, int width, int height, int maxValue)
+          throws IOException, IllegalArgumentException {
+    if (format == PpmFormat.P6 && (maxValue <= 0 || maxValue > 0xFFFF)) {
+      throw new IllegalArgumentException("P6 files need a max value from 1 to 65535, not "
+              + maxValue);
+    }
+    this.format = format;
+    this.maxValue = maxValue;
+    this.wide = maxValue > 0xFF;
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    if (format == PpmFormat.P3) {
+      int size = Math.min(Math.max(maxValue, 0xFF), MAX_TABLE) + 1;
+      this.starts = new int[size + 1];
+      StringBuilder text = new StringBuilder();
+      for (int v = 0; v < size; v++) {
+        this.starts[v] = text.length();
+        text.append(v).append(System.lineSeparator());
+      }
+      this.starts[size] = text.length();
+      this.digits = text.toString().getBytes(StandardCharsets.US_ASCII);
+    } else {
+      this.starts = null;
+      this.digits = null;
+    }
+    this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    this.buffer.put((format + "\n" + width + " " + height + "\n" + maxValue + "\n")
+            .getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Computes the integer written to a file for a sample of an image, truncating the scaled
+   * sample. A scaled sample less than a billionth below the integer i is written as i, so a
+   * sample read from i, or computed from integers adding up to i, is not written as i - 1 where
+   * the floating point arithmetic lands just below i.
+   *
+   * @param value - the sample, where 1 stands for the max value
+   * @param maxValue - the max value of the image
+   * @return the integer sample
+   */
+  static int toSample(double value, int maxValue) {
+    double scaled = value * maxValue;
+    int sample = (int) scaled;
+    if (scaled - sample > 1 - ROUNDING_ERROR) {
+      sample++;
+    }
+    return sample;
+  }
+
+  /**
+   * Writes one row of samples.
+   *
+   * @param samples - buffer of interleaved integer r, g, b samples
+   * @param offset - index of the red sample of the first pixel
+   * @param count - number of samples to write
+   * @throws IOException if the file cannot be written
+   */
+  void writeRow(int[] samples, int offset, int count) throws IOException {
+    int end = offset + count;
+    for (int i = offset; i < end; i++) {
+      if (this.buffer.remaining() < MAX_DIGITS + 1 + LINE.length) {
+        this.drain();
+      }
+      int sample = samples[i];
+      if (this.format == PpmFormat.P3) {
+        if (sample >= 0 && sample < this.starts.length - 1) {
+          this.buffer.put(this.digits, this.starts[sample],
+                  this.starts[sample + 1] - this.starts[sample]);
+        } else {
+          this.buffer.put(Integer.toString(sample).getBytes(StandardCharsets.US_ASCII));
+          this.buffer.put(LINE);
+        }
+      } else {
+        sample = Math.max(0, Math.min(this.maxValue, sample));
+        if (this.wide) {
+          this.buffer.putShort((short) sample);
+        } else {
+          this.buffer.put((byte) sample);
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes how many bytes {@link #encode(int[], int, int, byte[], int)} may need for a number
+   * of plain samples.
+   *
+   * @param count - number of samples
+   * @return the largest size of the encoded samples
+   */
+  static long maxEncodedBytes(int count) {
+    return (long) count * (MAX_DIGITS + LINE.length);
+  }
+
+  /**
+   * Encodes plain samples into a byte array exactly as {@link #writeRow(int[], int, int)} writes
+   * them. The writer is not changed, so threads may encode different rows at the same time.
+   *
+   * @param samples - buffer of interleaved integer r, g, b samples
+   * @param offset - index of the first sample
+   * @param count - number of samples to encode
+   * @param dest - the array written to, with room for {@link #maxEncodedBytes(int)} bytes
+   * @param pos - index of the first byte written
+   * @return index after the last byte written
+   * @throws IllegalStateException if the writer does not write a plain file
+   */
+  int encode(int[] samples, int offset, int count, byte[] dest, int pos)
+          throws IllegalStateException {
+    if (this.format != PpmFormat.P3) {
+      throw new IllegalStateException("Only plain samples can be encoded ahead");
+    }
+    int[] starts = this.starts;
+    int tableSize = starts.length - 1;
+    int end = offset + count;
+    for (int i = offset; i < end; i++) {
+      int sample = samples[i];
+      if (sample >= 0 && sample < tableSize) {
+        int from = starts[sample];
+        int length = starts[sample + 1] - from;
+        System.arraycopy(this.digits, from, dest, pos, length);
+        pos += length;
+      } else {
+        byte[] text = Integer.toString(sample).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(text, 0, dest, pos, text.length);
+        pos += text.length;
+        System.arraycopy(LINE, 0, dest, pos, LINE.length);
+        pos += LINE.length;
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * Writes bytes already encoded by {@link #encode(int[], int, int, byte[], int)}.
+   *
+   * @param encoded - the encoded samples, from its position to its limit
+   * @throws IOException if the file cannot be written
+   */
+  void write(ByteBuffer encoded) throws IOException {
+    if (encoded.remaining() <= this.buffer.remaining()) {
+      this.buffer.put(encoded);
+      return;
+    }
+    this.drain();
+    while (encoded.hasRemaining()) {
+      this.channel.write(encoded);
+    }
+  }
+
+  /**
+   * Writes whatever is still buffered and closes the file.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.drain();
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  /**
+   * Writes everything in the buffer to the file and clears the buffer.
+   */
+  private void drain() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+}
@@ -0,0 +1,145 @@
+package model;
+
+/**
+ * Represents a view of another image with its coordinates remapped, such as a flip. A view
+ * copies no pixels: every read is redirected to the source. Views of views collapse into a
+ * single view of the original source, and a remap that cancels out returns the source itself.
+ */
+public class RemappedImage implements Image {
+  private final Image source;
+  private final PixelMap map;
+  private final ThreadLocal<double[]> scratch;
+
+  private RemappedImage(Image source, PixelMap map) {
+    this.source = source;
+    this.map = map;
+    this.scratch = ThreadLocal.withInitial(() -> new double[source.getWidth() * 3]);
+  }
+
+  /**
+   * Creates a view of an image remapped by the given map.
+   *
+   * @param source - the image pixels are read from
+   * @param map - where each pixel of the view is read from in the source
+   * @return a view of the source, or the source itself if the remap has no effect
+   * @throws IllegalArgumentException if the source or map is null
+   */
+  public static Image of(Image source, PixelMap map) throws IllegalArgumentException {
+    if (source == null || map == null) {
+      throw new IllegalArgumentException("Source and map cannot be null");
+    }
+    if (source instanceof RemappedImage) {
+      RemappedImage view = (RemappedImage) source;
+      return RemappedImage.of(view.source, view.map.then(map));
+    }
+    if (map.isIdentity()) {
+      return source;
+    }
+    return new RemappedImage(source, map);
+  }
+
+  /**
+   * Retrieves the image this view reads from.
+   *
+   * @return the source image
+   */
+  public Image getSource() {
+    return this.source;
+  }
+
+  /**
+   * Retrieves where each pixel of this view is read from in the source.
+   *
+   * @return the map
+   */
+  public PixelMap getMap() {
+    return this.map;
+  }
+
+  /**
+   * Copies this view into a dense image.
+   *
+   * @param executor - the engine used to copy the pixels
+   * @return a packed copy of this view
+   */
+  public PackedImage materialize(ImageExecutor executor) {
+    return executor.apply(this.source, this.map, PixelKernel.IDENTITY);
+  }
+
+  /**
+   * Retrieves a pixel with a given row and column.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @return the RGB value of the remapped source pixel
+   */
+  @Override
+  public double[] getPixel(int r, int c) {
+    return this.source.getPixel(this.map.sourceRow(r), this.map.sourceCol(c));
+  }
+
+  /**
+   * Retrieves one color sample of a pixel.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @return the value of the remapped source sample
+   */
+  @Override
+  public double getSample(int r, int c, int channel) {
+    return this.source.getSample(this.map.sourceRow(r), this.map.sourceCol(c), channel);
+  }
+
+  /**
+   * Copies a whole row into a caller supplied buffer as interleaved r, g, b samples.
+   *
+   * @param r - row number
+   * @param dest - the buffer to fill
+   * @param offset - index in the buffer of the first sample
+   */
+  @Override
+  public void getRow(int r, double[] dest, int offset) {
+    if (this.map.preservesColumns()) {
+      this.source.getRow(this.map.sourceRow(r), dest, offset);
+      return;
+    }
+    double[] in = this.scratch.get();
+    this.source.getRow(this.map.sourceRow(r), in, 0);
+    for (int c = 0; c < this.getWidth(); c++) {
+      int k = this.map.sourceCol(c) * 3;
+      int j = offset + c * 3;
+      dest[j] = in[k];
+      dest[j + 1] = in[k + 1];
+      dest[j + 2] = in[k + 2];
+    }
+  }
+
+  /**
+   * Retrieves the image's max color value.
+   */
+  @Override
+  public int getMaximumValue() {
+    return this.source.getMaximumValue();
+  }
+
+  /**
+   * Retrieves the width of this image.
+   *
+   * @return the number of pixels in the width
+   */
+  @Override
+  public int getWidth() {
+    return this.source.getWidth();
+  }
+
+  /**
+   * Retrieves the height of this image.
+   *
+   * @return the number of pixels in the height
+   */
+  @Override
+  public int getHeight() {
+    return this.source.getHeight();
+  }
+}
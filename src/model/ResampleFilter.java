@@ -0,0 +1,104 @@
+package model;
+
+/**
+ * Represents the filters an image can be resampled with, from the fastest to the sharpest.
+ */
+public enum ResampleFilter {
+  /**
+   * Takes the source pixel closest to the centre of each destination pixel.
+   */
+  NEAREST("nearest", 0.5),
+
+  /**
+   * Interpolates linearly between the two closest source pixels on each axis.
+   */
+  BILINEAR("bilinear", 1),
+
+  /**
+   * Interpolates with a cubic convolution over the four closest source pixels on each axis.
+   */
+  BICUBIC("bicubic", 2),
+
+  /**
+   * Interpolates with a three lobed Lanczos window over the six closest source pixels on each
+   * axis.
+   */
+  LANCZOS("lanczos", 3);
+
+  private static final double CUBIC_A = -0.5;
+
+  private final String name;
+  private final double support;
+
+  ResampleFilter(String name, double support) {
+    this.name = name;
+    this.support = support;
+  }
+
+  /**
+   * Finds a filter by the name used in commands.
+   *
+   * @param name - nearest, bilinear, bicubic or lanczos, in any case
+   * @return the filter
+   * @throws IllegalArgumentException if there is no filter with the name
+   */
+  public static ResampleFilter fromName(String name) throws IllegalArgumentException {
+    for (ResampleFilter f : ResampleFilter.values()) {
+      if (f.name.equalsIgnoreCase(name)) {
+        return f;
+      }
+    }
+    throw new IllegalArgumentException(name + " is not nearest, bilinear, bicubic or lanczos");
+  }
+
+  /**
+   * Retrieves the name used in commands.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Retrieves how far from a pixel the filter reaches, in source pixels when upscaling.
+   *
+   * @return the radius of the filter
+   */
+  double getSupport() {
+    return this.support;
+  }
+
+  /**
+   * Computes the weight of a source pixel at a distance from the centre of the filter.
+   *
+   * @param x - the distance, in source pixels when upscaling
+   * @return the weight, which may be negative
+   */
+  double weight(double x) {
+    x = Math.abs(x);
+    switch (this) {
+      case NEAREST:
+        return x < 0.5 ? 1 : 0;
+      case BILINEAR:
+        return x < 1 ? 1 - x : 0;
+      case BICUBIC:
+        if (x < 1) {
+          return ((CUBIC_A + 2) * x - (CUBIC_A + 3)) * x * x + 1;
+        }
+        if (x < 2) {
+          return (((x - 5) * x + 8) * x - 4) * CUBIC_A;
+        }
+        return 0;
+      default:
+        if (x == 0) {
+          return 1;
+        }
+        if (x >= 3) {
+          return 0;
+        }
+        double px = Math.PI * x;
+        return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+    }
+  }
+}
@@ -0,0 +1,293 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Resizes an image with a {@link ResampleFilter} in two separable passes: every source row is
+ * resampled horizontally into intermediate rows that are as wide as the result, and then every
+ * column of the intermediate rows is resampled vertically. The weights of each pass are
+ * computed once per axis, since they are the same for every row or column. When downscaling,
+ * filters are widened by the scale factor so that every source pixel contributes to the result.
+ *
+ * <p>The result is computed in chunks of rows, and only the source rows the taps of a chunk
+ * reach are passed horizontally for it, so the intermediate rows never cover the whole source.
+ * Chunks are at least {@link #HALO_SHARE} times as tall as the rows their taps share with the
+ * next chunk, which keeps the horizontal work done twice to a fraction of it.</p>
+ *
+ * <p>Downscales by a factor of {@link #REDUCE_GAP} or more first average blocks of pixels
+ * together, down to about twice the final size on each axis, so that the filter runs over a
+ * small image instead of the whole source. Results are clamped between 0 and 1, and both the
+ * averaged blocks and the result are stored at the depth the executor chooses for the
+ * source.</p>
+ */
+final class Resampler {
+  static final int REDUCE_GAP = 3;
+  static final int HALO_SHARE = 4;
+
+  private Resampler() {
+  }
+
+  /**
+   * Resizes an image, running bands of rows on the executor's pool.
+   *
+   * @param src - the image read
+   * @param width - width of the result
+   * @param height - height of the result
+   * @param filter - the filter interpolating between source pixels
+   * @param executor - the engine that runs the bands
+   * @return the resized image
+   * @throws IllegalArgumentException if a dimension is not positive
+   */
+  static PackedImage apply(Image src, int width, int height, ResampleFilter filter,
+                           ImageExecutor executor) throws IllegalArgumentException {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Dimensions must be positive");
+    }
+    if (filter != ResampleFilter.NEAREST) {
+      int fx = src.getWidth() >= REDUCE_GAP * width ? src.getWidth() / (width * 2) : 1;
+      int fy = src.getHeight() >= REDUCE_GAP * height ? src.getHeight() / (height * 2) : 1;
+      if (fx > 1 || fy > 1) {
+        src = Resampler.reduce(src, fx, fy, executor);
+      }
+    }
+    Weights horizontal = new Weights(src.getWidth(), width, filter);
+    Weights vertical = new Weights(src.getHeight(), height, filter);
+    Image source = src;
+    int sw = src.getWidth();
+
+    boolean[] used = vertical.usedInputs(src.getHeight());
+    int chunk = (int) Math.max(1, Math.ceil(HALO_SHARE * vertical.taps
+            * (double) height / src.getHeight()));
+    PackedImage dest = new PackedImage(width, height, src.getMaximumValue(),
+            executor.resultDepth(src), PixelLayout.INTERLEAVED);
+    executor.forEachBand(height, width * vertical.taps, chunk, (top, bottom) -> {
+      double[] row = new double[sw * 3];
+      double[] out = new double[width * 3];
+      double[] mid = null;
+      for (int y0 = top; y0 < bottom; y0 += chunk) {
+        int y1 = Math.min(bottom, y0 + chunk);
+        int first = vertical.starts[y0];
+        int last = vertical.starts[y1 - 1] + vertical.taps;
+        if (mid == null || mid.length < (last - first) * width * 3) {
+          mid = new double[(last - first) * width * 3];
+        }
+        for (int r = first; r < last; r++) {
+          if (used[r]) {
+            source.getRow(r, row, 0);
+            horizontal.resample(row, 3, mid, (r - first) * width * 3, 3, width);
+          }
+        }
+        for (int y = y0; y < y1; y++) {
+          vertical.resampleRows(mid, width * 3, first, y, out);
+          for (int k = 0; k < out.length; k++) {
+            out[k] = Math.max(0, Math.min(1, out[k]));
+          }
+          dest.storeRegion(y, 0, 1, width, out, 0);
+        }
+      }
+    });
+    return dest;
+  }
+
+  /**
+   * Averages blocks of pixels together. Blocks at the right and bottom edges may be smaller.
+   * Integer sources are summed as raw samples, without converting every sample to a double.
+   */
+  private static PackedImage reduce(Image src, int fx, int fy, ImageExecutor executor) {
+    int sw = src.getWidth();
+    int sh = src.getHeight();
+    int w = (sw + fx - 1) / fx;
+    int h = (sh + fy - 1) / fy;
+    boolean raw = src instanceof PackedImage && ((PackedImage) src).getDepth().isInteger();
+    double scale = raw ? src.getMaximumValue() : 1;
+    PackedImage dest = new PackedImage(w, h, src.getMaximumValue(), executor.resultDepth(src),
+            PixelLayout.INTERLEAVED);
+    executor.forEachBand(h, sw * fy, (top, bottom) -> {
+      int[] ints = raw ? new int[sw * 3] : null;
+      double[] row = raw ? null : new double[sw * 3];
+      double[] sum = new double[w * 3];
+      for (int y = top; y < bottom; y++) {
+        Arrays.fill(sum, 0);
+        int r1 = Math.min(sh, (y + 1) * fy);
+        for (int r = y * fy; r < r1; r++) {
+          if (raw) {
+            ((PackedImage) src).getRawRow(r, ints, 0);
+            Resampler.sumBlocks(ints, sw, fx, sum);
+          } else {
+            src.getRow(r, row, 0);
+            Resampler.sumBlocks(row, sw, fx, sum);
+          }
+        }
+        int rows = r1 - y * fy;
+        for (int x = 0; x < w; x++) {
+          double n = rows * (Math.min(sw, (x + 1) * fx) - x * fx) * scale;
+          sum[x * 3] /= n;
+          sum[x * 3 + 1] /= n;
+          sum[x * 3 + 2] /= n;
+        }
+        dest.storeRegion(y, 0, 1, w, sum, 0);
+      }
+    });
+    return dest;
+  }
+
+  /**
+   * Adds the raw samples of every block of a row to the sums of the blocks.
+   */
+  private static void sumBlocks(int[] row, int sw, int fx, double[] sum) {
+    for (int x = 0, c = 0; c < sw * 3; x++) {
+      int c1 = Math.min(sw, (x + 1) * fx) * 3;
+      long s0 = 0;
+      long s1 = 0;
+      long s2 = 0;
+      for (; c < c1; c += 3) {
+        s0 += row[c];
+        s1 += row[c + 1];
+        s2 += row[c + 2];
+      }
+      sum[x * 3] += s0;
+      sum[x * 3 + 1] += s1;
+      sum[x * 3 + 2] += s2;
+    }
+  }
+
+  /**
+   * Adds the samples of every block of a row to the sums of the blocks.
+   */
+  private static void sumBlocks(double[] row, int sw, int fx, double[] sum) {
+    for (int x = 0, c = 0; c < sw * 3; x++) {
+      int c1 = Math.min(sw, (x + 1) * fx) * 3;
+      double s0 = 0;
+      double s1 = 0;
+      double s2 = 0;
+      for (; c < c1; c += 3) {
+        s0 += row[c];
+        s1 += row[c + 1];
+        s2 += row[c + 2];
+      }
+      sum[x * 3] += s0;
+      sum[x * 3 + 1] += s1;
+      sum[x * 3 + 2] += s2;
+    }
+  }
+
+  /**
+   * Represents the source pixels and weights that make up every destination pixel along one
+   * axis. Every destination pixel reads the same number of taps, starting at its own first
+   * source pixel, with zero weights past the edges of its window.
+   */
+  private static final class Weights {
+    private final int[] starts;
+    private final double[] weights;
+    private final int taps;
+
+    Weights(int in, int out, ResampleFilter filter) {
+      double scale = (double) in / out;
+      this.starts = new int[out];
+      if (filter == ResampleFilter.NEAREST) {
+        this.taps = 1;
+        this.weights = new double[out];
+        for (int i = 0; i < out; i++) {
+          this.starts[i] = Math.min(in - 1, (int) ((i + 0.5) * scale));
+          this.weights[i] = 1;
+        }
+        return;
+      }
+      double filterScale = Math.max(1, scale);
+      double support = filter.getSupport() * filterScale;
+      this.taps = Math.min(in, (int) Math.ceil(support) * 2 + 1);
+      this.weights = new double[out * this.taps];
+      for (int i = 0; i < out; i++) {
+        double center = (i + 0.5) * scale;
+        int min = Math.max(0, (int) (center - support + 0.5));
+        int max = Math.min(in, (int) (center + support + 0.5));
+        min = Math.max(0, Math.min(min, in - this.taps));
+        max = Math.min(max, min + this.taps);
+        double total = 0;
+        for (int x = min; x < max; x++) {
+          double wt = filter.weight((x - center + 0.5) / filterScale);
+          this.weights[i * this.taps + x - min] = wt;
+          total += wt;
+        }
+        if (total != 0) {
+          for (int t = 0; t < this.taps; t++) {
+            this.weights[i * this.taps + t] /= total;
+          }
+        }
+        this.starts[i] = min;
+      }
+    }
+
+    /**
+     * Marks the source pixels that some destination pixel reads with a weight other than zero.
+     *
+     * @param in - the number of source pixels
+     * @return whether each source pixel is read
+     */
+    boolean[] usedInputs(int in) {
+      boolean[] used = new boolean[in];
+      for (int i = 0; i < this.starts.length; i++) {
+        for (int t = 0; t < this.taps; t++) {
+          if (this.weights[i * this.taps + t] != 0) {
+            used[this.starts[i] + t] = true;
+          }
+        }
+      }
+      return used;
+    }
+
+    /**
+     * Resamples interleaved pixels along a row.
+     *
+     * @param src - the source pixels
+     * @param srcStep - the distance between pixels in the source
+     * @param dest - the destination pixels
+     * @param off - index of the first destination sample
+     * @param destStep - the distance between pixels in the destination
+     * @param out - the number of destination pixels
+     */
+    void resample(double[] src, int srcStep, double[] dest, int off, int destStep, int out) {
+      int taps = this.taps;
+      for (int i = 0; i < out; i++) {
+        double s0 = 0;
+        double s1 = 0;
+        double s2 = 0;
+        int k = this.starts[i] * srcStep;
+        int wi = i * taps;
+        for (int t = 0; t < taps; t++, k += srcStep) {
+          double wt = this.weights[wi + t];
+          s0 += src[k] * wt;
+          s1 += src[k + 1] * wt;
+          s2 += src[k + 2] * wt;
+        }
+        int o = off + i * destStep;
+        dest[o] = s0;
+        dest[o + 1] = s1;
+        dest[o + 2] = s2;
+      }
+    }
+
+    /**
+     * Computes one destination row as the weighted sum of whole rows of a buffer.
+     *
+     * @param src - the source rows, one after another
+     * @param stride - the number of samples in a row
+     * @param first - the source row at the start of the buffer
+     * @param y - the destination row
+     * @param out - receives the row
+     */
+    void resampleRows(double[] src, int stride, int first, int y, double[] out) {
+      Arrays.fill(out, 0);
+      int base = (this.starts[y] - first) * stride;
+      for (int t = 0; t < this.taps; t++, base += stride) {
+        double wt = this.weights[y * this.taps + t];
+        if (wt == 0) {
+          continue;
+        }
+        for (int k = 0; k < stride; k++) {
+          out[k] += src[base + k] * wt;
+        }
+      }
+    }
+  }
+}
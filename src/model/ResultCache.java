@@ -0,0 +1,335 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Stores operation results under keys made from the content hash of their input and a
+ * description of the operation, so repeating an operation on identical pixels is served without
+ * recomputing it. Results are kept in memory within a byte budget, least recently used first
+ * out. With a folder for the disk tier, results evicted from memory are written there and kept
+ * within a second budget, and results found there by a later run are read back.
+ *
+ * <p>Results must not be changed after they are stored. Input hashes are remembered for as long
+ * as the input image is reachable, so inputs must not be changed either.</p>
+ */
+public class ResultCache {
+  private static final String SUFFIX = ".img";
+
+  private final long memoryBudget;
+  private final Path diskDir;
+  private final long diskBudget;
+  private final LinkedHashMap<String, Image> memory;
+  private final LinkedHashMap<String, Long> disk;
+  private final Map<Image, String> hashes;
+  private long memoryBytes;
+  private long diskBytes;
+  private long hits;
+  private long diskHits;
+  private long misses;
+  private long bytesSaved;
+
+  /**
+   * Constructs a cache held only in memory.
+   *
+   * @param memoryBudget - the byte budget of results kept in memory
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  public ResultCache(long memoryBudget) throws IllegalArgumentException {
+    this(memoryBudget, null, 0);
+  }
+
+  /**
+   * Constructs a cache that moves results evicted from memory into a folder. Results already
+   * in the folder, written by an earlier cache, are used as well.
+   *
+   * @param memoryBudget - the byte budget of results kept in memory
+   * @param diskDir - the folder of the disk tier, created if it does not exist, or null for none
+   * @param diskBudget - the byte budget of the files in the folder
+   * @throws IllegalArgumentException if a budget is negative or the folder cannot be used
+   */
+  public ResultCache(long memoryBudget, Path diskDir, long diskBudget)
+          throws IllegalArgumentException {
+    if (memoryBudget < 0 || diskBudget < 0) {
+      throw new IllegalArgumentException("Budgets cannot be negative");
+    }
+    this.memoryBudget = memoryBudget;
+    this.diskDir = diskDir;
+    this.diskBudget = diskBudget;
+    this.memory = new LinkedHashMap<String, Image>(16, 0.75f, true);
+    this.disk = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    this.hashes = new WeakHashMap<Image, String>();
+    if (diskDir != null) {
+      this.index();
+    }
+  }
+
+  /**
+   * Builds the key of an operation on an image. The image's content hash is computed once and
+   * remembered while the image is reachable. Letters and digits of the operation are kept and
+   * every other character is escaped, so different operations never share a key and the key
+   * can be used as a file name.
+   *
+   * @param input - the image the operation reads
+   * @param operation - the operation and its parameters, such as "brighten 10"
+   * @return the key
+   */
+  public String key(Image input, String operation) {
+    String hash;
+    synchronized (this) {
+      hash = this.hashes.get(input);
+    }
+    if (hash == null) {
+      hash = ContentHash.of(input);
+      synchronized (this) {
+        this.hashes.put(input, hash);
+      }
+    }
+    return hash + "-" + ResultCache.escape(operation);
+  }
+
+  /**
+   * Replaces every character other than an ASCII letter or digit by an underscore followed by
+   * its four digit hexadecimal code.
+   */
+  private static String escape(String operation) {
+    StringBuilder s = new StringBuilder();
+    for (int i = 0; i < operation.length(); i++) {
+      char ch = operation.charAt(i);
+      if (ch < 0x80 && Character.isLetterOrDigit(ch)) {
+        s.append(ch);
+      } else {
+        s.append(String.format("_%04x", (int) ch));
+      }
+    }
+    return s.toString();
+  }
+
+  /**
+   * Retrieves a stored result, reading it back from the disk tier if it is not in memory.
+   *
+   * @param key - the key from {@link #key(Image, String)}
+   * @return the result, or null if it is not stored
+   */
+  public synchronized Image get(String key) {
+    Image image = this.memory.get(key);
+    if (image != null) {
+      this.hits++;
+      this.bytesSaved += ResultCache.resultBytes(image);
+      return image;
+    }
+    if (this.disk.containsKey(key)) {
+      try {
+        image = ImageRegistry.read(this.diskDir.resolve(key + SUFFIX));
+      } catch (IOException e) {
+        this.forget(key);
+        image = null;
+      }
+      if (image != null) {
+        this.diskHits++;
+        this.bytesSaved += ResultCache.resultBytes(image);
+        this.remember(key, image);
+        return image;
+      }
+    }
+    this.misses++;
+    return null;
+  }
+
+  /**
+   * Stores a result, evicting least recently used results if the memory tier is over budget.
+   *
+   * @param key - the key from {@link #key(Image, String)}
+   * @param result - the result
+   * @throws IllegalArgumentException if the key or result is null
+   */
+  public synchronized void put(String key, Image result) throws IllegalArgumentException {
+    if (key == null || result == null) {
+      throw new IllegalArgumentException("Key and result cannot be null");
+    }
+    this.remember(key, result);
+  }
+
+  /**
+   * Retrieves the number of lookups served from memory.
+   *
+   * @return the memory hit count
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Retrieves the number of lookups served from the disk tier.
+   *
+   * @return the disk hit count
+   */
+  public synchronized long getDiskHits() {
+    return this.diskHits;
+  }
+
+  /**
+   * Retrieves the number of lookups that found nothing.
+   *
+   * @return the miss count
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Retrieves the share of lookups served from either tier.
+   *
+   * @return the hit rate between 0 and 1, or 0 before the first lookup
+   */
+  public synchronized double getHitRate() {
+    long lookups = this.hits + this.diskHits + this.misses;
+    return lookups == 0 ? 0 : (double) (this.hits + this.diskHits) / lookups;
+  }
+
+  /**
+   * Retrieves the size of the results served from the cache instead of being computed, counted
+   * as the buffers the operations would have produced.
+   *
+   * @return the bytes saved
+   */
+  public synchronized long getBytesSaved() {
+    return this.bytesSaved;
+  }
+
+  /**
+   * Retrieves the estimated heap size of the results held in memory.
+   *
+   * @return the memory tier size in bytes
+   */
+  public synchronized long getMemoryBytes() {
+    return this.memoryBytes;
+  }
+
+  /**
+   * Retrieves the size of the files of the disk tier.
+   *
+   * @return the disk tier size in bytes
+   */
+  public synchronized long getDiskBytes() {
+    return this.diskBytes;
+  }
+
+  /**
+   * Describes the hits, misses and savings of this cache.
+   *
+   * @return a one line summary
+   */
+  public synchronized String summary() {
+    return String.format("Result cache: %d hits (%d from disk), %d misses, %.1f%% hit rate, "
+                    + "%.1f MB saved, %.1f MB in memory, %.1f MB on disk",
+            this.hits + this.diskHits, this.diskHits, this.misses, this.getHitRate() * 100,
+            this.bytesSaved / 1e6, this.memoryBytes / 1e6, this.diskBytes / 1e6);
+  }
+
+  /**
+   * Puts a result in memory and evicts least recently used results until within budget.
+   */
+  private void remember(String key, Image image) {
+    Image old = this.memory.put(key, image);
+    if (old != null) {
+      this.memoryBytes -= ImageRegistry.estimateBytes(old);
+    }
+    this.memoryBytes += ImageRegistry.estimateBytes(image);
+    Iterator<Map.Entry<String, Image>> it = this.memory.entrySet().iterator();
+    while (this.memoryBytes > this.memoryBudget && it.hasNext()) {
+      Map.Entry<String, Image> next = it.next();
+      if (next.getKey().equals(key)) {
+        continue;
+      }
+      this.memoryBytes -= ImageRegistry.estimateBytes(next.getValue());
+      this.demote(next.getKey(), next.getValue());
+      it.remove();
+    }
+  }
+
+  /**
+   * Writes a result evicted from memory to the disk tier, if there is one and it is not there
+   * already, then evicts least recently used files until within budget.
+   */
+  private void demote(String key, Image image) {
+    if (this.diskDir == null || this.disk.containsKey(key)) {
+      return;
+    }
+    Path file = this.diskDir.resolve(key + SUFFIX);
+    try {
+      ImageRegistry.write(image, file);
+      long size = Files.size(file);
+      this.disk.put(key, size);
+      this.diskBytes += size;
+    } catch (IOException e) {
+      // the result is simply not kept; it will be computed again when needed
+      return;
+    }
+    Iterator<Map.Entry<String, Long>> it = this.disk.entrySet().iterator();
+    while (this.diskBytes > this.diskBudget && it.hasNext()) {
+      Map.Entry<String, Long> next = it.next();
+      it.remove();
+      this.diskBytes -= next.getValue();
+      try {
+        Files.deleteIfExists(this.diskDir.resolve(next.getKey() + SUFFIX));
+      } catch (IOException e) {
+        // the file no longer counts against the budget and is overwritten if it comes back
+      }
+    }
+  }
+
+  /**
+   * Drops a file of the disk tier that could not be read.
+   */
+  private void forget(String key) {
+    Long size = this.disk.remove(key);
+    if (size != null) {
+      this.diskBytes -= size;
+    }
+  }
+
+  /**
+   * Lists the results already in the disk folder, least recently modified first.
+   */
+  private void index() throws IllegalArgumentException {
+    List<Path> files = new ArrayList<Path>();
+    try {
+      Files.createDirectories(this.diskDir);
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.diskDir, "*" + SUFFIX)) {
+        for (Path p : stream) {
+          files.add(p);
+        }
+      }
+      files.sort(Comparator.comparing(p -> p.toFile().lastModified()));
+      for (Path p : files) {
+        String name = p.getFileName().toString();
+        long size = Files.size(p);
+        this.disk.put(name.substring(0, name.length() - SUFFIX.length()), size);
+        this.diskBytes += size;
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Cache folder cannot be used: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Retrieves the size of the buffer an operation produced for a result, taking results that
+   * are not packed as double precision.
+   */
+  private static long resultBytes(Image image) {
+    if (image instanceof PackedImage) {
+      return ((PackedImage) image).getByteSize();
+    }
+    return (long) image.getWidth() * image.getHeight() * 3 * Double.BYTES;
+  }
+}
@@ -0,0 +1,90 @@
+package model;
+
+/**
+ * Represents point operations run one after another over the stored samples of an integer
+ * image, computing each operation the way an executor keeping integer results stores it.
+ * Running a chain over a row therefore gives the same samples as storing the result of every
+ * operation before running the next one, without holding any of the intermediate images.
+ *
+ * <p>Lookup kernels that can run in fixed point use their fixed-point tables. Every other
+ * operation is applied to the samples divided by the max value, from floating point tables for
+ * lookup kernels when asked to, and its result is stored as
+ * {@link PpmWriter#toSample(double, int)} computes it, clamped to the samples the depth can
+ * hold.</p>
+ */
+final class SampleChain {
+  private final PixelKernel[] kernels;
+  private final LookupKernel.FixedTable[] fixed;
+  private final LookupKernel.Table[] tables;
+  private final int maxValue;
+  private final int top;
+
+  /**
+   * Constructs a chain for samples of an integer depth.
+   *
+   * @param kernels - the operations, applied in order
+   * @param depth - the integer depth of the source and of every result
+   * @param maxValue - the max value of the source and of every result
+   * @param tables - whether lookup kernels that cannot run in fixed point are compiled into
+   *               floating point tables, which pays off once an image has more samples than
+   *               the tables have entries
+   */
+  SampleChain(PixelKernel[] kernels, SampleDepth depth, int maxValue, boolean tables) {
+    this.kernels = kernels.clone();
+    this.fixed = new LookupKernel.FixedTable[kernels.length];
+    this.tables = new LookupKernel.Table[kernels.length];
+    for (int i = 0; i < kernels.length; i++) {
+      if (kernels[i] instanceof LookupKernel) {
+        LookupKernel lookup = (LookupKernel) kernels[i];
+        if (lookup.isFixedPoint()) {
+          this.fixed[i] = lookup.compileFixed(depth, maxValue);
+        } else if (tables) {
+          this.tables[i] = lookup.compile(depth, maxValue);
+        }
+      }
+    }
+    this.maxValue = maxValue;
+    this.top = depth.getMaxSample();
+  }
+
+  /**
+   * Transforms interleaved stored samples in place.
+   *
+   * @param samples - buffer of interleaved stored r, g, b samples
+   * @param offset - index of the red sample of the first pixel
+   * @param count - number of pixels
+   * @param scratch - buffer of at least count * 3 samples, for the operations that are not
+   *                run in fixed point
+   */
+  void apply(int[] samples, int offset, int count, double[] scratch) {
+    int end = offset + count * 3;
+    double scale = this.maxValue;
+    for (int s = 0; s < this.kernels.length; s++) {
+      if (this.kernels[s] == PixelKernel.IDENTITY) {
+        continue;
+      }
+      if (this.fixed[s] != null) {
+        for (int k = offset; k < end; k += 3) {
+          this.fixed[s].apply(samples, k, samples, k);
+        }
+        continue;
+      }
+      if (this.tables[s] != null) {
+        for (int k = offset; k < end; k += 3) {
+          this.tables[s].apply(samples, k, scratch, k - offset);
+        }
+      } else {
+        for (int k = offset; k < end; k++) {
+          scratch[k - offset] = samples[k] / scale;
+        }
+        for (int k = 0; k < count * 3; k += 3) {
+          this.kernels[s].apply(scratch, k);
+        }
+      }
+      for (int k = offset; k < end; k++) {
+        int sample = PpmWriter.toSample(scratch[k - offset], this.maxValue);
+        samples[k] = Math.max(0, Math.min(this.top, sample));
+      }
+    }
+  }
+}
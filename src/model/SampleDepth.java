@@ -0,0 +1,77 @@
+package model;
+
+/**
+ * Represents the primitive type used to store each color sample of a packed image.
+ */
+public enum SampleDepth {
+  /**
+   * Unsigned 8-bit integer samples, held in a byte array.
+   */
+  BYTE(1, 0xFF),
+
+  /**
+   * Unsigned 16-bit integer samples, held in a short array.
+   */
+  SHORT(2, 0xFFFF),
+
+  /**
+   * Single precision floating point samples, held in a float array.
+   */
+  FLOAT(4, Integer.MAX_VALUE),
+
+  /**
+   * Double precision floating point samples, held in a double array.
+   */
+  DOUBLE(8, Integer.MAX_VALUE);
+
+  private final int bytes;
+  private final int maxSample;
+
+  SampleDepth(int bytes, int maxSample) {
+    this.bytes = bytes;
+    this.maxSample = maxSample;
+  }
+
+  /**
+   * Retrieves the number of bytes used to store one sample.
+   *
+   * @return the size of one sample in bytes
+   */
+  public int getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Retrieves the largest integer sample this depth can hold exactly.
+   *
+   * @return the largest storable integer sample
+   */
+  public int getMaxSample() {
+    return this.maxSample;
+  }
+
+  /**
+   * Determines whether this depth stores integer samples.
+   *
+   * @return true if samples are stored as unsigned integers
+   */
+  public boolean isInteger() {
+    return this == BYTE || this == SHORT;
+  }
+
+  /**
+   * Retrieves the narrowest integer depth able to hold the given sample.
+   *
+   * @param sample - the largest sample that has to be stored
+   * @return BYTE or SHORT if either fits, otherwise DOUBLE
+   */
+  public static SampleDepth forMaxSample(int sample) {
+    if (sample <= BYTE.maxSample) {
+      return BYTE;
+    }
+    if (sample <= SHORT.maxSample) {
+      return SHORT;
+    }
+    return DOUBLE;
+  }
+}
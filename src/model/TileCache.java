@@ -0,0 +1,153 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores the tiles of image pyramids within a byte budget, least recently used first out. Tiles
+ * of a pyramid whose image was replaced are dropped at once.
+ */
+class TileCache {
+  private final long budget;
+  private final LinkedHashMap<Key, PackedImage> tiles;
+  private long bytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructs a cache.
+   *
+   * @param budget - the byte budget of the tiles kept
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  TileCache(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget cannot be negative");
+    }
+    this.budget = budget;
+    this.tiles = new LinkedHashMap<Key, PackedImage>(16, 0.75f, true);
+  }
+
+  /**
+   * Retrieves a tile.
+   *
+   * @param pyramid - the pyramid of the tile
+   * @param level - the level of the tile
+   * @param row - the row of the tile among the tiles of its level
+   * @param col - the column of the tile among the tiles of its level
+   * @return the tile, or null if it is not stored
+   */
+  synchronized PackedImage get(ImagePyramid pyramid, int level, int row, int col) {
+    PackedImage tile = this.tiles.get(new Key(pyramid, level, row, col));
+    if (tile == null) {
+      this.misses++;
+    } else {
+      this.hits++;
+    }
+    return tile;
+  }
+
+  /**
+   * Stores a tile, evicting least recently used tiles if the cache is over budget. Tiles of
+   * pyramids that were invalidated are not stored.
+   *
+   * @param pyramid - the pyramid of the tile
+   * @param level - the level of the tile
+   * @param row - the row of the tile among the tiles of its level
+   * @param col - the column of the tile among the tiles of its level
+   * @param tile - the tile
+   */
+  synchronized void put(ImagePyramid pyramid, int level, int row, int col, PackedImage tile) {
+    if (!pyramid.isValid()) {
+      return;
+    }
+    PackedImage old = this.tiles.put(new Key(pyramid, level, row, col), tile);
+    if (old != null) {
+      this.bytes -= old.getByteSize();
+    }
+    this.bytes += tile.getByteSize();
+    Iterator<PackedImage> it = this.tiles.values().iterator();
+    while (this.bytes > this.budget && it.hasNext()) {
+      this.bytes -= it.next().getByteSize();
+      it.remove();
+    }
+  }
+
+  /**
+   * Marks a pyramid invalid and drops all of its tiles.
+   *
+   * @param pyramid - the pyramid
+   */
+  synchronized void invalidate(ImagePyramid pyramid) {
+    pyramid.markInvalid();
+    Iterator<Map.Entry<Key, PackedImage>> it = this.tiles.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Key, PackedImage> e = it.next();
+      if (e.getKey().pyramid == pyramid) {
+        this.bytes -= e.getValue().getByteSize();
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Retrieves the number of tiles found in the cache.
+   *
+   * @return the hit count
+   */
+  synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Retrieves the number of tiles that had to be computed.
+   *
+   * @return the miss count
+   */
+  synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Retrieves the size of the tiles kept.
+   *
+   * @return the bytes of tiles in the cache
+   */
+  synchronized long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Identifies a tile of a pyramid.
+   */
+  private static final class Key {
+    private final ImagePyramid pyramid;
+    private final int level;
+    private final int row;
+    private final int col;
+
+    Key(ImagePyramid pyramid, int level, int row, int col) {
+      this.pyramid = pyramid;
+      this.level = level;
+      this.row = row;
+      this.col = col;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) o;
+      return this.pyramid == k.pyramid && this.level == k.level && this.row == k.row
+              && this.col == k.col;
+    }
+
+    @Override
+    public int hashCode() {
+      return ((System.identityHashCode(this.pyramid) * 31 + this.level) * 31 + this.row) * 31
+              + this.col;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package model;
+
+/**
+ * Represents an image whose pixels can be changed in place.
+ */
+public interface WritableImage extends Image {
+  /**
+   * Sets one color sample of a pixel.
+   *
+   * @param r - row number
+   * @param c - column number
+   * @param channel - color channel, 0 for red, 1 for green and 2 for blue
+   * @param value - the value of the sample
+   */
+  void setSample(int r, int c, int channel, double value);
+
+  /**
+   * Sets a whole row from a caller supplied buffer of interleaved r, g, b samples.
+   *
+   * @param r - row number
+   * @param src - the buffer to read, holding three samples per column
+   * @param offset - index in the buffer of the first sample
+   */
+  void setRow(int r, double[] src, int offset);
+
+  /**
+   * Sets a rectangular region from a caller supplied buffer of interleaved r, g, b samples,
+   * stored row after row.
+   *
+   * @param r - first row of the region
+   * @param c - first column of the region
+   * @param height - number of rows in the region
+   * @param width - number of columns in the region
+   * @param src - the buffer to read, holding three samples per pixel of the region
+   * @param offset - index in the buffer of the first sample
+   */
+  void setRegion(int r, int c, int height, int width, double[] src, int offset);
+}
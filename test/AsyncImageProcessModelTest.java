@@ -0,0 +1,168 @@
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.AsyncImageProcessModel;
+import model.Image;
+import model.ImageProcessOperations;
+import model.PpmFormat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testing for the asynchronous model.
+ */
+public class AsyncImageProcessModelTest {
+
+  @Test
+  public void testChainWithoutWaiting() throws FileNotFoundException {
+    ImageProcessOperations sync = new ImageProcessOperations();
+    try (AsyncImageProcessModel m = new AsyncImageProcessModel(new ImageProcessOperations())) {
+      m.load("res/k.PPM", "k");
+      m.brighten(20, "k", "bright");
+      m.horizontalFlip("bright", "bright");
+      CompletableFuture<Image> luma = m.lumaComponent("bright", "luma");
+      m.redComponent("k", "bright");
+      m.save("asyncK.ppm", "luma", PpmFormat.P6).join();
+
+      sync.load("res/k.PPM", "k");
+      sync.brighten(20, "k", "bright");
+      sync.horizontalFlip("bright", "bright");
+      sync.lumaComponent("bright", "luma");
+      sync.redComponent("k", "red");
+      assertSamePixels(sync.getImage("luma"), luma.join());
+      assertSamePixels(sync.getImage("red"), m.getImageAsync("bright").join());
+      m.idle().join();
+    }
+  }
+
+  @Test
+  public void testFailurePropagates() {
+    try (AsyncImageProcessModel m = new AsyncImageProcessModel(new ImageProcessOperations())) {
+      m.load("res/missing.ppm", "k");
+      CompletableFuture<Image> bright = m.brighten(10, "k", "bright");
+      try {
+        bright.join();
+        fail("the missing file should be reported");
+      } catch (CompletionException e) {
+        assertTrue(e.getCause() instanceof FileNotFoundException);
+      }
+    }
+  }
+
+  @Test
+  public void testFailureKeptUntilRewritten() {
+    AsyncImageProcessModel m = new AsyncImageProcessModel(new ImageProcessOperations(),
+            Runnable::run, Runnable::run);
+    assertTrue(m.load("res/missing.ppm", "k").isCompletedExceptionally());
+    try {
+      m.brighten(10, "k", "bright").join();
+      fail("the missing file should be reported after the load failed");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof FileNotFoundException);
+    }
+    m.load("res/k.PPM", "k").join();
+    assertFalse(m.brighten(10, "k", "bright").isCompletedExceptionally());
+  }
+
+  @Test
+  public void testCancelBeforeStart() {
+    List<Runnable> queued = new ArrayList<Runnable>();
+    Executor later = queued::add;
+    ImageProcessOperations sync = new ImageProcessOperations();
+    AsyncImageProcessModel m = new AsyncImageProcessModel(sync, Runnable::run, later);
+    m.load("res/k.PPM", "k").join();
+    CompletableFuture<Image> red = m.redComponent("k", "red");
+    CompletableFuture<Image> flip = m.verticalFlip("red", "flipped");
+    CompletableFuture<Image> luma = m.lumaComponent("k", "luma");
+    assertTrue(red.cancel(true));
+    for (int i = 0; i < queued.size(); i++) {
+      queued.get(i).run();
+    }
+    assertTrue(red.isCancelled());
+    try {
+      flip.join();
+      fail("a dependent of a cancelled operation should not run");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof CancellationException);
+    }
+    assertFalse(luma.isCompletedExceptionally());
+    assertEquals(sync.getImage("luma"), luma.join());
+    try {
+      sync.getImage("red");
+      fail("a cancelled operation should not run");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCancelWhileRunningHoldsName() {
+    List<Runnable> queued = new ArrayList<Runnable>();
+    List<AsyncImageProcessModel> model = new ArrayList<AsyncImageProcessModel>();
+    List<CompletableFuture<Image>> futures = new ArrayList<CompletableFuture<Image>>();
+    List<Integer> queuedWhileRunning = new ArrayList<Integer>();
+    ImageProcessOperations sync = new ImageProcessOperations() {
+      @Override
+      public void redComponent(String name, String d) throws IllegalArgumentException {
+        futures.get(0).cancel(true);
+        futures.add(model.get(0).blueComponent(name, d));
+        queuedWhileRunning.add(queued.size());
+        super.redComponent(name, d);
+      }
+    };
+    AsyncImageProcessModel m = new AsyncImageProcessModel(sync, Runnable::run, queued::add);
+    model.add(m);
+    m.load("res/k.PPM", "k").join();
+    futures.add(m.redComponent("k", "out"));
+    queued.remove(0).run();
+
+    assertTrue(futures.get(0).isCancelled());
+    assertEquals(0, (int) queuedWhileRunning.get(0));
+    assertEquals(1, queued.size());
+    queued.remove(0).run();
+    sync.blueComponent("k", "blue");
+    assertSamePixels(sync.getImage("blue"), futures.get(1).join());
+    assertSamePixels(sync.getImage("blue"), sync.getImage("out"));
+    assertTrue(m.idle().isDone());
+  }
+
+  @Test
+  public void testOverlapsIndependentWork() {
+    ExecutorService io = Executors.newFixedThreadPool(2);
+    ExecutorService compute = Executors.newFixedThreadPool(2);
+    try (AsyncImageProcessModel m = new AsyncImageProcessModel(new ImageProcessOperations(),
+            io, compute)) {
+      m.load("res/k.PPM", "a").join();
+      CompletableFuture<Image> loading = m.load("res/k.PPM", "b");
+      CompletableFuture<Image> blur = m.boxBlur(1, "a", "blurred");
+      CompletableFuture<Image> blurB = m.boxBlur(1, "b", "blurredB");
+      assertSamePixels(blur.join(), blurB.join());
+      assertTrue(loading.isDone());
+    } finally {
+      io.shutdown();
+      compute.shutdown();
+    }
+  }
+
+  private static void assertSamePixels(Image expected, Image actual) {
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int r = 0; r < expected.getHeight(); r++) {
+      for (int c = 0; c < expected.getWidth(); c++) {
+        assertArrayEquals(expected.getPixel(r, c), actual.getPixel(r, c), 0.0);
+      }
+    }
+  }
+}
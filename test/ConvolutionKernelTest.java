@@ -0,0 +1,112 @@
+import org.junit.Test;
+
+import model.ConvolutionKernel;
+import model.Image;
+import model.ImageExecutor;
+import model.PackedImage;
+import model.PixelLayout;
+import model.SampleDepth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing for convolution kernels and the tiled convolution engine.
+ */
+public class ConvolutionKernelTest {
+
+  /**
+   * Convolves one sample the slow way, clamping coordinates at the border.
+   */
+  private double reference(Image im, ConvolutionKernel k, int r, int c, int ch) {
+    double s = 0;
+    for (int i = 0; i < k.getHeight(); i++) {
+      for (int j = 0; j < k.getWidth(); j++) {
+        int sr = Math.max(0, Math.min(im.getHeight() - 1, r + i - k.getHeight() / 2));
+        int sc = Math.max(0, Math.min(im.getWidth() - 1, c + j - k.getWidth() / 2));
+        s += k.getWeight(i, j) * im.getSample(sr, sc, ch);
+      }
+    }
+    return Math.max(0, Math.min(1, s));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEvenKernel() {
+    new ConvolutionKernel(2, 3, new double[6]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongWeightCount() {
+    new ConvolutionKernel(3, 3, new double[8]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadRadius() {
+    ConvolutionKernel.gaussian(0);
+  }
+
+  @Test
+  public void testSeparableDetection() {
+    assertTrue(ConvolutionKernel.gaussian(3).isSeparable());
+    assertTrue(ConvolutionKernel.box(2).isSeparable());
+    assertFalse(ConvolutionKernel.sharpen().isSeparable());
+    assertFalse(ConvolutionKernel.edgeDetect().isSeparable());
+    ConvolutionKernel sobel = new ConvolutionKernel(3, 3, new double[]{
+      -1, 0, 1, -2, 0, 2, -1, 0, 1});
+    assertTrue(sobel.isSeparable());
+    double sum = 0;
+    for (double w : ConvolutionKernel.gaussian(4).getWeights()) {
+      sum += w;
+    }
+    assertEquals(sum, 1, 1e-12);
+  }
+
+  @Test
+  public void testMatchesReference() {
+    PackedImage im = TestImages.random(300, 70, 7, SampleDepth.DOUBLE);
+    ConvolutionKernel[] kernels = {ConvolutionKernel.gaussian(5), ConvolutionKernel.box(1),
+        ConvolutionKernel.sharpen(), ConvolutionKernel.edgeDetect()};
+    try (ImageExecutor executor = new ImageExecutor(3, 1000)) {
+      for (ConvolutionKernel k : kernels) {
+        Image out = executor.convolve(im, k);
+        for (int r = 0; r < 70; r += 3) {
+          for (int c = 0; c < 300; c += 11) {
+            for (int ch = 0; ch < 3; ch++) {
+              assertEquals(this.reference(im, k, r, c, ch), out.getSample(r, c, ch), 1e-9);
+            }
+          }
+        }
+        assertEquals(this.reference(im, k, 69, 299, 2), out.getSample(69, 299, 2), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testBlurOfFlatImage() {
+    PackedImage im = new PackedImage(5, 4, 255, SampleDepth.BYTE, PixelLayout.INTERLEAVED);
+    double[] row = new double[15];
+    java.util.Arrays.fill(row, 0.4);
+    for (int r = 0; r < 4; r++) {
+      im.setRow(r, row, 0);
+    }
+    Image out = new ImageExecutor().convolve(im, ConvolutionKernel.gaussian(9));
+    assertArrayEquals(out.getPixel(3, 4), im.getPixel(0, 0), 1e-12);
+  }
+
+  @Test
+  public void testLargeRadiusInNarrowBands() {
+    PackedImage im = TestImages.random(300, 260, 7, SampleDepth.DOUBLE);
+    ConvolutionKernel k = ConvolutionKernel.gaussian(25);
+    try (ImageExecutor serial = new ImageExecutor(1, 1 << 20);
+         ImageExecutor banded = new ImageExecutor(4, 300)) {
+      Image expected = serial.convolve(im, k);
+      Image out = banded.convolve(im, k);
+      for (int r = 0; r < 260; r += 7) {
+        assertArrayEquals(expected.getPixel(r, 150), out.getPixel(r, 150), 0.0);
+      }
+      assertEquals(this.reference(im, k, 259, 0, 1), out.getSample(259, 0, 1), 1e-9);
+    }
+  }
+}
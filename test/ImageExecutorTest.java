@@ -0,0 +1,271 @@
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import model.ConvolutionKernel;
+import model.Image;
+import model.ImageExecutor;
+import model.LookupKernel;
+import model.PackedImage;
+import model.PixelKernel;
+import model.PixelLayout;
+import model.PixelMap;
+import model.ResampleFilter;
+import model.SampleDepth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testing for the banded execution engine.
+ */
+public class ImageExecutorTest {
+
+  private void assertSameImage(Image expected, Image actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    double[] row1 = new double[expected.getWidth() * 3];
+    double[] row2 = new double[expected.getWidth() * 3];
+    for (int r = 0; r < expected.getHeight(); r++) {
+      expected.getRow(r, row1, 0);
+      actual.getRow(r, row2, 0);
+      assertArrayEquals(row1, row2, 0.0);
+    }
+  }
+
+  private int saved(double value, int max) {
+    double scaled = value * max;
+    int sample = (int) scaled;
+    return scaled - sample > 1 - 1e-9 ? sample + 1 : sample;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadParallelism() {
+    new ImageExecutor(0, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadCutoff() {
+    new ImageExecutor(2, 0);
+  }
+
+  @Test
+  public void testParallelMatchesSerial() {
+    PackedImage src = TestImages.random(37, 23, 42, SampleDepth.DOUBLE);
+    PixelKernel luma = (rgb, off) -> {
+      double lum = 0.2126 * rgb[off] + 0.7152 * rgb[off + 1] + 0.0722 * rgb[off + 2];
+      rgb[off] = lum;
+      rgb[off + 1] = lum;
+      rgb[off + 2] = lum;
+    };
+    PixelMap map = PixelMap.horizontalFlip(37).then(PixelMap.verticalFlip(23));
+    Image serial;
+    Image parallel;
+    try (ImageExecutor one = new ImageExecutor(1, 1);
+         ImageExecutor four = new ImageExecutor(4, 7)) {
+      serial = one.apply(src, map, luma);
+      parallel = four.apply(src, map, luma);
+    }
+    this.assertSameImage(serial, parallel);
+    assertEquals(serial.getSample(0, 0, 1),
+            0.2126 * src.getSample(22, 36, 0) + 0.7152 * src.getSample(22, 36, 1)
+                    + 0.0722 * src.getSample(22, 36, 2), 0.0);
+  }
+
+  @Test
+  public void testLookupMatchesFloatPath() {
+    Random rand = new Random(3);
+    PackedImage bytes = new PackedImage(40, 30, 255, SampleDepth.BYTE, PixelLayout.PLANAR);
+    PackedImage shorts = new PackedImage(300, 250, 255, SampleDepth.SHORT,
+            PixelLayout.INTERLEAVED);
+    for (PackedImage im : new PackedImage[] {bytes, shorts}) {
+      for (int r = 0; r < im.getHeight(); r++) {
+        for (int c = 0; c < im.getWidth(); c++) {
+          for (int ch = 0; ch < 3; ch++) {
+            im.setRawSample(r, c, ch, rand.nextInt(im.getDepth() == SampleDepth.BYTE ? 256 : 600));
+          }
+        }
+      }
+    }
+    LookupKernel brighten = LookupKernel.perChannel(v -> Math.max(0, Math.min(1, v + 0.2)));
+    LookupKernel luma = LookupKernel.weighted(0.2126, 0.7152, 0.0722, v -> v);
+    LookupKernel intensity = LookupKernel.weighted(1, 1, 1, v -> v / 3);
+    PixelKernel[] kernels = {brighten, luma, intensity, LookupKernel.maximum(),
+        brighten.andThen(luma), luma.andThen(brighten), LookupKernel.maximum().andThen(brighten),
+        intensity.andThen(luma)};
+    ImageExecutor executor = new ImageExecutor(4, 500, true, false);
+    for (PackedImage im : new PackedImage[] {bytes, shorts}) {
+      for (PixelKernel k : kernels) {
+        PixelKernel opaque = (rgb, off) -> k.apply(rgb, off);
+        PixelMap flip = PixelMap.horizontalFlip(im.getWidth());
+        this.assertSameImage(executor.apply(im, flip, opaque), executor.apply(im, flip, k));
+      }
+    }
+    executor.close();
+  }
+
+  @Test
+  public void testFixedPointMatchesSavedSamples() {
+    Random rand = new Random(8);
+    PackedImage bytes = new PackedImage(40, 30, 255, SampleDepth.BYTE, PixelLayout.PLANAR);
+    PackedImage shorts = new PackedImage(300, 250, 1000, SampleDepth.SHORT,
+            PixelLayout.INTERLEAVED);
+    for (PackedImage im : new PackedImage[] {bytes, shorts}) {
+      for (int r = 0; r < im.getHeight(); r++) {
+        for (int c = 0; c < im.getWidth(); c++) {
+          for (int ch = 0; ch < 3; ch++) {
+            im.setRawSample(r, c, ch, rand.nextInt(im.getMaximumValue() + 1));
+          }
+        }
+      }
+    }
+    ImageExecutor fixed = new ImageExecutor(3, 500, false, true);
+    ImageExecutor floating = new ImageExecutor(3, 500, false, false);
+    assertTrue(fixed.isFixedPoint());
+    assertFalse(floating.isFixedPoint());
+    LookupKernel luma = LookupKernel.average(0.2126, 0.7152, 0.0722, 1);
+    for (PackedImage im : new PackedImage[] {bytes, shorts}) {
+      int max = im.getMaximumValue();
+      PixelMap flip = PixelMap.horizontalFlip(im.getWidth());
+      PackedImage red = fixed.apply(im, flip, LookupKernel.average(1, 0, 0, 1));
+      PackedImage value = fixed.apply(im, flip, LookupKernel.maximum());
+      PackedImage bright = fixed.apply(im, flip, LookupKernel.offset(7.0 / max));
+      PackedImage dark = fixed.apply(im, flip, LookupKernel.offset(-7.0 / max));
+      PackedImage floatBright = floating.apply(im, flip, LookupKernel.offset(7.0 / max));
+      PackedImage floatDark = floating.apply(im, flip, LookupKernel.offset(-7.0 / max));
+      PackedImage mixed = fixed.apply(im, flip, luma);
+      PackedImage expected = floating.apply(im, flip, luma);
+      assertEquals(mixed.getDepth(), im.getDepth());
+      assertEquals(mixed.getMaximumValue(), max);
+      for (int r = 0; r < im.getHeight(); r++) {
+        for (int c = 0; c < im.getWidth(); c++) {
+          int s = im.getWidth() - 1 - c;
+          int top = Math.max(Math.max(im.getRawSample(r, s, 0), im.getRawSample(r, s, 1)),
+                  im.getRawSample(r, s, 2));
+          for (int ch = 0; ch < 3; ch++) {
+            int raw = im.getRawSample(r, s, ch);
+            assertEquals(red.getRawSample(r, c, ch), im.getRawSample(r, s, 0));
+            assertEquals(value.getRawSample(r, c, ch), top);
+            assertEquals(bright.getRawSample(r, c, ch),
+                    this.saved(floatBright.getSample(r, c, ch), max));
+            assertEquals(dark.getRawSample(r, c, ch),
+                    this.saved(floatDark.getSample(r, c, ch), max));
+            assertEquals(bright.getRawSample(r, c, ch), Math.min(max, raw + 7), 1);
+            assertEquals(dark.getRawSample(r, c, ch), Math.max(0, raw - 7), 1);
+            assertEquals(mixed.getRawSample(r, c, ch),
+                    expected.getSample(r, c, ch) * max, 1.0);
+          }
+        }
+      }
+    }
+    PixelKernel chain = luma.andThen(LookupKernel.offset(0.1));
+    PackedImage chained = fixed.apply(bytes, PixelMap.identity(), chain);
+    PackedImage floatChained = floating.apply(bytes, PixelMap.identity(), chain);
+    assertEquals(chained.getDepth(), SampleDepth.BYTE);
+    assertEquals(floatChained.getDepth(), SampleDepth.DOUBLE);
+    for (int c = 0; c < bytes.getWidth(); c++) {
+      assertEquals(chained.getRawSample(3, c, 1), this.saved(floatChained.getSample(3, c, 1), 255));
+    }
+    fixed.close();
+    floating.close();
+  }
+
+  @Test
+  public void testResultsKeepIntegerDepth() {
+    Random rand = new Random(8);
+    PackedImage src = new PackedImage(90, 70, 1000, SampleDepth.SHORT, PixelLayout.INTERLEAVED);
+    for (int r = 0; r < src.getHeight(); r++) {
+      for (int c = 0; c < src.getWidth(); c++) {
+        for (int ch = 0; ch < 3; ch++) {
+          src.setRawSample(r, c, ch, rand.nextInt(1001));
+        }
+      }
+    }
+    try (ImageExecutor integers = new ImageExecutor(2, 500);
+         ImageExecutor doubles = new ImageExecutor(2, 500, true, false)) {
+      PixelKernel opaque = (rgb, off) -> rgb[off] = 1 - rgb[off];
+      PixelMap flip = PixelMap.verticalFlip(src.getHeight());
+      PackedImage[] kept = {integers.apply(src, flip, opaque),
+          integers.convolve(src, ConvolutionKernel.gaussian(2)),
+          integers.resample(src, 50, 40, ResampleFilter.BILINEAR),
+          integers.resample(src, 20, 15, ResampleFilter.BILINEAR)};
+      PackedImage[] exact = {doubles.apply(src, flip, opaque),
+          doubles.convolve(src, ConvolutionKernel.gaussian(2)),
+          doubles.resample(src, 50, 40, ResampleFilter.BILINEAR),
+          doubles.resample(src, 20, 15, ResampleFilter.BILINEAR)};
+      for (int i = 0; i < kept.length; i++) {
+        assertEquals(kept[i].getDepth(), SampleDepth.SHORT);
+        assertEquals(exact[i].getDepth(), SampleDepth.DOUBLE);
+        assertEquals(kept[i].getByteSize(),
+                (long) kept[i].getWidth() * kept[i].getHeight() * 3 * 2);
+        for (int r = 0; r < kept[i].getHeight(); r++) {
+          for (int c = 0; c < kept[i].getWidth(); c++) {
+            for (int ch = 0; ch < 3; ch++) {
+              double value = exact[i].getSample(r, c, ch);
+              if (i < 3) {
+                assertEquals(kept[i].getRawSample(r, c, ch), this.saved(value, 1000));
+              } else {
+                assertEquals(kept[i].getSample(r, c, ch), value, 2.0 / 1000);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testVectorMatchesScalar() {
+    PackedImage src = TestImages.random(301, 9, 42, SampleDepth.DOUBLE);
+    src.setSample(0, 0, 0, 1.5);
+    PixelKernel[] kernels = {LookupKernel.offset(0.3), LookupKernel.offset(-0.3),
+        LookupKernel.average(0.2126, 0.7152, 0.0722, 1), LookupKernel.average(1, 1, 1, 3),
+        LookupKernel.maximum()};
+    ImageExecutor vector = new ImageExecutor(2, 500, true);
+    ImageExecutor scalar = new ImageExecutor(2, 500, false);
+    assertFalse(scalar.isVectorized());
+    for (PixelKernel k : kernels) {
+      PixelMap flip = PixelMap.verticalFlip(src.getHeight());
+      this.assertSameImage(scalar.apply(src, flip, k), vector.apply(src, flip, k));
+    }
+    vector.close();
+    scalar.close();
+  }
+
+  @Test
+  public void testEveryRowVisitedOnce() {
+    AtomicIntegerArray visits = new AtomicIntegerArray(101);
+    try (ImageExecutor executor = new ImageExecutor(3, 5)) {
+      executor.forEachBand(101, 2, (top, bottom) -> {
+        for (int r = top; r < bottom; r++) {
+          visits.incrementAndGet(r);
+        }
+      });
+    }
+    for (int r = 0; r < 101; r++) {
+      assertEquals(visits.get(r), 1);
+    }
+  }
+
+  @Test
+  public void testCloseStopsOwnPool() {
+    ImageExecutor own = new ImageExecutor(2, 5);
+    own.close();
+    try {
+      own.forEachBand(100, 2, (top, bottom) -> { });
+      fail("A closed executor should not accept parallel work");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+    ImageExecutor shared = new ImageExecutor();
+    shared.close();
+    AtomicIntegerArray visits = new AtomicIntegerArray(1);
+    shared.forEachBand(1, 1, (top, bottom) -> visits.incrementAndGet(0));
+    assertEquals(visits.get(0), 1);
+  }
+}
@@ -2,13 +2,28 @@ import org.junit.Test;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 
+import model.Image;
+import model.ImageExecutor;
 import model.ImageImpl;
 import model.ImageProcessOperations;
+import model.ImageRegistry;
 import model.ImageUtil;
+import model.PackedImage;
+import model.PipelineImage;
+import model.PixelLayout;
+import model.PpmFormat;
+import model.ResampleFilter;
+import model.SampleDepth;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Testing for the Operations and Util.
@@ -141,6 +156,7 @@ public class ImageProcessorPPMTest {
     double[][][] pix2 = new double[1][1][3];
     pix2[0][0] = new double[]{5, 10, 20};
     double lumArr = 0.2126 * pix2[0][0][0] + 0.7152 * pix2[0][0][1] + 0.0722 * pix2[0][0][2];
+    lumArr = (int) (lumArr * 255) / 255.0;
     pix2[0][0] = new double[]{lumArr, lumArr, lumArr};
     ImageImpl im2 = new ImageImpl(pix2, 255);
     proc1.load("first", "testFirst");
@@ -218,6 +234,234 @@ public class ImageProcessorPPMTest {
     assertArrayEquals(pixTest1, pixTest2, 0.0);
   }
 
+  @Test
+  public void testBinaryRoundTrip() throws IOException {
+    this.proc1 = new ImageProcessOperations();
+    this.pix = new double[2][3][3];
+    pix[0][0] = new double[]{1, 0.5, 0};
+    pix[1][2] = new double[]{0.2, 0.4, 0.6};
+    this.im1 = new ImageImpl(pix, 255);
+    ImageUtil.savePPM(im1, "firstBinary", PpmFormat.P6);
+    proc1.load("firstBinary", "testFirst");
+    proc1.save("second", "testFirst");
+    proc1.load("second", "testSecond");
+    assertEquals(proc1.getImage("testSecond").getWidth(), 3);
+    assertArrayEquals(proc1.getImage("testSecond").getPixel(0, 0),
+            new double[]{1, 127 / 255.0, 0}, 0.0);
+    assertArrayEquals(proc1.getImage("testFirst").getPixel(1, 2),
+            new double[]{51 / 255.0, 102 / 255.0, 153 / 255.0}, 0.0);
+  }
+
+  @Test
+  public void testBinarySameAsPlain() throws IOException {
+    this.proc1 = new ImageProcessOperations();
+    proc1.load("res/k.PPM", "plain");
+    proc1.save("kBinary", "plain", PpmFormat.P6);
+    proc1.load("kBinary", "binary");
+    Image plain = proc1.getImage("plain");
+    Image binary = proc1.getImage("binary");
+    for (int r = 0; r < plain.getHeight(); r++) {
+      for (int c = 0; c < plain.getWidth(); c++) {
+        assertArrayEquals(plain.getPixel(r, c), binary.getPixel(r, c), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testPlainStripsInOrder() throws IOException {
+    int w = 700;
+    int h = 300;
+    PackedImage image = new PackedImage(w, h, 255, SampleDepth.DOUBLE,
+            PixelLayout.INTERLEAVED);
+    StringBuilder expected = new StringBuilder("P3\n" + w + " " + h + "\n255\n");
+    for (int r = 0; r < h; r++) {
+      for (int c = 0; c < w; c++) {
+        for (int k = 0; k < 3; k++) {
+          int sample = (r * 31 + c * 7 + k) % 300 - 20;
+          image.setSample(r, c, k, sample / 255.0);
+          expected.append((int) (sample / 255.0 * 255)).append(System.lineSeparator());
+        }
+      }
+    }
+    ImageUtil.savePPM(image, "strips", PpmFormat.P3);
+    assertEquals(expected.toString(), Files.readString(Paths.get("strips")));
+  }
+
+  @Test
+  public void testCommentsAndBlankLines() throws IOException {
+    Files.writeString(Paths.get("commented"), "P3\n# made by hand\n\n2 1 # width height\n"
+            + "255\n0 51#red and green\n102\n\n  # second pixel\n255 255 1275\n");
+    Image image = ImageUtil.readPPM("commented");
+    assertEquals(image.getWidth(), 2);
+    assertArrayEquals(image.getPixel(0, 0), new double[]{0, 51 / 255.0, 102 / 255.0}, 0.0);
+    assertArrayEquals(image.getPixel(0, 1), new double[]{1, 1, 5}, 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedFile() throws IOException {
+    Files.writeString(Paths.get("truncated"), "P3\n2 1\n255\n0 51 102\n");
+    ImageUtil.readPPM("truncated");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotPpm() throws IOException {
+    Files.writeString(Paths.get("notPpm"), "P5\n2 1\n255\n");
+    ImageUtil.readPPM("notPpm");
+  }
+
+  @Test
+  public void testLazyMatchesEager() throws IOException {
+    for (boolean fixedPoint : new boolean[] {true, false}) {
+      ImageProcessOperations eager = new ImageProcessOperations(new ImageExecutor(fixedPoint),
+              ImageProcessOperations.DEFAULT_MAP_THRESHOLD);
+      ImageProcessOperations lazy = new ImageProcessOperations(new ImageExecutor(fixedPoint),
+              ImageProcessOperations.DEFAULT_MAP_THRESHOLD, true);
+      for (ImageProcessOperations proc : new ImageProcessOperations[]{eager, lazy}) {
+        proc.load("res/k.PPM", "k");
+        proc.brighten(30, "k", "bright");
+        proc.horizontalFlip("bright", "flipped");
+        proc.lumaComponent("flipped", "luma");
+        proc.verticalFlip("luma", "result");
+        proc.brighten(-11, "result", "result");
+        proc.lumaComponent("result", "result");
+      }
+      Image expected = eager.getImage("result");
+      Image pending = lazy.getStoredImage("result");
+      assertTrue(pending instanceof PipelineImage);
+      assertArrayEquals(expected.getPixel(3, 4), pending.getPixel(3, 4), 0.0);
+      double[] row = new double[expected.getWidth() * 3];
+      double[] expectedRow = new double[row.length];
+      pending.getRow(8, row, 0);
+      expected.getRow(8, expectedRow, 0);
+      assertArrayEquals(expectedRow, row, 0.0);
+      Image actual = lazy.getImage("result");
+      for (int r = 0; r < expected.getHeight(); r += 7) {
+        for (int c = 0; c < expected.getWidth(); c += 5) {
+          assertArrayEquals(expected.getPixel(r, c), actual.getPixel(r, c), 0.0);
+        }
+      }
+      assertTrue(actual instanceof PackedImage);
+    }
+  }
 
+  @Test
+  public void testUnchangedFileReused() throws IOException {
+    ImageRegistry registry = new ImageRegistry();
+    ImageProcessOperations proc = new ImageProcessOperations(new ImageExecutor(), registry,
+            ImageProcessOperations.DEFAULT_MAP_THRESHOLD, false);
+    Files.writeString(Paths.get("reloaded"), "P3\n2 1\n255\n0 51 102\n255 255 255\n");
+    proc.load("reloaded", "a");
+    proc.load("./reloaded", "b");
+    assertSame(proc.getImage("a"), proc.getImage("b"));
+    assertEquals(registry.getResidentBytes(), 6);
+    assertEquals(registry.getReferences("a"), 2);
 
-}
\ No newline at end of file
+    Files.writeString(Paths.get("reloaded"), "P3\n2 1\n255\n9 51 102\n255 255 255\n");
+    Files.setLastModifiedTime(Paths.get("reloaded"), FileTime.fromMillis(
+            Files.getLastModifiedTime(Paths.get("reloaded")).toMillis() + 2000));
+    proc.load("reloaded", "c");
+    assertNotSame(proc.getImage("a"), proc.getImage("c"));
+    assertEquals(proc.getImage("c").getSample(0, 0, 0), 9 / 255.0, 0.0);
+    assertEquals(registry.getResidentBytes(), 12);
+  }
+
+  @Test
+  public void testNoOpsShareSource() throws IOException {
+    ImageProcessOperations proc = new ImageProcessOperations();
+    proc.load("res/k.PPM", "k");
+    Image k = proc.getImage("k");
+    proc.brighten(0, "k", "same");
+    assertSame(proc.getImage("same"), k);
+    proc.horizontalFlip("k", "flipped");
+    proc.horizontalFlip("flipped", "back");
+    assertSame(proc.getImage("back"), k);
+    for (ResampleFilter filter : ResampleFilter.values()) {
+      proc.resize(k.getWidth(), k.getHeight(), filter, "k", "resized");
+      Image resized = proc.getImage("resized");
+      for (int r = 0; r < k.getHeight(); r += 3) {
+        for (int c = 0; c < k.getWidth(); c += 3) {
+          assertArrayEquals(resized.getPixel(r, c), k.getPixel(r, c), 1e-9);
+        }
+      }
+      assertEquals(resized == k, filter != ResampleFilter.LANCZOS);
+    }
+    proc.scale(1, ResampleFilter.BILINEAR, "k", "scaled");
+    assertSame(proc.getImage("scaled"), k);
+
+    proc.load("res/k.PPM", "big");
+    proc.brighten(10, "big", "big");
+    proc.brighten(0, "big", "still");
+    assertSame(proc.getImage("still"), proc.getImage("big"));
+
+    ImageProcessOperations floating = new ImageProcessOperations(new ImageExecutor(false),
+            ImageProcessOperations.DEFAULT_MAP_THRESHOLD);
+    floating.load("res/k.PPM", "big");
+    floating.brighten(10, "big", "big");
+    floating.brighten(0, "big", "still");
+    assertNotSame(floating.getImage("still"), floating.getImage("big"));
+  }
+
+  @Test
+  public void testIntegerResultsByDefault() throws IOException {
+    ImageProcessOperations proc = new ImageProcessOperations();
+    proc.load("res/k.PPM", "k");
+    proc.brighten(30, "k", "bright");
+    proc.lumaComponent("bright", "luma");
+    proc.intensityComponent("k", "intensity");
+    for (String name : new String[]{"bright", "luma", "intensity"}) {
+      assertEquals(((PackedImage) proc.getImage(name)).getDepth(), SampleDepth.BYTE);
+    }
+    Image k = proc.getImage("k");
+    for (int r = 0; r < k.getHeight(); r += 7) {
+      for (int c = 0; c < k.getWidth(); c += 5) {
+        long sum = 0;
+        for (int ch = 0; ch < 3; ch++) {
+          sum += Math.round(k.getSample(r, c, ch) * 255);
+        }
+        assertEquals(proc.getImage("intensity").getSample(r, c, 0), sum / 3 / 255.0, 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testWideSamplesRoundTrip() throws IOException {
+    for (int max : new int[]{1000, 65535}) {
+      StringBuilder plain = new StringBuilder("P3\n3 2\n" + max + "\n");
+      for (int k = 0; k < 18; k++) {
+        plain.append(k * max / 17).append('\n');
+      }
+      Files.writeString(Paths.get("wide"), plain.toString());
+      Image image = ImageUtil.readPPM("wide");
+      assertEquals(image.getMaximumValue(), max);
+      assertEquals(image.getSample(1, 2, 2), 1, 0.0);
+      assertEquals(image.getSample(0, 1, 0), (3 * max / 17) / (double) max, 0.0);
+
+      ImageUtil.savePPM(image, "wideBinary", PpmFormat.P6);
+      assertEquals(Files.size(Paths.get("wideBinary")),
+              ("P6\n3 2\n" + max + "\n").length() + 18 * (max > 255 ? 2 : 1));
+      Image binary = ImageUtil.readPPM("wideBinary");
+      ImageUtil.savePPM(binary, "widePlain", PpmFormat.P3);
+      ImageUtil.savePPM(ImageUtil.readPPM("widePlain"), "wideBinary2", PpmFormat.P6);
+      assertArrayEquals(Files.readAllBytes(Paths.get("wideBinary")),
+              Files.readAllBytes(Paths.get("wideBinary2")));
+      for (int c = 0; c < 3; c++) {
+        assertArrayEquals(image.getPixel(1, c), binary.getPixel(1, c), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testBrightenCountsInSteps() throws IOException {
+    Files.writeString(Paths.get("steps"), "P3\n2 1\n1000\n0 500 995\n1000 10 2\n");
+    ImageProcessOperations proc = new ImageProcessOperations();
+    proc.load("steps", "a");
+    proc.brighten(10, "a", "bright");
+    proc.brighten(-10, "a", "dark");
+    assertArrayEquals(proc.getImage("bright").getPixel(0, 0),
+            new double[]{0.01, 0.51, 1}, 1e-12);
+    assertArrayEquals(proc.getImage("dark").getPixel(0, 1), new double[]{0.99, 0, 0}, 1e-12);
+    proc.save("stepsSaved", "bright");
+    assertEquals(Files.readString(Paths.get("stepsSaved")).split("\\R")[3], "10");
+    assertEquals(Files.readString(Paths.get("stepsSaved")).split("\\R")[5], "1000");
+  }
+}
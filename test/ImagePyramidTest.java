@@ -0,0 +1,118 @@
+import org.junit.Test;
+
+import model.Image;
+import model.ImagePyramid;
+import model.ImageRegistry;
+import model.PackedImage;
+import model.SampleDepth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testing for image pyramids and their tile cache.
+ */
+public class ImagePyramidTest {
+
+  /**
+   * Averages the pixels of the source a pixel of level 1 covers.
+   */
+  private double[] average(Image src, int r, int c) {
+    double[] sum = new double[3];
+    int n = 0;
+    for (int y = 2 * r; y < Math.min(src.getHeight(), 2 * r + 2); y++) {
+      for (int x = 2 * c; x < Math.min(src.getWidth(), 2 * c + 2); x++) {
+        for (int ch = 0; ch < 3; ch++) {
+          sum[ch] += src.getSample(y, x, ch);
+        }
+        n++;
+      }
+    }
+    for (int ch = 0; ch < 3; ch++) {
+      sum[ch] /= n;
+    }
+    return sum;
+  }
+
+  @Test
+  public void testLevels() {
+    ImageRegistry reg = new ImageRegistry();
+    reg.put("a", TestImages.random(1000, 600, 5, SampleDepth.BYTE));
+    ImagePyramid p = reg.getPyramid("a");
+    assertEquals(3, p.getLevelCount());
+    assertEquals(500, p.getWidth(1));
+    assertEquals(150, p.getHeight(2));
+    assertEquals(0, p.levelFor(1));
+    assertEquals(1, p.levelFor(0.5));
+    assertEquals(1, p.levelFor(0.3));
+    assertEquals(2, p.levelFor(0.01));
+    assertSame(p, reg.getPyramid("a"));
+    assertNull(reg.getPyramid("missing"));
+  }
+
+  @Test
+  public void testTilesMatchSource() {
+    PackedImage src = TestImages.random(515, 301, 5, SampleDepth.BYTE);
+    ImageRegistry reg = new ImageRegistry();
+    reg.put("a", src);
+    ImagePyramid p = reg.getPyramid("a");
+    Image corner = p.getTile(0, 1, 2);
+    assertEquals(515 - 512, corner.getWidth());
+    assertEquals(301 - 256, corner.getHeight());
+    assertArrayEquals(src.getPixel(300, 514), corner.getPixel(44, 2), 1e-6);
+    Image level1 = p.getRegion(1, 0, 0, 1000, 1000);
+    assertEquals(258, level1.getWidth());
+    assertEquals(151, level1.getHeight());
+    for (int r = 0; r < 151; r += 3) {
+      for (int c = 0; c < 258; c += 7) {
+        assertArrayEquals(this.average(src, r, c), level1.getPixel(r, c), 1e-6);
+      }
+    }
+    assertArrayEquals(this.average(src, 150, 257), level1.getPixel(150, 257), 1e-6);
+  }
+
+  @Test
+  public void testViewportReadsVisibleTiles() {
+    ImageRegistry reg = new ImageRegistry();
+    PackedImage src = TestImages.random(2048, 1024, 5, SampleDepth.BYTE);
+    reg.put("a", src);
+    ImagePyramid p = reg.getPyramid("a");
+    Image view = p.getRegion(0, 200, 500, 100, 100);
+    assertArrayEquals(src.getPixel(250, 560), view.getPixel(50, 60), 1e-6);
+    assertEquals(4, reg.getTileMisses());
+    p.getRegion(0, 10, 300, 50, 50);
+    assertEquals(4, reg.getTileMisses());
+    assertEquals(1, reg.getTileHits());
+    p.getRegion(1, 0, 0, 10, 10);
+    assertEquals(4 + 1 + 2, reg.getTileMisses());
+  }
+
+  @Test
+  public void testReplacingInvalidates() {
+    ImageRegistry reg = new ImageRegistry();
+    reg.put("a", TestImages.random(300, 300, 5, SampleDepth.BYTE));
+    ImagePyramid old = reg.getPyramid("a");
+    old.getTile(1, 0, 0);
+    PackedImage replacement = TestImages.random(40, 30, 5, SampleDepth.BYTE);
+    replacement.setSample(0, 0, 0, 1);
+    reg.put("a", replacement);
+    assertFalse(old.isValid());
+    try {
+      old.getTile(0, 0, 0);
+      fail("a replaced image should not be read");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    ImagePyramid fresh = reg.getPyramid("a");
+    assertNotSame(old, fresh);
+    assertTrue(fresh.isValid());
+    assertEquals(1, fresh.getLevelCount());
+    assertEquals(1, fresh.getTile(0, 0, 0).getSample(0, 0, 0), 1e-6);
+  }
+}
@@ -0,0 +1,163 @@
+import org.junit.Test;
+
+import model.Image;
+import model.ImageImpl;
+import model.ImageRegistry;
+import model.PackedImage;
+import model.PixelLayout;
+import model.PixelMap;
+import model.RemappedImage;
+import model.SampleDepth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing for the bounded image registry.
+ */
+public class ImageRegistryTest {
+
+  private PackedImage makeImage(SampleDepth depth) {
+    PackedImage im = new PackedImage(4, 2, 255, depth, PixelLayout.PLANAR);
+    im.setSample(1, 3, 0, 1);
+    im.setSample(0, 2, 1, 51 / 255.0);
+    im.setSample(1, 0, 2, 0.25);
+    return im;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeBudget() {
+    new ImageRegistry(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImage() {
+    new ImageRegistry().put("a", null);
+  }
+
+  @Test
+  public void testUnbounded() {
+    ImageRegistry reg = new ImageRegistry();
+    PackedImage im = this.makeImage(SampleDepth.BYTE);
+    reg.put("a", im);
+    assertSame(reg.get("a"), im);
+    assertNull(reg.get("b"));
+    assertEquals(reg.getHits(), 1);
+    assertEquals(reg.getSpills(), 0);
+    assertEquals(reg.getResidentBytes(), 24);
+    assertTrue(reg.remove("a"));
+    assertFalse(reg.contains("a"));
+    assertEquals(reg.getResidentBytes(), 0);
+  }
+
+  @Test
+  public void testSpillAndReload() {
+    for (SampleDepth depth : SampleDepth.values()) {
+      PackedImage im = this.makeImage(depth);
+      ImageRegistry reg = new ImageRegistry(im.getByteSize() + 1);
+      reg.put("a", im);
+      reg.put("b", this.makeImage(depth));
+      assertEquals(reg.getSpills(), 1);
+      assertEquals(reg.getResidentBytes(), im.getByteSize());
+      Image back = reg.get("a");
+      assertEquals(reg.getMisses(), 1);
+      assertEquals(reg.getSpills(), 2);
+      for (int r = 0; r < 2; r++) {
+        for (int c = 0; c < 4; c++) {
+          assertArrayEquals(back.getPixel(r, c), im.getPixel(r, c), 0.0);
+        }
+      }
+      assertTrue(reg.contains("b"));
+    }
+  }
+
+  @Test
+  public void testLeastRecentlyUsedSpilled() {
+    ImageRegistry reg = new ImageRegistry(48);
+    reg.put("a", this.makeImage(SampleDepth.BYTE));
+    reg.put("b", this.makeImage(SampleDepth.BYTE));
+    reg.get("a");
+    reg.put("c", new ImageImpl(new double[1][1][3], 255));
+    assertEquals(reg.getSpills(), 2);
+    reg.get("a");
+    assertEquals(reg.getMisses(), 1);
+  }
+
+  @Test
+  public void testSharedImageChargedOnce() {
+    ImageRegistry reg = new ImageRegistry();
+    PackedImage im = this.makeImage(SampleDepth.BYTE);
+    reg.put("a", im);
+    reg.put("b", im);
+    reg.put("c", im);
+    assertEquals(reg.getResidentBytes(), 24);
+    assertEquals(reg.getReferences("b"), 3);
+    reg.put("b", im);
+    assertEquals(reg.getReferences("a"), 3);
+    assertTrue(reg.remove("a"));
+    reg.put("c", this.makeImage(SampleDepth.BYTE));
+    assertEquals(reg.getReferences("b"), 1);
+    assertEquals(reg.getResidentBytes(), 48);
+    assertTrue(reg.remove("b"));
+    assertEquals(reg.getResidentBytes(), 24);
+    assertEquals(reg.getReferences("b"), 0);
+  }
+
+  @Test
+  public void testSharedImageSpilledOnce() {
+    ImageRegistry reg = new ImageRegistry(30);
+    PackedImage im = this.makeImage(SampleDepth.BYTE);
+    reg.put("a", im);
+    reg.put("b", im);
+    reg.put("c", this.makeImage(SampleDepth.BYTE));
+    assertEquals(reg.getSpills(), 1);
+    assertEquals(reg.getResidentBytes(), 24);
+    Image back = reg.get("a");
+    assertSame(reg.get("b"), back);
+    assertEquals(reg.getMisses(), 1);
+    assertEquals(reg.getSpills(), 2);
+    assertArrayEquals(back.getPixel(1, 3), im.getPixel(1, 3), 0.0);
+    assertTrue(reg.remove("a"));
+    assertSame(reg.get("b"), back);
+  }
+
+  @Test
+  public void testViewsChargedTheirSource() {
+    PackedImage im = this.makeImage(SampleDepth.BYTE);
+    ImageRegistry reg = new ImageRegistry(60);
+    reg.put("a", im);
+    reg.put("flip", RemappedImage.of(im, PixelMap.horizontalFlip(4)));
+    assertEquals(reg.getResidentBytes(), 48);
+    reg.put("b", this.makeImage(SampleDepth.BYTE));
+    assertEquals(reg.getSpills(), 1);
+    assertEquals(reg.getResidentBytes(), 48);
+    reg.put("c", this.makeImage(SampleDepth.BYTE));
+    assertEquals(reg.getSpills(), 2);
+    assertEquals(reg.getResidentBytes(), 48);
+    Image back = reg.get("flip");
+    assertTrue(back instanceof PackedImage);
+    assertEquals(((PackedImage) back).getDepth(), SampleDepth.BYTE);
+    assertArrayEquals(back.getPixel(1, 0), im.getPixel(1, 3), 0.0);
+    assertArrayEquals(back.getPixel(0, 1), im.getPixel(0, 2), 0.0);
+  }
+
+  @Test
+  public void testCloseDropsSpilledImages() {
+    PackedImage im = this.makeImage(SampleDepth.BYTE);
+    ImageRegistry reg = new ImageRegistry(30);
+    reg.put("a", im);
+    reg.put("b", this.makeImage(SampleDepth.BYTE));
+    assertEquals(reg.getSpills(), 1);
+    reg.close();
+    assertFalse(reg.contains("a"));
+    assertTrue(reg.contains("b"));
+    reg.put("c", im);
+    assertEquals(reg.getSpills(), 2);
+    assertArrayEquals(reg.get("b").getPixel(1, 3), im.getPixel(1, 3), 0.0);
+    reg.close();
+  }
+}
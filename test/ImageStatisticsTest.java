@@ -0,0 +1,147 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.Image;
+import model.ImageExecutor;
+import model.ImageProcessOperations;
+import model.ImageRegistry;
+import model.ImageStatistics;
+import model.PackedImage;
+import model.PixelLayout;
+import model.SampleDepth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Testing for image statistics and the operations built on them.
+ */
+public class ImageStatisticsTest {
+
+  private PackedImage randomImage(int w, int h, int low, int high) {
+    Random rand = new Random(5);
+    PackedImage im = new PackedImage(w, h, 255, SampleDepth.BYTE, PixelLayout.INTERLEAVED);
+    for (int r = 0; r < h; r++) {
+      for (int c = 0; c < w; c++) {
+        for (int ch = 0; ch < 3; ch++) {
+          im.setRawSample(r, c, ch, low + rand.nextInt(high - low + 1));
+        }
+      }
+    }
+    return im;
+  }
+
+  private ImageProcessOperations model(Image image) {
+    ImageRegistry registry = new ImageRegistry();
+    registry.put("a", image);
+    return new ImageProcessOperations(new ImageExecutor(), registry,
+            ImageProcessOperations.DEFAULT_MAP_THRESHOLD, false);
+  }
+
+  @Test
+  public void testSmallImage() {
+    PackedImage im = new PackedImage(2, 1, 255, SampleDepth.DOUBLE, PixelLayout.INTERLEAVED);
+    im.setRow(0, new double[]{0, 0.5, 1, 2, -1, 51 / 255.0}, 0);
+    ImageStatistics stats = new ImageExecutor().statistics(im);
+    assertEquals(stats.getPixelCount(), 2);
+    assertEquals(stats.getMinimum(0), 0, 0.0);
+    assertEquals(stats.getMaximum(0), 2, 0.0);
+    assertEquals(stats.getMean(1), -0.25, 0.0);
+    assertEquals(stats.getMean(2), (1 + 51 / 255.0) / 2, 1e-12);
+    assertEquals(stats.getHistogram(0)[0], 1);
+    assertEquals(stats.getHistogram(0)[255], 1);
+    assertEquals(stats.getHistogram(1)[0], 1);
+    assertEquals(stats.getHistogram(1)[127], 1);
+    assertEquals(stats.getHistogram(2)[51], 1);
+    assertEquals(stats.getMinimum(ImageStatistics.LUMA), 0.2126 * 2 - 0.7152 + 0.0722 * 0.2,
+            1e-12);
+    assertEquals(stats.getLow(2, 0), 51 / 255.0, 0.0);
+    assertEquals(stats.getHigh(2, 0), 1, 0.0);
+    assertEquals(stats.getHigh(2, 0.5), 51 / 255.0, 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadChannel() {
+    new ImageExecutor().statistics(this.randomImage(2, 2, 0, 255)).getMean(4);
+  }
+
+  @Test
+  public void testParallelMatchesSerial() {
+    PackedImage im = this.randomImage(150, 90, 0, 255);
+    ImageStatistics serial;
+    ImageStatistics parallel;
+    try (ImageExecutor one = new ImageExecutor(1, 1 << 20);
+         ImageExecutor four = new ImageExecutor(4, 64)) {
+      serial = one.statistics(im);
+      parallel = four.statistics(im);
+    }
+    for (int c = 0; c <= ImageStatistics.LUMA; c++) {
+      assertArrayEquals(serial.getHistogram(c), parallel.getHistogram(c));
+      assertEquals(serial.getMinimum(c), parallel.getMinimum(c), 0.0);
+      assertEquals(serial.getMaximum(c), parallel.getMaximum(c), 0.0);
+      assertEquals(serial.getMean(c), parallel.getMean(c), 1e-12);
+    }
+    assertEquals(parallel.toCsv().split("\n").length, ImageStatistics.BINS + 1);
+  }
+
+  @Test
+  public void testStatisticsKeptPerImage() {
+    ImageProcessOperations proc = this.model(this.randomImage(20, 10, 0, 255));
+    ImageStatistics stats = proc.getStatistics("a");
+    assertSame(proc.getStatistics("a"), stats);
+    proc.brighten(10, "a", "a");
+    assertNotSame(proc.getStatistics("a"), stats);
+  }
+
+  @Test
+  public void testAutoLevels() {
+    ImageProcessOperations proc = this.model(this.randomImage(40, 30, 51, 102));
+    proc.autoLevels("a", "b");
+    ImageStatistics stats = proc.getStatistics("b");
+    for (int c = 0; c < 3; c++) {
+      assertEquals(stats.getMinimum(c), 0, 0.0);
+      assertEquals(stats.getMaximum(c), 1, 0.0);
+    }
+    Image src = proc.getImage("a");
+    double expected = (src.getSample(3, 4, 1) - 51 / 255.0) / (51 / 255.0);
+    assertEquals(proc.getImage("b").getSample(3, 4, 1), expected, 1e-9);
+  }
+
+  @Test
+  public void testAutoContrastKeepsChannelsAlike() {
+    PackedImage im = this.randomImage(40, 30, 51, 102);
+    ImageStatistics before = new ImageExecutor().statistics(im);
+    double low = before.getLow(ImageStatistics.LUMA, ImageProcessOperations.AUTO_CLIP);
+    double high = before.getHigh(ImageStatistics.LUMA, ImageProcessOperations.AUTO_CLIP);
+    ImageProcessOperations proc = this.model(im);
+    proc.autoContrast("a", "b");
+    Image result = proc.getImage("b");
+    for (int c = 0; c < 3; c++) {
+      double v = im.getSample(7, 2, c);
+      assertEquals(result.getSample(7, 2, c),
+              Math.max(0, Math.min(1, (v - low) / (high - low))), 1.0 / im.getMaximumValue());
+    }
+  }
+
+  @Test
+  public void testFullRangeShared() {
+    PackedImage im = this.randomImage(100, 100, 0, 255);
+    for (int c = 0; c < 100; c++) {
+      for (int ch = 0; ch < 3; ch++) {
+        im.setRawSample(0, c, ch, 0);
+        im.setRawSample(99, c, ch, 255);
+      }
+    }
+    ImageProcessOperations proc = this.model(im);
+    proc.autoLevels("a", "b");
+    proc.autoContrast("a", "c");
+    assertSame(proc.getImage("b"), proc.getImage("a"));
+    assertSame(proc.getImage("c"), proc.getImage("a"));
+    proc.brighten(-10, "a", "d");
+    proc.autoContrast("d", "e");
+    assertNotSame(proc.getImage("e"), proc.getImage("d"));
+  }
+}
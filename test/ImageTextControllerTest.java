@@ -3,8 +3,11 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.NoSuchElementException;
 
+import controller.BatchProcessor;
 import controller.ImageTextController;
 import model.ImageImpl;
 import model.ImageProcessOperations;
@@ -13,6 +16,7 @@ import view.ImageTextView;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 
@@ -111,4 +115,67 @@ public class ImageTextControllerTest {
     new ImageTextController(proc1, view, new StringReader("load fake first quit")).run();
     assertEquals(proc1.getImage("first").getHeight(), 1);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testBatch() throws IOException {
+    this.initData();
+    Files.createDirectories(Paths.get("batchIn"));
+    ImageUtil.savePPM(im1, "batchIn/a.ppm");
+    ImageUtil.savePPM(im1, "batchIn/b.ppm");
+    Files.writeString(Paths.get("batchIn/script.txt"),
+            "load $input img\nhorizontal-flip img flipped\nsave $dir/$name-flipped.ppm flipped\n");
+    new ImageTextController(proc1, view,
+            new StringReader("batch batchIn/script.txt batchIn/*.ppm batchOut quit")).run();
+    assertTrue(sb.toString().contains("Batch finished: 2 files (0 failed)"));
+    proc1.load("batchOut/b-flipped.ppm", "flipped");
+    assertArrayEquals(proc1.getImage("flipped").getPixel(0, 1), im1.getPixel(0, 0), 0.0);
+  }
+
+  @Test
+  public void testBatchPathsWithSpaces() throws IOException {
+    this.initData();
+    Files.createDirectories(Paths.get("batch spaced"));
+    ImageUtil.savePPM(im1, "batch spaced/a b.ppm");
+    String script = "load $input img\nhorizontal-flip img flipped\n"
+            + "save $dir/$name-flipped.ppm flipped\n";
+    int failed = new BatchProcessor(ImageProcessOperations::new, 2).run(script,
+            BatchProcessor.match("batch spaced/*.ppm"), Paths.get("batch out"), view);
+    assertEquals(failed, 0);
+    proc1.load("batch out/a b-flipped.ppm", "flipped");
+    assertArrayEquals(proc1.getImage("flipped").getPixel(0, 1), im1.getPixel(0, 0), 0.0);
+  }
+
+  @Test
+  public void testBatchReportsFailures() throws IOException {
+    this.initData();
+    Files.createDirectories(Paths.get("batchIn"));
+    ImageUtil.savePPM(im1, "batchIn/a.ppm");
+    Files.writeString(Paths.get("batchIn/bad.txt"),
+            "load $input img\nluma-component nope x\nsave $output x\n");
+    new ImageTextController(proc1, view,
+            new StringReader("batch batchIn/bad.txt batchIn/a.ppm batchOut quit")).run();
+    assertTrue(sb.toString().contains("Error: Script has 1 error: Line 2: nope does not exist"));
+    assertFalse(sb.toString().contains("Batch finished"));
+
+    Files.writeString(Paths.get("batchIn/missing.txt"),
+            "load $dir/missing.ppm img\nsave $output img\n");
+    new ImageTextController(proc1, view,
+            new StringReader("batch batchIn/missing.txt batchIn/a.ppm batchOut quit")).run();
+    assertTrue(sb.toString().contains("failed (Error: Line 1: File cannot be retrieved"));
+  }
+
+  @Test
+  public void testRunScript() throws IOException {
+    this.initData();
+    proc1.load("res/k.PPM", "k");
+    Files.writeString(Paths.get("script.txt"), "brighten 10 k bright\n"
+            + "horizontal-flip k unused\nsave scriptK.ppm bright\n");
+    new ImageTextController(proc1, view, new StringReader("run-script script.txt quit")).run();
+    assertTrue(sb.toString().contains("Running 2 commands of script.txt, 1 unused commands"));
+    assertTrue(sb.toString().contains("Script finished with 0 failed commands"));
+    proc1.load("scriptK.ppm", "saved");
+    proc1.brighten(10, "k", "expected");
+    assertArrayEquals(proc1.getImage("expected").getPixel(1, 1),
+            proc1.getImage("saved").getPixel(1, 1), 0.0);
+  }
+}
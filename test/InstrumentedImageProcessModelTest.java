@@ -0,0 +1,116 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import controller.ImageTextController;
+import model.Image;
+import model.ImageExecutor;
+import model.ImageProcessOperations;
+import model.InstrumentedImageProcessModel;
+import model.OperationStats;
+import model.PipelineImage;
+import model.PpmFormat;
+import view.ImageTextView;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testing for the per-operation statistics.
+ */
+public class InstrumentedImageProcessModelTest {
+
+  @Test
+  public void testRecordsCalls() throws IOException {
+    ImageProcessOperations plain = new ImageProcessOperations();
+    InstrumentedImageProcessModel m = new InstrumentedImageProcessModel(plain);
+    m.load("res/k.PPM", "k");
+    m.brighten(10, "k", "bright");
+    m.brighten(-10, "bright", "back");
+    m.save("statsK.ppm", "bright", PpmFormat.P6);
+    try {
+      m.redComponent("missing", "red");
+      fail("a missing image should be reported");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    Image k = m.getImage("k");
+    long pixels = (long) k.getWidth() * k.getHeight();
+    OperationStats load = m.getStats().get("load");
+    assertEquals(1, load.getCount());
+    assertEquals(pixels, load.getPixels());
+    assertEquals(Files.size(Paths.get("res/k.PPM")), load.getBytesRead());
+    OperationStats brighten = m.getStats().get("brighten");
+    assertEquals(2, brighten.getCount());
+    assertEquals(2 * pixels, brighten.getPixels());
+    assertEquals(2, sum(brighten.getBucketCounts()));
+    assertEquals(Files.size(Paths.get("statsK.ppm")),
+            m.getStats().get("save-binary").getBytesWritten());
+    OperationStats red = m.getStats().get("red-component");
+    assertEquals(1, red.getErrors());
+    assertEquals(0, red.getPixels());
+    assertArrayEquals(plain.getImage("bright").getPixel(2, 3), m.getImage("bright").getPixel(2, 3),
+            0.0);
+  }
+
+  @Test
+  public void testLazyModelNotForced() throws IOException {
+    ImageProcessOperations lazy = new ImageProcessOperations(new ImageExecutor(),
+            ImageProcessOperations.DEFAULT_MAP_THRESHOLD, true);
+    InstrumentedImageProcessModel m = new InstrumentedImageProcessModel(lazy);
+    m.load("res/k.PPM", "a");
+    m.brighten(10, "a", "a");
+    m.horizontalFlip("a", "a");
+    assertTrue(lazy.getStoredImage("a") instanceof PipelineImage);
+    Image a = m.getStoredImage("a");
+    assertEquals((long) a.getWidth() * a.getHeight(), m.getStats().get("brighten").getPixels());
+    assertFalse(m.getImage("a") instanceof PipelineImage);
+  }
+
+  @Test
+  public void testExports() throws IOException {
+    InstrumentedImageProcessModel m = new InstrumentedImageProcessModel(
+            new ImageProcessOperations());
+    m.load("res/k.PPM", "k");
+    m.lumaComponent("k", "luma");
+    m.lumaComponent("luma", "luma");
+    String json = m.toJson();
+    assertTrue(json.startsWith("{\"bucketBoundsSeconds\":["));
+    assertTrue(json.contains("\"luma-component\":{\"count\":2,\"errors\":0,"));
+    String prometheus = m.toPrometheus();
+    assertTrue(prometheus.contains(
+            "image_operation_seconds_bucket{operation=\"luma-component\",le=\"+Inf\"} 2\n"));
+    assertTrue(prometheus.contains("image_operation_seconds_count{operation=\"load\"} 1\n"));
+    assertTrue(prometheus.contains("# TYPE image_operation_pixels_total counter\n"));
+  }
+
+  @Test
+  public void testControllerCommands() throws IOException {
+    InstrumentedImageProcessModel m = new InstrumentedImageProcessModel(
+            new ImageProcessOperations());
+    StringBuilder sb = new StringBuilder();
+    new ImageTextController(m, new ImageTextView(m, sb), new StringReader(
+            "load res/k.PPM k sharpen k sharp stats stats-export stats.prom prometheus "
+                    + "stats-export stats.txt xml quit")).run();
+    assertTrue(sb.toString().contains("sharpen: 1 calls (0 failed)"));
+    assertTrue(sb.toString().contains("Statistics have been written to stats.prom"));
+    assertTrue(sb.toString().contains("Error: xml is not json or prometheus"));
+    assertTrue(Files.readString(Paths.get("stats.prom"))
+            .contains("image_operation_seconds_count{operation=\"sharpen\"} 1\n"));
+  }
+
+  private static long sum(long[] counts) {
+    long total = 0;
+    for (long c : counts) {
+      total += c;
+    }
+    return total;
+  }
+}
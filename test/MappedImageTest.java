@@ -0,0 +1,97 @@
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import model.Image;
+import model.ImageExecutor;
+import model.ImageImpl;
+import model.ImageProcessOperations;
+import model.ImageUtil;
+import model.MappedImage;
+import model.PpmFormat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing for images memory-mapped from binary files.
+ */
+public class MappedImageTest {
+
+  private ImageImpl makeImage(int maxValue) {
+    double[][][] pix = new double[3][2][3];
+    pix[0][0] = new double[]{1, 0.5, 0};
+    pix[2][1] = new double[]{0.2, 0.4, 0.6};
+    pix[1][0] = new double[]{3, 2, 1};
+    return new ImageImpl(pix, maxValue);
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testMissingFile() throws FileNotFoundException {
+    MappedImage.open("missingMapped");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPlainFile() throws IOException {
+    ImageUtil.savePPM(this.makeImage(255), "plainMapped");
+    MappedImage.open("plainMapped");
+  }
+
+  @Test
+  public void testSameAsRead() throws IOException {
+    for (int maxValue : new int[]{255, 1023}) {
+      ImageUtil.savePPM(this.makeImage(maxValue), "binaryMapped", PpmFormat.P6);
+      Image read = ImageUtil.readPPM("binaryMapped");
+      MappedImage mapped = MappedImage.open("binaryMapped");
+      assertEquals(mapped.getWidth(), 2);
+      assertEquals(mapped.getHeight(), 3);
+      assertEquals(mapped.getMaximumValue(), maxValue);
+      double[] row1 = new double[6];
+      double[] row2 = new double[6];
+      for (int r = 0; r < 3; r++) {
+        read.getRow(r, row1, 0);
+        mapped.getRow(r, row2, 0);
+        assertArrayEquals(row1, row2, 0.0);
+        assertArrayEquals(read.getPixel(r, 1), mapped.getPixel(r, 1), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testModelMapsLargeFiles() throws IOException {
+    ImageUtil.savePPM(this.makeImage(255), "binaryMapped", PpmFormat.P6);
+    ImageProcessOperations proc1 = new ImageProcessOperations(new ImageExecutor(), 0);
+    proc1.load("binaryMapped", "mapped");
+    assertTrue(proc1.getImage("mapped") instanceof MappedImage);
+    proc1.verticalFlip("mapped", "flipped");
+    assertArrayEquals(proc1.getImage("flipped").getPixel(0, 1),
+            new double[]{51 / 255.0, 102 / 255.0, 153 / 255.0}, 0.0);
+  }
+
+  @Test
+  public void testSaveOntoMappedSource() throws IOException {
+    int w = 200;
+    int h = 300;
+    double[][][] pix = new double[h][w][3];
+    for (int r = 0; r < h; r++) {
+      for (int c = 0; c < w; c++) {
+        pix[r][c] = new double[]{c / 255.0, (r % 256) / 255.0, 7 / 255.0};
+      }
+    }
+    ImageUtil.savePPM(new ImageImpl(pix, 255), "mappedSelf", PpmFormat.P6);
+    ImageProcessOperations proc1 = new ImageProcessOperations(new ImageExecutor(), 0);
+    proc1.load("mappedSelf", "a");
+    assertTrue(proc1.getImage("a") instanceof MappedImage);
+    proc1.horizontalFlip("a", "b");
+    proc1.save("mappedSelf", "b", PpmFormat.P6);
+    assertEquals(Files.size(Paths.get("mappedSelf")), ("P6\n200 300\n255\n").length() + w * h * 3);
+    Image saved = ImageUtil.readPPM("mappedSelf");
+    assertArrayEquals(saved.getPixel(5, 0), new double[]{199 / 255.0, 5 / 255.0, 7 / 255.0}, 0.0);
+    assertArrayEquals(proc1.getImage("a").getPixel(5, 0), new double[]{0, 5 / 255.0, 7 / 255.0},
+            0.0);
+  }
+}
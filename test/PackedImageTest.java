@@ -0,0 +1,100 @@
+import org.junit.Test;
+
+import model.ImageImpl;
+import model.PackedImage;
+import model.PixelLayout;
+import model.SampleDepth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Testing class for images stored in a flat primitive buffer.
+ */
+public class PackedImageTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadDimensions() {
+    new PackedImage(0, 5, 255, SampleDepth.BYTE, PixelLayout.INTERLEAVED);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDepth() {
+    new PackedImage(5, 5, 255, null, PixelLayout.INTERLEAVED);
+  }
+
+  @Test
+  public void testDimensions() {
+    PackedImage im1 = new PackedImage(20, 10, 255, SampleDepth.BYTE, PixelLayout.PLANAR);
+    assertEquals(im1.getWidth(), 20);
+    assertEquals(im1.getHeight(), 10);
+    assertEquals(im1.getMaximumValue(), 255);
+    assertEquals(im1.getByteSize(), 600);
+  }
+
+  @Test
+  public void testRawSamples() {
+    for (PixelLayout layout : PixelLayout.values()) {
+      PackedImage im1 = new PackedImage(3, 2, 255, SampleDepth.BYTE, layout);
+      im1.setRawSample(1, 2, 0, 255);
+      im1.setRawSample(1, 2, 1, 51);
+      im1.setRawSample(0, 1, 2, 7);
+      assertArrayEquals(im1.getPixel(1, 2), new double[]{1, 51 / 255.0, 0}, 0.0);
+      assertEquals(im1.getRawSample(0, 1, 2), 7);
+      assertEquals(im1.getRawSample(0, 0, 0), 0);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRawSampleTooLarge() {
+    PackedImage im1 = new PackedImage(1, 1, 255, SampleDepth.BYTE, PixelLayout.INTERLEAVED);
+    im1.setRawSample(0, 0, 0, 256);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRawSampleOfFloatImage() {
+    PackedImage im1 = new PackedImage(1, 1, 255, SampleDepth.FLOAT, PixelLayout.INTERLEAVED);
+    im1.getRawSample(0, 0, 0);
+  }
+
+  @Test
+  public void testShortSamples() {
+    PackedImage im1 = new PackedImage(1, 1, 255, SampleDepth.SHORT, PixelLayout.INTERLEAVED);
+    im1.setRawSample(0, 0, 0, 1275);
+    assertEquals(im1.getPixel(0, 0)[0], 5.0, 0.0);
+  }
+
+  @Test
+  public void testConvertAndCopy() {
+    double[][][] pix = new double[2][2][3];
+    pix[1][0] = new double[]{5, 10, 20};
+    pix[0][1] = new double[]{0.25, 0.5, 1};
+    PackedImage im1 = PackedImage.copyOf(new ImageImpl(pix, 255), SampleDepth.DOUBLE,
+            PixelLayout.PLANAR);
+    assertArrayEquals(im1.getPixel(1, 0), new double[]{5, 10, 20}, 0.0);
+    PackedImage im2 = im1.convert(SampleDepth.SHORT);
+    assertEquals(im2.getRawSample(0, 1, 1), 128);
+    assertEquals(im2.getRawSample(1, 0, 2), 5100);
+    assertEquals(im2.getLayout(), PixelLayout.PLANAR);
+  }
+
+  @Test
+  public void testRowsAndRegions() {
+    for (SampleDepth depth : SampleDepth.values()) {
+      for (PixelLayout layout : PixelLayout.values()) {
+        PackedImage im1 = new PackedImage(3, 2, 255, depth, layout);
+        double[] row = new double[]{9, 9, 0, 0, 0, 51 / 255.0, 1, 1, 1, 0, 1};
+        im1.setRow(1, row, 2);
+        assertArrayEquals(im1.getPixel(1, 1), new double[]{51 / 255.0, 1, 1}, 1e-6);
+        double[] region = new double[7];
+        im1.getRegion(1, 1, 1, 2, region, 1);
+        assertArrayEquals(region, new double[]{0, 51 / 255.0, 1, 1, 1, 0, 1}, 1e-6);
+        im1.setRegion(0, 2, 2, 1, new double[]{1, 0, 0, 0, 0, 1}, 0);
+        double[] full = new double[9];
+        im1.getRow(0, full, 0);
+        assertArrayEquals(full, new double[]{0, 0, 0, 0, 0, 0, 1, 0, 0}, 1e-6);
+        assertEquals(im1.getSample(1, 2, 2), 1, 1e-6);
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import model.ImageProcessOperations;
+import model.ImageUtil;
+import model.PpmFormat;
+import model.PpmStreamer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Testing for streaming point operations from file to file.
+ */
+public class PpmStreamerTest {
+
+  private Path makeFile(Path dir, PpmFormat format, int max) throws IOException {
+    Path file = dir.resolve("in-" + format + ".ppm");
+    ImageProcessOperations m = new ImageProcessOperations();
+    StringBuilder text = new StringBuilder("P3\n5 4\n" + max + "\n");
+    for (int i = 0; i < 5 * 4 * 3; i++) {
+      text.append((i * 37 + 11) % (max + 1)).append("\n");
+    }
+    Path p3 = dir.resolve("text.ppm");
+    Files.write(p3, text.toString().getBytes());
+    m.load(p3.toString(), "src");
+    m.save(file.toString(), "src", format);
+    return file;
+  }
+
+  private void assertStreamsLikeModel(PpmFormat format, int max, String... ops)
+          throws IOException {
+    Path dir = Files.createTempDirectory("stream");
+    Path in = this.makeFile(dir, format, max);
+    Path streamed = dir.resolve("streamed.ppm");
+    Path expected = dir.resolve("expected.ppm");
+    new PpmStreamer(Arrays.asList(ops)).stream(in.toString(), streamed.toString());
+
+    ImageProcessOperations m = new ImageProcessOperations();
+    m.load(in.toString(), "img");
+    for (String op : ops) {
+      String[] parts = op.split(":");
+      switch (parts[0]) {
+        case "brighten":
+          m.brighten(Integer.parseInt(parts[1]), "img", "img");
+          break;
+        case "red-component":
+          m.redComponent("img", "img");
+          break;
+        case "luma-component":
+          m.lumaComponent("img", "img");
+          break;
+        case "value-component":
+          m.valueComponent("img", "img");
+          break;
+        case "horizontal-flip":
+          m.horizontalFlip("img", "img");
+          break;
+        default:
+          m.verticalFlip("img", "img");
+      }
+    }
+    m.save(expected.toString(), "img", format);
+    assertEquals(format, ImageUtil.readFormat(streamed.toString()));
+    assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(streamed));
+  }
+
+  @Test
+  public void testPointOperationsP3() throws IOException {
+    this.assertStreamsLikeModel(PpmFormat.P3, 255, "brighten:40", "luma-component");
+  }
+
+  @Test
+  public void testPointOperationsP6() throws IOException {
+    this.assertStreamsLikeModel(PpmFormat.P6, 255, "red-component", "brighten:-25");
+  }
+
+  @Test
+  public void testFlips() throws IOException {
+    this.assertStreamsLikeModel(PpmFormat.P6, 255, "horizontal-flip", "vertical-flip",
+            "value-component");
+    this.assertStreamsLikeModel(PpmFormat.P3, 255, "vertical-flip", "brighten:10");
+    this.assertStreamsLikeModel(PpmFormat.P3, 255, "vertical-flip", "vertical-flip");
+  }
+
+  @Test
+  public void testWideSamples() throws IOException {
+    this.assertStreamsLikeModel(PpmFormat.P6, 1000, "vertical-flip", "brighten:300");
+  }
+
+  @Test
+  public void testRoundsEveryOperation() throws IOException {
+    this.assertStreamsLikeModel(PpmFormat.P3, 255, "luma-component", "brighten:-7",
+            "value-component", "luma-component", "brighten:3", "luma-component");
+    this.assertStreamsLikeModel(PpmFormat.P6, 1000, "brighten:-99", "luma-component",
+            "horizontal-flip", "brighten:17", "luma-component");
+  }
+
+  @Test
+  public void testRejectsOperations() {
+    for (String op : new String[] {"gaussian-blur", "brighten", "brighten:x", "sepia"}) {
+      try {
+        new PpmStreamer(Arrays.asList(op));
+        fail(op + " should not be streamed");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsFiles() throws IOException {
+    Path dir = Files.createTempDirectory("stream");
+    PpmStreamer s = new PpmStreamer(Arrays.asList("red-component"));
+    try {
+      s.stream(dir.resolve("missing.ppm").toString(), dir.resolve("out.ppm").toString());
+      fail("missing input should be reported");
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+    Path in = this.makeFile(dir, PpmFormat.P3, 255);
+    try {
+      s.stream(in.toString(), in.toString());
+      fail("streaming onto the input should be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,72 @@
+import org.junit.Test;
+
+import model.Image;
+import model.ImageExecutor;
+import model.ImageImpl;
+import model.ImageProcessOperations;
+import model.PackedImage;
+import model.PixelLayout;
+import model.PixelMap;
+import model.RemappedImage;
+import model.SampleDepth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing for remapped views of images.
+ */
+public class RemappedImageTest {
+
+  private ImageImpl makeImage() {
+    double[][][] pix = new double[2][3][3];
+    pix[0][0] = new double[]{1, 2, 3};
+    pix[1][2] = new double[]{4, 5, 6};
+    pix[0][1] = new double[]{7, 8, 9};
+    return new ImageImpl(pix, 255);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullSource() {
+    RemappedImage.of(null, PixelMap.identity());
+  }
+
+  @Test
+  public void testIdentityIsSource() {
+    Image im = this.makeImage();
+    assertSame(RemappedImage.of(im, PixelMap.identity()), im);
+  }
+
+  @Test
+  public void testFlipsCompose() {
+    Image im = this.makeImage();
+    Image h = RemappedImage.of(im, PixelMap.horizontalFlip(3));
+    Image hv = RemappedImage.of(h, PixelMap.verticalFlip(2));
+    assertArrayEquals(h.getPixel(0, 2), new double[]{1, 2, 3}, 0.0);
+    assertArrayEquals(hv.getPixel(0, 0), new double[]{4, 5, 6}, 0.0);
+    assertSame(((RemappedImage) hv).getSource(), im);
+    assertSame(RemappedImage.of(h, PixelMap.horizontalFlip(3)), im);
+    double[] row = new double[9];
+    hv.getRow(1, row, 0);
+    assertArrayEquals(row, new double[]{0, 0, 0, 7, 8, 9, 1, 2, 3}, 0.0);
+  }
+
+  @Test
+  public void testModelFlipsAreViews() {
+    ImageProcessOperations proc1 = new ImageProcessOperations();
+    PackedImage src = PackedImage.copyOf(this.makeImage(), SampleDepth.DOUBLE,
+            PixelLayout.INTERLEAVED);
+    ImageExecutor executor = new ImageExecutor();
+    assertArrayEquals(((RemappedImage) RemappedImage.of(src, PixelMap.verticalFlip(2)))
+            .materialize(executor).getPixel(0, 2), new double[]{4, 5, 6}, 0.0);
+    proc1.getRegistry().put("src", src);
+    proc1.horizontalFlip("src", "h");
+    proc1.horizontalFlip("h", "hh");
+    assertTrue(proc1.getImage("h") instanceof RemappedImage);
+    assertSame(proc1.getImage("hh"), src);
+    proc1.force("h");
+    assertTrue(proc1.getImage("h") instanceof PackedImage);
+    assertArrayEquals(proc1.getImage("h").getPixel(0, 2), new double[]{1, 2, 3}, 0.0);
+  }
+}
@@ -0,0 +1,148 @@
+import org.junit.Test;
+
+import model.Image;
+import model.ImageExecutor;
+import model.ImageProcessOperations;
+import model.PackedImage;
+import model.PixelLayout;
+import model.ResampleFilter;
+import model.SampleDepth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Testing for resizing images with resampling filters.
+ */
+public class ResamplerTest {
+
+  private PackedImage fill(int w, int h, double value) {
+    PackedImage im = new PackedImage(w, h, 255, SampleDepth.DOUBLE, PixelLayout.INTERLEAVED);
+    for (int r = 0; r < h; r++) {
+      for (int c = 0; c < w; c++) {
+        for (int ch = 0; ch < 3; ch++) {
+          im.setSample(r, c, ch, value);
+        }
+      }
+    }
+    return im;
+  }
+
+  @Test
+  public void testSameSizeKeepsPixels() {
+    PackedImage src = TestImages.random(17, 9, 11, SampleDepth.DOUBLE);
+    ImageExecutor ex = new ImageExecutor();
+    for (ResampleFilter f : ResampleFilter.values()) {
+      Image out = ex.resample(src, 17, 9, f);
+      for (int r = 0; r < 9; r++) {
+        for (int c = 0; c < 17; c++) {
+          assertArrayEquals(src.getPixel(r, c), out.getPixel(r, c), 1e-9);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testConstantStaysConstant() {
+    PackedImage src = this.fill(90, 61, 0.4);
+    ImageExecutor ex = new ImageExecutor();
+    for (ResampleFilter f : ResampleFilter.values()) {
+      for (int[] size : new int[][] {{7, 5}, {45, 30}, {200, 13}, {1, 1}}) {
+        Image out = ex.resample(src, size[0], size[1], f);
+        assertEquals(size[0], out.getWidth());
+        assertEquals(size[1], out.getHeight());
+        for (int r = 0; r < out.getHeight(); r++) {
+          for (int c = 0; c < out.getWidth(); c++) {
+            assertArrayEquals(new double[] {0.4, 0.4, 0.4}, out.getPixel(r, c), 1e-9);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testNearestDuplicatesPixels() {
+    PackedImage src = TestImages.random(5, 4, 11, SampleDepth.DOUBLE);
+    Image out = new ImageExecutor().resample(src, 10, 8, ResampleFilter.NEAREST);
+    for (int r = 0; r < 8; r++) {
+      for (int c = 0; c < 10; c++) {
+        assertArrayEquals(src.getPixel(r / 2, c / 2), out.getPixel(r, c), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testBilinearHalvesCheckerboard() {
+    PackedImage src = new PackedImage(16, 16, 255, SampleDepth.DOUBLE, PixelLayout.INTERLEAVED);
+    for (int r = 0; r < 16; r++) {
+      for (int c = 0; c < 16; c++) {
+        for (int ch = 0; ch < 3; ch++) {
+          src.setSample(r, c, ch, (r + c) % 2);
+        }
+      }
+    }
+    Image out = new ImageExecutor().resample(src, 8, 8, ResampleFilter.BILINEAR);
+    for (int r = 1; r < 7; r++) {
+      for (int c = 1; c < 7; c++) {
+        assertArrayEquals(new double[] {0.5, 0.5, 0.5}, out.getPixel(r, c), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testLargeDownscaleAveragesBlocks() {
+    int w = 1200;
+    PackedImage src = new PackedImage(w, 300, 255, SampleDepth.DOUBLE, PixelLayout.INTERLEAVED);
+    for (int r = 0; r < 300; r++) {
+      for (int c = 0; c < w; c++) {
+        for (int ch = 0; ch < 3; ch++) {
+          src.setSample(r, c, ch, c / (w - 1.0));
+        }
+      }
+    }
+    Image out = new ImageExecutor().resample(src, 12, 3, ResampleFilter.LANCZOS);
+    for (int c = 1; c < 11; c++) {
+      assertEquals((c + 0.5) / 12, out.getPixel(1, c)[0], 0.01);
+    }
+  }
+
+  @Test
+  public void testParallelMatchesSerial() {
+    PackedImage src = TestImages.random(640, 480, 11, SampleDepth.DOUBLE);
+    try (ImageExecutor one = new ImageExecutor(1, 1 << 20);
+         ImageExecutor four = new ImageExecutor(4, 64)) {
+      Image serial = one.resample(src, 97, 203, ResampleFilter.BICUBIC);
+      Image parallel = four.resample(src, 97, 203, ResampleFilter.BICUBIC);
+      for (int r = 0; r < 203; r++) {
+        for (int c = 0; c < 97; c++) {
+          assertArrayEquals(serial.getPixel(r, c), parallel.getPixel(r, c), 0.0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testModelScale() throws Exception {
+    ImageProcessOperations m = new ImageProcessOperations();
+    m.load("res/k.PPM", "k");
+    Image k = m.getImage("k");
+    m.scale(0.5, ResampleFilter.BILINEAR, "k", "half");
+    assertEquals(Math.round(k.getWidth() * 0.5), m.getImage("half").getWidth());
+    assertEquals(Math.round(k.getHeight() * 0.5), m.getImage("half").getHeight());
+    m.resize(3, 40, ResampleFilter.LANCZOS, "k", "thin");
+    assertEquals(3, m.getImage("thin").getWidth());
+    assertEquals(40, m.getImage("thin").getHeight());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadFilter() {
+    ResampleFilter.fromName("sinc");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadSize() throws Exception {
+    ImageProcessOperations m = new ImageProcessOperations();
+    m.load("res/k.PPM", "k");
+    m.resize(0, 10, ResampleFilter.BICUBIC, "k", "none");
+  }
+}
@@ -0,0 +1,131 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import model.CachedImageProcessModel;
+import model.ContentHash;
+import model.Image;
+import model.ImageProcessOperations;
+import model.PackedImage;
+import model.PixelLayout;
+import model.ResultCache;
+import model.SampleDepth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Testing for the content-addressed result cache.
+ */
+public class ResultCacheTest {
+
+  private PackedImage makeImage(SampleDepth depth) {
+    PackedImage im = new PackedImage(6, 3, 255, depth, PixelLayout.INTERLEAVED);
+    for (int r = 0; r < 3; r++) {
+      for (int c = 0; c < 6; c++) {
+        im.setSample(r, c, 0, (r * 6 + c) / 255.0);
+        im.setSample(r, c, 1, (200 - c) / 255.0);
+        im.setSample(r, c, 2, 7 / 255.0);
+      }
+    }
+    return im;
+  }
+
+  private void assertSamePixels(Image expected, Image actual) {
+    for (int r = 0; r < expected.getHeight(); r++) {
+      for (int c = 0; c < expected.getWidth(); c++) {
+        assertArrayEquals(expected.getPixel(r, c), actual.getPixel(r, c), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testContentHash() {
+    PackedImage bytes = this.makeImage(SampleDepth.BYTE);
+    assertEquals(ContentHash.of(bytes), ContentHash.of(this.makeImage(SampleDepth.DOUBLE)));
+    assertEquals(32, ContentHash.of(bytes).length());
+    PackedImage changed = this.makeImage(SampleDepth.BYTE);
+    changed.setSample(2, 5, 2, 8 / 255.0);
+    assertNotEquals(ContentHash.of(bytes), ContentHash.of(changed));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeBudget() {
+    new ResultCache(-1);
+  }
+
+  @Test
+  public void testRepeatedOperationIsServed() {
+    ResultCache cache = new ResultCache(1 << 20);
+    ImageProcessOperations inner = new ImageProcessOperations();
+    CachedImageProcessModel m = new CachedImageProcessModel(inner, cache);
+    inner.getRegistry().put("a", this.makeImage(SampleDepth.BYTE));
+    inner.getRegistry().put("copy", this.makeImage(SampleDepth.DOUBLE));
+    m.brighten(30, "a", "bright");
+    m.brighten(30, "copy", "again");
+    m.brighten(31, "copy", "other");
+    m.lumaComponent("a", "luma");
+    assertSame(m.getImage("bright"), m.getImage("again"));
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+    assertEquals(6 * 3 * 3, cache.getBytesSaved());
+    assertEquals(0.25, cache.getHitRate(), 0.0);
+
+    ImageProcessOperations plain = new ImageProcessOperations();
+    plain.getRegistry().put("a", this.makeImage(SampleDepth.DOUBLE));
+    plain.brighten(31, "a", "other");
+    this.assertSamePixels(plain.getImage("other"), m.getImage("other"));
+  }
+
+  @Test
+  public void testNegativeAmountsKeptApart() {
+    ResultCache cache = new ResultCache(1 << 20);
+    ImageProcessOperations inner = new ImageProcessOperations();
+    CachedImageProcessModel m = new CachedImageProcessModel(inner, cache);
+    inner.getRegistry().put("a", this.makeImage(SampleDepth.BYTE));
+    m.brighten(10, "a", "up");
+    m.brighten(-10, "a", "down");
+    assertEquals(210 / 255.0, m.getImage("up").getSample(0, 0, 1), 1e-12);
+    assertEquals(190 / 255.0, m.getImage("down").getSample(0, 0, 1), 1e-12);
+    assertEquals(0, cache.getHits());
+    Image a = inner.getImage("a");
+    assertNotEquals(cache.key(a, "brighten 10"), cache.key(a, "brighten -10"));
+    assertNotEquals(cache.key(a, "scale 1.5 box"), cache.key(a, "scale 1_5 box"));
+  }
+
+  @Test
+  public void testDiskTier() throws IOException {
+    Path dir = Files.createTempDirectory("result-cache");
+    PackedImage a = this.makeImage(SampleDepth.DOUBLE);
+    PackedImage b = this.makeImage(SampleDepth.BYTE);
+    ResultCache cache = new ResultCache(a.getByteSize(), dir, 1 << 20);
+    cache.put("a", a);
+    cache.put("b", b);
+    assertEquals(b.getByteSize(), cache.getMemoryBytes());
+    assertEquals(1, Files.list(dir).count());
+
+    ResultCache later = new ResultCache(0, dir, 1 << 20);
+    this.assertSamePixels(a, later.get("a"));
+    assertNull(later.get("b"));
+    assertEquals(1, later.getDiskHits());
+    assertEquals(1, later.getMisses());
+  }
+
+  @Test
+  public void testDiskBudget() throws IOException {
+    Path dir = Files.createTempDirectory("result-cache");
+    PackedImage im = this.makeImage(SampleDepth.DOUBLE);
+    ResultCache cache = new ResultCache(0, dir, 2 * (im.getByteSize() + 16));
+    for (String key : new String[] {"a", "b", "c", "d"}) {
+      cache.put(key, this.makeImage(SampleDepth.DOUBLE));
+    }
+    assertEquals(2, Files.list(dir).count());
+    assertNull(cache.get("a"));
+    this.assertSamePixels(im, cache.get("c"));
+  }
+}
@@ -0,0 +1,127 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import controller.CommandGraph;
+import controller.ScriptCompiler;
+import model.ImageImpl;
+import model.ImageProcessOperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testing for compiling scripts into command graphs and running them.
+ */
+public class ScriptCompilerTest {
+
+  private ImageProcessOperations modelWith(String name) {
+    ImageProcessOperations m = new ImageProcessOperations();
+    double[][][] pixels = new double[4][5][3];
+    for (int r = 0; r < 4; r++) {
+      for (int c = 0; c < 5; c++) {
+        pixels[r][c] = new double[] {r / 4.0, c / 5.0, (r + c) / 9.0};
+      }
+    }
+    m.getRegistry().put(name, new ImageImpl(pixels, 255));
+    return m;
+  }
+
+  @Test
+  public void testReportsEveryError() {
+    try {
+      ScriptCompiler.compile("load a.ppm a\nbrighten ten a b\nblur a c\n"
+              + "luma-component missing d\ngaussian-blur 0 a e\nsave", name -> false);
+      fail("Script should not compile");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Script has 5 errors: Line 2: ten is not an integer; "
+              + "Line 3: blur is not a supported operation; Line 4: missing does not exist; "
+              + "Line 5: the radius of gaussian-blur must be positive; "
+              + "Line 6: save expects 2 arguments", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testResampling() {
+    CommandGraph g = ScriptCompiler.compile("resize 64 48 lanczos k small\n"
+            + "scale 0.25 nearest small tiny\nsave tiny.ppm tiny", name -> name.equals("k"));
+    assertEquals(3, g.getCommandCount());
+    try {
+      ScriptCompiler.compile("resize 64 x bicubic k a\nscale 2 sinc k b\nscale -1 bilinear k c",
+          name -> name.equals("k"));
+      fail("Script should not compile");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Script has 3 errors: "));
+      assertTrue(e.getMessage(), e.getMessage().contains("Line 2: sinc is not nearest"));
+    }
+  }
+
+  @Test
+  public void testExistingImages() {
+    CommandGraph g = ScriptCompiler.compile("red-component k r, save r.ppm r",
+        name -> name.equals("k"));
+    assertEquals(2, g.getCommandCount());
+  }
+
+  @Test
+  public void testUnusedCommandsRemoved() {
+    CommandGraph g = ScriptCompiler.compile("load a.ppm a\nload b.ppm b\n"
+            + "brighten 10 a bright\nluma-component bright grey\nvertical-flip b flipped\n"
+            + "save out.ppm bright\nquit\nsave never.ppm flipped", name -> false);
+    assertEquals(3, g.getCommandCount());
+    assertEquals(3, g.getEliminatedCount());
+    assertArrayEquals(new int[] {}, g.getDependencies(0));
+    assertArrayEquals(new int[] {0}, g.getDependencies(1));
+    assertArrayEquals(new int[] {1}, g.getDependencies(2));
+  }
+
+  @Test
+  public void testOverwritesWaitForReaders() {
+    CommandGraph g = ScriptCompiler.compile("brighten 10 k a\nsave one.ppm a\n"
+            + "red-component k a\nsave two.ppm a\nload two.ppm k\nsave one.ppm k",
+        name -> name.equals("k"));
+    assertEquals(6, g.getCommandCount());
+    assertArrayEquals(new int[] {0, 1}, g.getDependencies(2));
+    assertArrayEquals(new int[] {3, 0, 2}, g.getDependencies(4));
+    assertArrayEquals(new int[] {4, 1}, g.getDependencies(5));
+  }
+
+  @Test
+  public void testParallelMatchesInOrder() throws IOException {
+    String script = "brighten 40 k a\nluma-component a b\nhorizontal-flip k c\n"
+            + "sharpen c d\nintensity-component d d\nvalue-component b e\n"
+            + "save e.ppm e\nsave d.ppm d\n";
+    ImageProcessOperations serial = this.modelWith("k");
+    ImageProcessOperations parallel = this.modelWith("k");
+    CommandGraph g = ScriptCompiler.compile(script.replace(".ppm", "-serial.ppm"),
+        name -> name.equals("k"));
+    assertTrue(g.run(serial, Runnable::run).isEmpty());
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<String> errors = ScriptCompiler.compile(script.replace(".ppm", "-parallel.ppm"),
+        name -> name.equals("k")).run(parallel, pool);
+    pool.shutdown();
+    assertTrue(errors.isEmpty());
+    for (String name : new String[] {"d", "e"}) {
+      for (int r = 0; r < 4; r++) {
+        for (int c = 0; c < 5; c++) {
+          assertArrayEquals(serial.getImage(name).getPixel(r, c),
+                  parallel.getImage(name).getPixel(r, c), 0.0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFailureStopsDependents() {
+    List<String> errors = ScriptCompiler.compile("load nothing-here.ppm a\nsave a.ppm a\n"
+            + "red-component k r\nsave r.ppm r", name -> name.equals("k"))
+            .run(this.modelWith("k"), Runnable::run);
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).startsWith("Line 1: File cannot be retrieved"));
+  }
+}
@@ -0,0 +1,38 @@
+import java.util.Random;
+
+import model.PackedImage;
+import model.PixelLayout;
+import model.SampleDepth;
+
+/**
+ * Builds the images tests run their operations on.
+ */
+final class TestImages {
+
+  private TestImages() {
+  }
+
+  /**
+   * Builds an image of random samples with a max value of 255. Integer depths hold random
+   * integer samples, so every sample is stored exactly.
+   *
+   * @param w - width of the image
+   * @param h - height of the image
+   * @param seed - seed of the random samples, so a test sees the same image on every run
+   * @param depth - how the samples are stored
+   * @return the new image
+   */
+  static PackedImage random(int w, int h, long seed, SampleDepth depth) {
+    Random rand = new Random(seed);
+    PackedImage im = new PackedImage(w, h, 255, depth, PixelLayout.INTERLEAVED);
+    for (int r = 0; r < h; r++) {
+      for (int c = 0; c < w; c++) {
+        for (int ch = 0; ch < 3; ch++) {
+          im.setSample(r, c, ch, depth.isInteger() ? rand.nextInt(256) / 255.0
+                  : rand.nextDouble());
+        }
+      }
+    }
+    return im;
+  }
+}